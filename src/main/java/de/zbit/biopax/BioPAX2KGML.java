@@ -24,28 +24,43 @@
  */
 package de.zbit.biopax;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.biopax.paxtools.io.BioPAXIOHandler;
-import org.biopax.paxtools.io.jena.JenaIOHandler;
 import org.biopax.paxtools.model.BioPAXElement;
 import org.biopax.paxtools.model.BioPAXLevel;
 import org.biopax.paxtools.model.Model;
@@ -53,15 +68,12 @@ import org.biopax.paxtools.model.level2.dataSource;
 import org.biopax.paxtools.model.level2.pathway;
 import org.biopax.paxtools.model.level3.Pathway;
 import org.biopax.paxtools.model.level3.Provenance;
-import org.biopax.paxtools.util.IllegalBioPAXArgumentException;
 
 import de.zbit.io.FileTools;
 import de.zbit.io.OpenFile;
 import de.zbit.kegg.KGMLWriter;
 import de.zbit.kegg.api.KeggInfos;
 import de.zbit.kegg.parser.pathway.Entry;
-import de.zbit.mapper.GeneID2KeggIDMapper;
-import de.zbit.mapper.GeneSymbol2GeneIDMapper;
 import de.zbit.util.ArrayUtils;
 import de.zbit.util.DatabaseIdentifiers;
 import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
@@ -85,17 +97,11 @@ public abstract class BioPAX2KGML {
    * default folder name for the KGMLs "pws"
    */
   static String defaultFolderName = "pws";
-  static List<Species> allSpecies = null;
 
-  static {
-    // TODO: Replace this with a flat-text file in resources to support more
-    // organisms.
-    allSpecies = new ArrayList<Species>(4);
-    allSpecies.add(new Species("Homo sapiens", "_HUMAN", "Human", "hsa", 9606));
-    allSpecies.add(new Species("Mus musculus", "_MOUSE", "Mouse", "mmu", 10090));
-    allSpecies.add(new Species("Rattus norvegicus", "_RAT", "Rat", "rno", 10116));
-//    allSpecies.add(new Species("Enterococcus faecalis", "_ENTFA", "Enterococcus", "efa", 226185));
-  }
+  /**
+   * buffer size in bytes which is used to read owl files
+   */
+  private static final int STREAM_BUFFER_SIZE = 1 << 16;
 
   /**
    * This variable must be set to false for normal biopax2kgml conversion.
@@ -110,25 +116,9 @@ public abstract class BioPAX2KGML {
   int addedSubTypes = 0;
 
   /**
-   * number which is used to determine a pathway id, if it is not possible to
-   * exclude the id from the BioCarta file
+   * species, mappers and id counters of this conversion
    */
-  int keggPathwayNumberCounter = 100000;
-
-  /**
-   * this variable is used to determine the kegg id of an entry
-   */
-  int keggEntryID = 0;
-
-  /**
-   * this variable is used to determine the kegg id of an entry
-   */
-  static int keggUnknownNo = 0;
-
-  /**
-   * this variable is used to determine the kegg reaction id
-   */
-  int keggReactionID = 0;
+  protected final BioPAXConversionContext context;
 
   /**
    * default organism for KEGG parsing - "hsa"
@@ -142,16 +132,21 @@ public abstract class BioPAX2KGML {
   public static final String keggUnknownName = "unknown";
 
   /**
-   * TODO: If these mappers are static, we must somehow distinguish instances for different !
-   * mapper to map gene symbols to gene ids
+   * Creates a converter with a new, empty {@link BioPAXConversionContext}.
    */
-  protected static GeneSymbol2GeneIDMapper geneSymbolMapper = null;
+  public BioPAX2KGML() {
+    this(new BioPAXConversionContext());
+  }
 
   /**
-   * TODO: If these mappers are static, we must somehow distinguish instances for different species!
-   * mapper to map gene ids to KEGG ids
+   * Creates a converter, which uses the entered context. The context must not
+   * be used by another converter at the same time.
+   * 
+   * @param context
    */
-  protected static GeneID2KeggIDMapper geneIDKEGGmapper = null;
+  public BioPAX2KGML(BioPAXConversionContext context) {
+    this.context = context;
+  }
 
   /**
    * transforms a set to a map. The key is a RDFId and the value the
@@ -174,21 +169,19 @@ public abstract class BioPAX2KGML {
   /**
    * 
    * @return the new KEGG unknown "unknownx", whereas x is set to the
-   *         {@link BioPAX2KGML#keggUnknownNo}.{@link BioPAX2KGML#keggUnknownNo}
-   *         is incremented after this step
+   *         {@link BioPAXConversionContext#nextUnknownNo()}
    */
-  protected static String getKEGGUnkownName() {
-    return keggUnknownName + String.valueOf(++keggUnknownNo);
+  protected String getKEGGUnkownName() {
+    return keggUnknownName + String.valueOf(context.nextUnknownNo());
   }
 
   /**
    * 
    * @return the new KEGG reaction name "rn:unknownx", whereas x is set to the
-   *         {@link BioPAX2KGML#keggReactionID}.
-   *         {@link BioPAX2KGML#keggReactionID} is augmented after this step
+   *         {@link BioPAXConversionContext#nextReactionID()}
    */
   protected String getReactionName() {
-    return keggUnknownName + String.valueOf(++keggReactionID);
+    return keggUnknownName + String.valueOf(context.nextReactionID());
   }
 
   /**
@@ -198,15 +191,11 @@ public abstract class BioPAX2KGML {
    * @param mapper
    * @return
    */
-  protected static String mapGeneIDToKEGGID(Integer geneID, Species species) {
+  protected String mapGeneIDToKEGGID(Integer geneID, Species species) {
     String keggName = null;
-    if (geneIDKEGGmapper != null && species!=null && species.isSetKeggAbbr()){
-      try {
-        keggName = geneIDKEGGmapper.map(geneID);
-      } catch (Exception e) {
-        log.log(Level.WARNING, "Could not map geneid: '" + geneID.toString() + "' to a KEGG id, "
-            + "'speciesAbbreviation:geneID will be used instead.", e);
-      }
+    GeneIDKeggIndex geneIDKeggIndex = context.getGeneIDKeggIndex();
+    if (geneIDKeggIndex != null && geneID != null && species!=null && species.isSetKeggAbbr()){
+      keggName = geneIDKeggIndex.map(geneID);
 
       if (keggName == null) {
         keggName = species.getKeggAbbr() + ":" + geneID.toString();
@@ -220,8 +209,7 @@ public abstract class BioPAX2KGML {
    * The rdfID is in the format: http://pid.nci.nih.gov/biopaxpid_9717
    * 
    * From this id the number is excluded and used as pathway number, if this is
-   * not possible the {@link BioPAXL22KGML#keggPathwayNumberCounter} is used and
-   * incremented
+   * not possible {@link BioPAXConversionContext#nextPathwayNumber()} is used
    * 
    * @param rdfId
    * @return
@@ -232,65 +220,200 @@ public abstract class BioPAX2KGML {
       try {
         return Integer.parseInt(rdfId.substring(posUnderscore + 1));
       } catch (Exception e) {
-        return keggPathwayNumberCounter++;
+        return context.nextPathwayNumber();
       }
     }
 
-    return keggPathwayNumberCounter++;
+    return context.nextPathwayNumber();
   }
 
   /**
-   * Converts the inputStream of an owl file containing BioPAX entries
+   * Converts the inputStream of an owl file containing BioPAX entries with the
+   * default {@link BioPAXParser#SIMPLE} parser
    * 
    * @param io
    * @return
    */
   public static Model getModel(InputStream io) {
-    BioPAXIOHandler handler = new JenaIOHandler();
+    return getModel(io, BioPAXParser.SIMPLE);
+  }
+
+  /**
+   * Converts the inputStream of an owl file containing BioPAX entries with the
+   * entered parser backend
+   * 
+   * @param io
+   * @param parser
+   * @return the model or null, if the stream could not be parsed
+   */
+  public static Model getModel(InputStream io, BioPAXParser parser) {
+    BioPAXIOHandler handler = parser.createIOHandler();
     Model m = null;
     try {
       m = handler.convertFromOWL(io);
-    } catch (IllegalBioPAXArgumentException e) {
-      log.log(Level.SEVERE, "Could not read model!", e);
+    } catch (RuntimeException e) {
+      // IllegalBioPAXArgumentException, BioPAXIOException and the like
+      log.log(Level.SEVERE, "Could not read model with the " + parser + " parser!", e);
     }
     return m;
   }
 
   /**
-   * The {@link #geneSymbolMapper} and
-   * {@link BioPAX2KGML#geneIDKEGGmapper} are initialized for the
-   * given species
+   * The mappers of the {@link #context} are initialized for the given species
    * 
    * @param species
    */
-  public static void initalizeMappers(Species species) {
-    if (species != null){
-      try {
-        geneSymbolMapper = new GeneSymbol2GeneIDMapper(species.getCommonName());
-      } catch (IOException e) {
-        log.log(Level.SEVERE, "Could not initalize mapper for species '" + species.toString() + "'!",
-            e);
-        System.exit(1);
-      }
+  public void initalizeMappers(Species species) {
+    initalizeMappers(context, species);
+  }
+  
+  /**
+   * The mappers of the {@link #context} are initialized for the species with
+   * the entered KEGG abbreviation or scientific name, if the mappers are not
+   * set yet.
+   * 
+   * @param species
+   */
+  protected void initalizeMappersForSpecies(String species) {
+    if (species == null || context.isSetMappers()) {
+      return;
+    }
+    SpeciesRegistry registry = SpeciesRegistry.getInstance();
+    Species s = registry.getByKeggAbbr(species);
+    if (s == null) {
+      s = registry.getByScientificName(species);
+    }
+    if (s != null) {
+      initalizeMappers(s);
+    } else {
+      log.warning("Unknown species '" + species + "', gene symbols are not mapped.");
+    }
+  }
+
+  /**
+   * @param species
+   * @return a new context with fresh counters and the mappers of
+   *         {@link #context}, reinitialized if the species differs
+   */
+  protected BioPAXConversionContext newContext(Species species) {
+    BioPAXConversionContext newContext = context.newConversion();
+    initalizeMappers(newContext, species);
+    return newContext;
+  }
 
-      if (species.getKeggAbbr()!=null){
+  /**
+   * Initializes the mappers of the context for the species. If they can not be
+   * loaded, e.g. because the species has no bundled mapping and the download
+   * fails, the pathways are converted without mapping the gene symbols.
+   * 
+   * @param context
+   * @param species
+   */
+  private static void initalizeMappers(BioPAXConversionContext context, Species species) {
+    try {
+      context.initializeMappers(species);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not initalize mappers for species '" + species.toString()
+          + "', gene symbols are not mapped: " + e.getMessage());
+      log.log(Level.FINE, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @return the context of this conversion
+   */
+  public BioPAXConversionContext getContext() {
+    return context;
+  }
+
+  /**
+   * Runs the entered pathway conversions with a pool of the given number of
+   * threads. Each task must use its own converter and context. The returned list
+   * has the same order as the tasks, independent of the order in which the
+   * tasks finish. Pathways, which could not be converted, are skipped.
+   * <p>
+   * At most <code>2 * threads</code> tasks are submitted, but not yet taken
+   * from, so with a queue the converted pathways, which wait for it, are
+   * bounded, too. The entries of <code>tasks</code> are set to null, when they
+   * are submitted, so a converter can be freed after its pathway is taken.
+   * 
+   * @param tasks
+   * @param threads
+   * @param queue if not null, each pathway is put into this queue as soon as it
+   *        and all pathways before it are converted and the returned list stays
+   *        empty
+   * @return the converted pathways
+   */
+  protected static List<de.zbit.kegg.parser.pathway.Pathway> convertInParallel(
+      List<Callable<de.zbit.kegg.parser.pathway.Pathway>> tasks, int threads,
+      BlockingQueue<de.zbit.kegg.parser.pathway.Pathway> queue) {
+    List<de.zbit.kegg.parser.pathway.Pathway> keggPWs = 
+      new ArrayList<de.zbit.kegg.parser.pathway.Pathway>(tasks.size());
+    if (tasks.isEmpty()) {
+      return keggPWs;
+    }
+    
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+    try {
+      int window = 2 * threads;
+      Queue<Future<de.zbit.kegg.parser.pathway.Pathway>> results = 
+        new ArrayDeque<Future<de.zbit.kegg.parser.pathway.Pathway>>(window);
+      for (int i = 0; i < tasks.size() || !results.isEmpty(); ) {
+        if (i < tasks.size() && results.size() < window) {
+          results.add(pool.submit(tasks.get(i)));
+          tasks.set(i++, null);
+          continue;
+        }
+        // wait for the oldest task, before the next one is submitted
         try {
-          geneIDKEGGmapper = new GeneID2KeggIDMapper(species);
-        } catch (IOException e) {
-          log.log(Level.SEVERE, "Error while initializing gene id to KEGG ID mapper for species '"
-              + species.toString() + "'.", e);
-          System.exit(1);
-        }  
+          if (!addPathway(results.poll().get(), keggPWs, queue)) {
+            break;
+          }
+        } catch (ExecutionException e) {
+          log.log(Level.SEVERE, "Could not convert pathway.", e.getCause());
+        }
       }
+    } catch (InterruptedException e) {
+      log.log(Level.SEVERE, "Pathway conversion was interrupted.", e);
+      Thread.currentThread().interrupt();
+    } finally {
+      pool.shutdownNow();
+    }
+    
+    return keggPWs;
+  }
+  
+  /**
+   * Adds the pathway to the list or, if a queue is entered, puts it into the
+   * queue. Waits for space in the queue, if necessary.
+   * 
+   * @param keggPW
+   * @param keggPWs
+   * @param queue may be null
+   * @return false if the thread was interrupted while waiting
+   */
+  protected static boolean addPathway(de.zbit.kegg.parser.pathway.Pathway keggPW,
+      Collection<de.zbit.kegg.parser.pathway.Pathway> keggPWs,
+      BlockingQueue<de.zbit.kegg.parser.pathway.Pathway> queue) {
+    if (queue == null) {
+      keggPWs.add(keggPW);
+      return true;
+    }
+    try {
+      queue.put(keggPW);
+      return true;
+    } catch (InterruptedException e) {
+      log.log(Level.SEVERE, "Pathway conversion was interrupted.", e);
+      Thread.currentThread().interrupt();
+      return false;
     }
   }
 
   /**
-   * @return a unique {@link BioPAXL22KGML#keggEntryID}.
+   * @return a unique entry id, see {@link BioPAXConversionContext#nextEntryID()}.
    */
   protected int getKeggEntryID() {
-    keggEntryID++;
-    return keggEntryID;
+    return context.nextEntryID();
   }
 
   /**
@@ -326,10 +449,9 @@ public abstract class BioPAX2KGML {
   protected static String createDefaultFolder(BioPAXLevel level) {
     String folderName = defaultFolderName + level.toString() + "/";
     if (!new File(folderName).exists()) {
-      boolean success = (new File(folderName)).mkdir();
-      if (success) {
+      boolean success = (new File(folderName)).mkdirs();
+      if (!success) {
         log.log(Level.SEVERE, "Could not create directory '" + folderName + "'");
-        System.exit(1);
       }
     }
 
@@ -337,55 +459,231 @@ public abstract class BioPAX2KGML {
   }
 
   /**
-   * Calls the method {@link BioPAX2KGML#getModel(InputStream) for an entered
-   * owl file}
+   * Calls the method {@link BioPAX2KGML#getModel(String, BioPAXParser)} with
+   * the default {@link BioPAXParser#SIMPLE} parser
    * 
    * @param file
    * @return Model
    */
   public static Model getModel(final String file) {
+    return getModel(file, BioPAXParser.SIMPLE);
+  }
+
+  /**
+   * Calls the method {@link BioPAX2KGML#getModel(InputStream, BioPAXParser)}
+   * for an entered owl file. If the file can not be read with the entered
+   * parser, it is read a second time with the {@link BioPAXParser#JENA}
+   * parser, which is more lenient with unusual RDF/XML serializations.
+   * 
+   * @param file
+   * @param parser
+   * @return Model
+   */
+  public static Model getModel(final String file, BioPAXParser parser) {
+    Model m = readModel(file, parser);
+    if (m == null && parser != BioPAXParser.JENA) {
+      log.log(Level.WARNING, "Could not read '" + file + "' with the " + parser
+          + " parser, falling back to the " + BioPAXParser.JENA + " parser.");
+      m = readModel(file, BioPAXParser.JENA);
+    }
+    return m;
+  }
+
+  /**
+   * @param file
+   * @param parser
+   * @return the model or null, if the file could not be read
+   */
+  private static Model readModel(final String file, BioPAXParser parser) {
+    InputStream in = null;
     try {
-      StringBuffer fileContent = OpenFile.readFile(file);
-      return getModel(new ByteArrayInputStream(fileContent.toString().getBytes("UTF-8")));
+      in = openModelStream(file);
+      return getModel(in, parser);
     } catch (Exception e) {
       log.log(Level.SEVERE, "Could not read model!", e);
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          log.log(Level.FINE, "Could not close '" + file + "'.", e);
+        }
+      }
     }
     return null;
   }
 
   /**
-   * Maps the entered gene symbol names to a geneID
+   * Opens the entered owl file as buffered {@link InputStream}, which can be
+   * handed directly to the IO handler. Compressed files are detected by their
+   * magic number, not by the file extension: gzip files are decompressed on the
+   * fly and for zip archives the first file entry is read. SBGN-ML files are
+   * opened the same way (see {@link de.zbit.sbvc.io.helper.SBGNStreamReader}).
+   * 
+   * @param file
+   * @return the opened stream, which has to be closed by the caller
+   * @throws IOException
+   */
+  public static InputStream openModelStream(String file) throws IOException {
+    InputStream raw;
+    if (new File(file).isFile()) {
+      raw = new FileInputStream(file);
+    } else {
+      // e.g. resources on the class path
+      raw = OpenFile.searchFileAndGetInputStream(file);
+      if (raw == null) {
+        throw new FileNotFoundException(file);
+      }
+    }
+    BufferedInputStream in = new BufferedInputStream(raw, STREAM_BUFFER_SIZE);
+    in.mark(4);
+    int b1 = in.read();
+    int b2 = in.read();
+    int b3 = in.read();
+    int b4 = in.read();
+    in.reset();
+
+    if (b1 == 0x1f && b2 == 0x8b) {
+      return new BufferedInputStream(new GZIPInputStream(in, STREAM_BUFFER_SIZE), STREAM_BUFFER_SIZE);
+    } else if (b1 == 'P' && b2 == 'K' && b3 == 3 && b4 == 4) {
+      ZipInputStream zip = new ZipInputStream(in);
+      ZipEntry entry = zip.getNextEntry();
+      while (entry != null && entry.isDirectory()) {
+        entry = zip.getNextEntry();
+      }
+      if (entry == null) {
+        zip.close();
+        throw new IOException("The zip archive '" + file + "' does not contain any file.");
+      }
+      log.fine("Reading entry '" + entry.getName() + "' of zip archive '" + file + "'.");
+      return new BufferedInputStream(zip, STREAM_BUFFER_SIZE);
+    }
+
+    return in;
+  }
+
+  /**
+   * Maps the entered gene symbol names to a geneID. The results are
+   * remembered by the {@link GeneSymbolResolver} of the {@link #context}.
    * 
    * @param set of gene symbols
    * @return the gene id (default value = null)
    */
-  protected static Integer getEntrezGeneIDForGeneSymbol(Collection<String> geneSymbols) {
+  protected Integer getEntrezGeneIDForGeneSymbol(Collection<String> geneSymbols) {
     log.finest("getGeneIDOverGeneSymbol");
-    Integer geneID = null;
+    GeneSymbolResolver resolver = context.getGeneSymbolResolver();
+    return resolver == null ? null : resolver.resolve(geneSymbols);
+  }
 
-    if (geneSymbolMapper!=null){
-      for (String symbol : geneSymbols) {
-        try {
-          geneID = geneSymbolMapper.map(symbol);
-        } catch (Exception e) {
-          log.log(Level.WARNING, "Error while mapping name: " + symbol + ".", e);
+  
+  /**
+   * Adds the Entrez gene ids of the entities to each pathway. The work is
+   * done in batches over all pathways:
+   * <ol>
+   * <li>the entities of each pathway are expanded to the entities with a name
+   * (see {@link #addEntitiesWithName(BioPAXElement, Set)}),</li>
+   * <li>the identifiers of each distinct entity are read once, gene ids are
+   * taken directly from EntrezGene xrefs,</li>
+   * <li>the gene symbols of the remaining entities are mapped, each distinct
+   * symbol only once (see {@link GeneSymbolResolver}),</li>
+   * <li>the gene ids are added to the {@link IntHashSet} of each pathway.</li>
+   * </ol>
+   * 
+   * @param pathways
+   */
+  protected void addEntrezGeneIDs(List<BioPAXPathwayHolder> pathways) {
+    // entities with a name for each pathway
+    List<Set<BioPAXElement>> entitiesPerPathway = new ArrayList<Set<BioPAXElement>>(pathways.size());
+    // gene ids of each distinct entity, null until the symbols are mapped
+    Map<BioPAXElement, int[]> geneIDs = new IdentityHashMap<BioPAXElement, int[]>();
+    // gene symbols of entities without EntrezGene xref
+    Map<BioPAXElement, Collection<String>> symbols = 
+      new IdentityHashMap<BioPAXElement, Collection<String>>();
+    
+    for (BioPAXPathwayHolder pw : pathways) {
+      Set<BioPAXElement> entities = Collections.newSetFromMap(
+          new IdentityHashMap<BioPAXElement, Boolean>());
+      if (pw.entities != null) {
+        for (BioPAXElement entity : pw.entities) {
+          addEntitiesWithName(entity, entities);
         }
-
-        if (geneID != null) {
-          return geneID;
-        } else if (symbol.contains("-")) {
-          return getEntrezGeneIDForGeneSymbol(Collections.singleton(symbol.replace("-", "")));
-        } else if (symbol.contains(" ")) {
-          return getEntrezGeneIDForGeneSymbol(Collections.singleton(symbol.replace(" ", "_")));
-        } else {
-          log.log(Level.FINER, "----- not found " + symbol);
+      }
+      entitiesPerPathway.add(entities);
+      
+      for (BioPAXElement entity : entities) {
+        if (geneIDs.containsKey(entity)) {
+          continue;
         }
-      }  
+        Map<IdentifierDatabases, Collection<String>> identifiers = getGeneIdentifiers(entity);
+        int[] ids = parseGeneIDs(identifiers.get(IdentifierDatabases.EntrezGene));
+        if (ids == null) {
+          Collection<String> geneSymbols = identifiers.get(IdentifierDatabases.GeneSymbol);
+          if (geneSymbols != null && geneSymbols.size() > 0) {
+            symbols.put(entity, geneSymbols);
+          }
+        }
+        geneIDs.put(entity, ids);
+      }
+    }
+    
+    log.fine("Mapping the gene symbols of " + symbols.size() + " entities.");
+    for (Map.Entry<BioPAXElement, Collection<String>> entity : symbols.entrySet()) {
+      Integer geneID = getEntrezGeneIDForGeneSymbol(entity.getValue());
+      if (geneID != null && geneID > 0) {
+        geneIDs.put(entity.getKey(), new int[] {geneID});
+      }
     }
     
-    return geneID;
+    for (int i = 0; i < pathways.size(); i++) {
+      BioPAXPathwayHolder pw = pathways.get(i);
+      for (BioPAXElement entity : entitiesPerPathway.get(i)) {
+        int[] ids = geneIDs.get(entity);
+        if (ids != null) {
+          for (int geneID : ids) {
+            pw.addGeneID(geneID);
+          }
+        }
+      }
+      log.log(Level.FINER, "Pathway: " + pw.getPathwayName() + ": " + pw.getNoOfEntities() 
+          + " entities, " + pw.getNoOfGeneIDs() + " gene ids");
+    }
   }
   
+  /**
+   * @param ids
+   * @return the numeric ids or null, if there is none
+   */
+  private static int[] parseGeneIDs(Collection<String> ids) {
+    if (ids == null || ids.size() < 1) {
+      return null;
+    }
+    int[] geneIDs = new int[ids.size()];
+    int n = 0;
+    for (String id : ids) {
+      if (Utils.isNumber(id, true)) {
+        geneIDs[n++] = Integer.parseInt(id.trim());
+      }
+    }
+    return n == 0 ? null : n == geneIDs.length ? geneIDs : Arrays.copyOf(geneIDs, n);
+  }
+  
+  /**
+   * Adds the entered element to the set, if it can carry a gene symbol. The
+   * components of complexes are added instead of the complex itself.
+   * 
+   * @param element
+   * @param entities
+   */
+  protected abstract void addEntitiesWithName(BioPAXElement element, Set<BioPAXElement> entities);
+  
+  /**
+   * @param element an element from {@link #addEntitiesWithName(BioPAXElement, Set)}
+   * @return the identifiers of the element, at least the EntrezGene ids and
+   *         gene symbols, if available
+   */
+  protected abstract Map<IdentifierDatabases, Collection<String>> getGeneIdentifiers(
+      BioPAXElement element);
+  
   /**
    * Creates for an entered {@link Model} the corresponding KEGG pathways
    * @param fileName
@@ -394,8 +692,52 @@ public abstract class BioPAX2KGML {
    */
   public static Collection<de.zbit.kegg.parser.pathway.Pathway> createPathwaysFromModel
     (String fileName, Species species) {
-    Model m = BioPAX2KGML.getModel(fileName);
-    return createPathwaysFromModel(m, fileName, species); 
+    return createPathwaysFromModel(fileName, species, BioPAXParser.SIMPLE);
+  }
+  
+  /**
+   * Creates for an entered {@link Model} the corresponding KEGG pathways
+   * @param fileName
+   * @param species
+   * @param parser backend used to read the owl file
+   * @return
+   */
+  public static Collection<de.zbit.kegg.parser.pathway.Pathway> createPathwaysFromModel
+    (String fileName, Species species, BioPAXParser parser) {
+    return createPathwaysFromModel(fileName, species, parser, 1);
+  }
+  
+  /**
+   * Creates for an entered {@link Model} the corresponding KEGG pathways
+   * @param fileName
+   * @param species
+   * @param parser backend used to read the owl file
+   * @param threads number of pathways converted in parallel
+   * @return
+   */
+  public static Collection<de.zbit.kegg.parser.pathway.Pathway> createPathwaysFromModel
+    (String fileName, Species species, BioPAXParser parser, int threads) {
+    Model m = BioPAX2KGML.getModel(fileName, parser);
+    return createPathwaysFromModel(m, fileName, species, threads); 
+  }
+  
+  /**
+   * Creates for an entered {@link Model} the corresponding KEGG pathways and
+   * puts each pathway into the queue as soon as it is converted, so that the
+   * pathways can be processed further while the conversion is still running.
+   * The pathways are put in input order. Empty pathways are not removed.
+   * 
+   * @param fileName
+   * @param species
+   * @param parser backend used to read the owl file
+   * @param threads number of pathways converted in parallel
+   * @param queue receives the converted pathways. If it is bounded, the
+   *        conversion waits until there is space.
+   */
+  public static void createPathwaysFromModel(String fileName, Species species,
+    BioPAXParser parser, int threads, BlockingQueue<de.zbit.kegg.parser.pathway.Pathway> queue) {
+    Model m = BioPAX2KGML.getModel(fileName, parser);
+    createPathwaysFromModel(m, fileName, species, new BioPAXConversionContext(), threads, queue);
   }
   
   
@@ -476,7 +818,6 @@ public abstract class BioPAX2KGML {
       } else {
         log.log(Level.SEVERE, "Unkown BioPAX Level '" + m.getLevel().toString()
             + "' is not supported.");
-        System.exit(1);
       }
       
     } else {
@@ -493,6 +834,55 @@ public abstract class BioPAX2KGML {
    */
   public static Collection<de.zbit.kegg.parser.pathway.Pathway> createPathwaysFromModel
     (Model m, String fileName, Species species) {
+    return createPathwaysFromModel(m, fileName, species, 1);
+  }
+  
+  /**
+   * Creates for an entered {@link Model} the corresponding KEGG pathways. If
+   * more than one thread is entered, the pathways of the model are converted
+   * in parallel, each by its own converter instance. The result has the input
+   * order in both cases.
+   * 
+   * @param m
+   * @param fileName
+   * @param species
+   * @param threads number of pathways converted in parallel
+   */
+  public static Collection<de.zbit.kegg.parser.pathway.Pathway> createPathwaysFromModel
+    (Model m, String fileName, Species species, int threads) {
+    return createPathwaysFromModel(m, fileName, species, new BioPAXConversionContext(), threads,
+        null);
+  }
+  
+  /**
+   * Creates for an entered {@link Model} the corresponding KEGG pathways with
+   * the species and mappers of the entered context. To run several
+   * conversions at the same time, use a context created with
+   * {@link BioPAXConversionContext#newConversion()} for each of them.
+   * 
+   * @param m
+   * @param fileName
+   * @param context
+   * @param threads number of pathways converted in parallel
+   */
+  public static Collection<de.zbit.kegg.parser.pathway.Pathway> createPathwaysFromModel
+    (Model m, String fileName, BioPAXConversionContext context, int threads) {
+    return createPathwaysFromModel(m, fileName, context.getSpecies(), context, threads, null);
+  }
+  
+  /**
+   * @param m
+   * @param fileName
+   * @param species
+   * @param context
+   * @param threads
+   * @param queue if not null, the pathways are put into this queue instead of
+   *        being returned
+   * @return
+   */
+  private static Collection<de.zbit.kegg.parser.pathway.Pathway> createPathwaysFromModel
+    (Model m, String fileName, Species species, BioPAXConversionContext context, int threads,
+      BlockingQueue<de.zbit.kegg.parser.pathway.Pathway> queue) {
     Collection<de.zbit.kegg.parser.pathway.Pathway> keggPWs = 
       new ArrayList<de.zbit.kegg.parser.pathway.Pathway>(); 
        
@@ -507,34 +897,33 @@ public abstract class BioPAX2KGML {
      
       // BioPax Level 2 
       if (m.getLevel().equals(BioPAXLevel.L2)) {
-        BioPAXL22KGML bp = new BioPAXL22KGML();
+        BioPAXL22KGML bp = new BioPAXL22KGML(context);
         Set<pathway> pathways = m.getObjects(pathway.class);
         // if we want to split the incoming file
         if (pathways!=null && pathways.size()>0) {
           // Split mode and we have pathway objects
-          keggPWs = bp.createPathways(m, comment, pathways, species);
+          keggPWs = bp.createPathways(m, comment, pathways, species, threads, queue);
         } else {
           // All modes, but we have NO pathway objects (use the model)
           de.zbit.kegg.parser.pathway.Pathway keggPW = 
             bp.createPathwayFromBioPaxFile(m, comment, f==null?"Unknown":FileTools.removeFileExtension(f.getName()), species);
-          keggPWs.add(keggPW);   
+          addPathway(keggPW, keggPWs, queue);   
         }
       } //BioPax Level 3
         else if (m.getLevel().equals(BioPAXLevel.L3)) {
-        BioPAXL32KGML bp = new BioPAXL32KGML();
+        BioPAXL32KGML bp = new BioPAXL32KGML(context);
         Set<Pathway> pathways = m.getObjects(Pathway.class);
         // if we want to split the incoming file
         if (pathways!=null && pathways.size()>0) {
-          keggPWs = bp.createPathways(m, comment, pathways, species);
+          keggPWs = bp.createPathways(m, comment, pathways, species, threads, queue);
         } else {
           de.zbit.kegg.parser.pathway.Pathway keggPW = bp.createPathwayFromBioPaxFile
           (m, comment, FileTools.removeFileExtension(f.getName()), species);
-          keggPWs.add(keggPW);          
+          addPathway(keggPW, keggPWs, queue);          
         }
       } else {
         log.log(Level.SEVERE, "Unkown BioPAX Level '" + m.getLevel().toString()
             + "' is not supported.");
-        System.exit(1);
       }
       
     } else {
@@ -551,6 +940,10 @@ public abstract class BioPAX2KGML {
         }
       }
     }
+    log.fine(GeneMapperCache.getInstance().toString());
+    if (context.getGeneSymbolResolver() != null) {
+      log.fine(context.getGeneSymbolResolver().toString());
+    }
     
     return keggPWs;
   }
@@ -609,8 +1002,9 @@ public abstract class BioPAX2KGML {
     String line;
     int lineCounter = 0;
     StringBuilder lines = new StringBuilder(128);
+    BufferedReader br = null;
     try {
-      BufferedReader br = OpenFile.openFile(file);
+      br = new BufferedReader(new InputStreamReader(openModelStream(file), "UTF-8"));
       while ((line = br.readLine()) != null){
         lineCounter++;
         lines.append(line);
@@ -620,6 +1014,14 @@ public abstract class BioPAX2KGML {
       }
     } catch (Exception e) {
       e.printStackTrace();
+    } finally {
+      if (br != null) {
+        try {
+          br.close();
+        } catch (IOException e) {
+          log.log(Level.FINE, "Could not close '" + file + "'.", e);
+        }
+      }
     }
     
     Pattern pattern = Pattern.compile(".*<rdfs:comment.*?>(.*?)</rdfs:comment>.*", Pattern.MULTILINE);
@@ -657,7 +1059,7 @@ public abstract class BioPAX2KGML {
    * @return
    */
   @SuppressWarnings("unchecked")
-  public static String getKEGGName(Map<IdentifierDatabases, Collection<String>> identifiers, Species species) {
+  public String getKEGGName(Map<IdentifierDatabases, Collection<String>> identifiers, Species species) {
     Set<String> ids = new HashSet<String>();
 
     ArrayUtils.merge(ids,
@@ -854,7 +1256,7 @@ public abstract class BioPAX2KGML {
 
   /**
    * @param model
-   * @return
+   * @return the species of the model, empty if its level is not supported
    */
   public static Collection<Species> getSpecies(Model m) {
     // BioPax Level 2 
@@ -866,9 +1268,8 @@ public abstract class BioPAX2KGML {
     } else {
       log.log(Level.SEVERE, "Unkown BioPAX Level '" + m.getLevel().toString()
           + "' is not supported.");
-      System.exit(1);
     }
-    return null;
+    return new ArrayList<Species>();
   }
   
   
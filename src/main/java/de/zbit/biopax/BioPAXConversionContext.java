@@ -0,0 +1,272 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.io.IOException;
+
+import org.biopax.paxtools.model.BioPAXElement;
+
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.mapper.GeneSymbol2GeneIDMapper;
+import de.zbit.util.Species;
+import de.zbit.util.objectwrapper.ValuePairUncomparable;
+
+/**
+ * Holds the state of one BioPAX to KGML conversion: the species, the mappers
+ * for this species and the counters, which are used to create unique ids and
+ * names.
+ * <p>
+ * A context must only be used by one converter at a time. The mappers are
+ * taken from the {@link GeneMapperCache} and only read after they have been
+ * loaded, so they are shared by all contexts of the same species, also across
+ * threads.
+ * 
+ * @version $Rev$
+ */
+public class BioPAXConversionContext {
+  
+  /**
+   * species for which the mappers are initialized
+   */
+  private Species species = null;
+  
+  /**
+   * maps gene symbols to gene ids and remembers the results
+   */
+  private GeneSymbolResolver geneSymbolResolver = null;
+
+  /**
+   * index to map gene ids to KEGG ids
+   */
+  private GeneIDKeggIndex geneIDKeggIndex = null;
+  
+  /**
+   * first number, which is used to determine a pathway id, if it is not
+   * possible to exclude the id from the BioCarta file
+   */
+  private static final int FIRST_PATHWAY_NUMBER = 100000;
+
+  /**
+   * number which is used to determine a pathway id, if it is not possible to
+   * exclude the id from the BioCarta file
+   */
+  private int keggPathwayNumberCounter = FIRST_PATHWAY_NUMBER;
+
+  /**
+   * this variable is used to determine the kegg id of an entry
+   */
+  private int keggEntryID = 0;
+
+  /**
+   * this variable is used to determine the name of an unknown entry
+   */
+  private int keggUnknownNo = 0;
+
+  /**
+   * this variable is used to determine the kegg reaction id
+   */
+  private int keggReactionID = 0;
+  
+  /**
+   * index of the pathway, which is currently converted
+   */
+  private PathwayIndex pathwayIndex = null;
+  
+  /**
+   * entries, which were created for BioPAX elements of the pathway
+   * {@link #entityCachePathway}
+   */
+  private final IdentityCache<BioPAXElement, EntryExtended> entityCache = 
+    new IdentityCache<BioPAXElement, EntryExtended>();
+  
+  /**
+   * pathway to which the entries in the {@link #entityCache} belong
+   */
+  private Pathway entityCachePathway = null;
+  
+  /**
+   * Creates a context without species and mappers.
+   */
+  public BioPAXConversionContext() {
+  }
+  
+  /**
+   * Creates a context and initializes the mappers for the entered species.
+   * 
+   * @param species
+   * @throws IOException if a mapper could not be loaded
+   */
+  public BioPAXConversionContext(Species species) throws IOException {
+    initializeMappers(species);
+  }
+  
+  /**
+   * @return a new context for the same species, which shares the mappers of
+   *         this context, but starts with fresh counters
+   */
+  public BioPAXConversionContext newConversion() {
+    BioPAXConversionContext context = new BioPAXConversionContext();
+    context.species = species;
+    context.geneSymbolResolver = geneSymbolResolver;
+    context.geneIDKeggIndex = geneIDKeggIndex;
+    return context;
+  }
+  
+  /**
+   * Restarts the entry, unknown entry and reaction counters for the pathway
+   * at the entered position of a model and sets the pathway number, which is
+   * used if the id of the pathway contains no number, to
+   * <code>100000 + position</code>. So the ids of a pathway do not depend on
+   * the pathways, which were converted before it by this context.
+   * 
+   * @param position index of the pathway in the model, starting with 0
+   */
+  public void startPathway(int position) {
+    keggEntryID = 0;
+    keggUnknownNo = 0;
+    keggReactionID = 0;
+    keggPathwayNumberCounter = FIRST_PATHWAY_NUMBER + position;
+  }
+
+  /**
+   * Takes the mappers for the entered species from the
+   * {@link GeneMapperCache}, which loads them on the first request. Nothing
+   * happens, if the species is null or if the mappers are already set for
+   * this species.
+   * <p>
+   * If the mappers can not be loaded, the context is set to the species
+   * without mappers, so it does not keep the mappers of another species and
+   * does not try to load them again.
+   * 
+   * @param species
+   * @throws IOException if a mapper could not be loaded
+   */
+  public void initializeMappers(Species species) throws IOException {
+    if (species == null || species.equals(this.species)) {
+      return;
+    }
+    this.species = species;
+    this.geneSymbolResolver = null;
+    this.geneIDKeggIndex = null;
+    ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex> mappers = 
+      GeneMapperCache.getInstance().getMappers(species);
+    
+    this.geneSymbolResolver = mappers.getA();
+    this.geneIDKeggIndex = mappers.getB();
+  }
+  
+  /**
+   * @return the species for which the mappers are initialized
+   */
+  public Species getSpecies() {
+    return species;
+  }
+  
+  /**
+   * @return the mapper from gene symbols to gene ids or null
+   */
+  public GeneSymbol2GeneIDMapper getGeneSymbolMapper() {
+    return geneSymbolResolver == null ? null : geneSymbolResolver.getMapper();
+  }
+  
+  /**
+   * @return the resolver, which maps gene symbols to gene ids with the
+   *         {@link #getGeneSymbolMapper()}, or null
+   */
+  public GeneSymbolResolver getGeneSymbolResolver() {
+    return geneSymbolResolver;
+  }
+  
+  /**
+   * @return the index from gene ids to KEGG ids or null
+   */
+  public GeneIDKeggIndex getGeneIDKeggIndex() {
+    return geneIDKeggIndex;
+  }
+  
+  /**
+   * @return true, if at least one mapper is initialized
+   */
+  public boolean isSetMappers() {
+    return geneSymbolResolver != null || geneIDKeggIndex != null;
+  }
+  
+  /**
+   * @param keggPW
+   * @return the index of the entered pathway. Only the index of the last
+   *         requested pathway is kept.
+   */
+  public PathwayIndex getPathwayIndex(Pathway keggPW) {
+    if (pathwayIndex == null || pathwayIndex.getPathway() != keggPW) {
+      pathwayIndex = new PathwayIndex(keggPW);
+    }
+    return pathwayIndex;
+  }
+  
+  /**
+   * @param keggPW
+   * @return the cache of entries, which were created for BioPAX elements in
+   *         the entered pathway. Only the entries of the last requested
+   *         pathway are kept, the hit and miss counts cover all pathways of
+   *         this context.
+   */
+  public IdentityCache<BioPAXElement, EntryExtended> getEntityCache(Pathway keggPW) {
+    if (entityCachePathway != keggPW) {
+      entityCache.clear();
+      entityCachePathway = keggPW;
+    }
+    return entityCache;
+  }
+  
+  /**
+   * @return the next unique entry id
+   */
+  public int nextEntryID() {
+    return ++keggEntryID;
+  }
+  
+  /**
+   * @return the next number for an unknown entry name
+   */
+  public int nextUnknownNo() {
+    return ++keggUnknownNo;
+  }
+  
+  /**
+   * @return the next number for a reaction name
+   */
+  public int nextReactionID() {
+    return ++keggReactionID;
+  }
+  
+  /**
+   * @return the next pathway number
+   */
+  public int nextPathwayNumber() {
+    return keggPathwayNumberCounter++;
+  }
+  
+}
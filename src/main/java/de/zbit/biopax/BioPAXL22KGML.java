@@ -32,6 +32,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,7 +59,6 @@ import org.biopax.paxtools.model.level2.physicalEntity;
 import org.biopax.paxtools.model.level2.physicalEntityParticipant;
 import org.biopax.paxtools.model.level2.process;
 import org.biopax.paxtools.model.level2.protein;
-import org.biopax.paxtools.model.level2.relationshipXref;
 import org.biopax.paxtools.model.level2.rna;
 import org.biopax.paxtools.model.level2.sequenceEntity;
 import org.biopax.paxtools.model.level2.sequenceParticipant;
@@ -86,7 +87,6 @@ import de.zbit.util.SortedArrayList;
 import de.zbit.util.Species;
 import de.zbit.util.Utils;
 import de.zbit.util.objectwrapper.ValuePairUncomparable;
-import de.zbit.util.progressbar.ProgressBar;
 
 /**
  * This class works with PaxTools. It is used to fetch information out of a
@@ -99,6 +99,22 @@ import de.zbit.util.progressbar.ProgressBar;
 public class BioPAXL22KGML extends BioPAX2KGML {
   
   public static final Logger log = Logger.getLogger(BioPAXL22KGML.class.getName());
+
+  /**
+   * Creates a converter with a new, empty {@link BioPAXConversionContext}.
+   */
+  public BioPAXL22KGML() {
+    super();
+  }
+  
+  /**
+   * Creates a converter, which uses the entered context.
+   * 
+   * @param context
+   */
+  public BioPAXL22KGML(BioPAXConversionContext context) {
+    super(context);
+  }
  
   /**
    * The methods parse a BioPax file which contains no <bp>Pathway: ....</bp> tag
@@ -150,19 +166,23 @@ public class BioPAXL22KGML extends BioPAX2KGML {
   
   /**
    * this method parses the biopax pathway by firstly determining the pathway species and
-   * then parsing the single pathway
+   * then parsing the single pathway. The counters of the context restart for
+   * each pathway (see {@link BioPAXConversionContext#startPathway(int)}).
    * @param m
    * @param pathways
+   * @param queue if not null, each pathway is put into this queue as soon as it
+   *        is converted and the returned collection stays empty
    * @return
    */
   protected Collection<Pathway> createPathways(Model m, String comment, Set<pathway> pathways, 
-      Species species) {    
+      Species species, BlockingQueue<Pathway> queue) {    
     if (species!=null) {
       initalizeMappers(species);
     }
     
     Collection<Pathway> keggPWs = new ArrayList<Pathway>();
 
+    int position = 0;
     for (pathway pathway : pathways) {
       // determine the pathway organism - it's done here to save time, while initializing the mappers
       Species newSpecies = determineSpecies(pathway.getORGANISM());
@@ -170,11 +190,69 @@ public class BioPAXL22KGML extends BioPAX2KGML {
         initalizeMappers(newSpecies);
         species = newSpecies;
       }
-      keggPWs.add(createPathway(m, comment, pathway, species));
+      context.startPathway(position++);
+      if (!addPathway(createPathway(m, comment, pathway, species), keggPWs, queue)) {
+        break;
+      }
     }
     return keggPWs;
   }
   
+  /**
+   * Converts the pathways like {@link #createPathways(Model, String, Set, Species, BlockingQueue)},
+   * but with the given number of threads. The species of the pathways are
+   * determined sequentially in input order, the mappers are loaded once per
+   * species and each pathway is converted by a new converter with its own
+   * {@link BioPAXConversionContext}. As in the sequential conversion, the
+   * counters restart for each pathway (see
+   * {@link BioPAXConversionContext#startPathway(int)}), so the pathways do
+   * not depend on the number of threads.
+   * 
+   * @param m
+   * @param comment
+   * @param pathways
+   * @param species default species, if no species can be determined
+   * @param threads
+   * @param queue if not null, each pathway is put into this queue as soon as it
+   *        is converted and the returned collection stays empty
+   * @return the pathways in the iteration order of <code>pathways</code>
+   */
+  protected Collection<Pathway> createPathways(final Model m, final String comment, 
+      Set<pathway> pathways, Species species, int threads, BlockingQueue<Pathway> queue) {
+    if (threads <= 1) {
+      return createPathways(m, comment, pathways, species, queue);
+    }
+    
+    Map<Species, BioPAXConversionContext> mappersBySpecies = 
+      new HashMap<Species, BioPAXConversionContext>();
+    List<Callable<Pathway>> tasks = new ArrayList<Callable<Pathway>>(pathways.size());
+    int position = 0;
+    for (final pathway pathway : pathways) {
+      Species newSpecies = determineSpecies(pathway.getORGANISM());
+      if (newSpecies != null) {
+        species = newSpecies;
+      }
+      BioPAXConversionContext mappers = mappersBySpecies.get(species);
+      if (mappers == null) {
+        mappers = newContext(species);
+        mappersBySpecies.put(species, mappers);
+      }
+      
+      BioPAXConversionContext conversion = mappers.newConversion();
+      conversion.startPathway(position++);
+      final BioPAXL22KGML converter = new BioPAXL22KGML(conversion);
+      final Species pwSpecies = species;
+      tasks.add(new Callable<Pathway>() {
+        @Override
+        public Pathway call() {
+          return converter.createPathway(m, comment, pathway, pwSpecies);
+        }
+      });
+    }
+    
+    return convertInParallel(tasks, threads, queue);
+  }
+  
   /**
    * determines the species of the pathway and returns {@link Species}
    * the default species is null
@@ -188,12 +266,12 @@ public class BioPAXL22KGML extends BioPAX2KGML {
       unificationXref ref = pwOrg.getTAXON_XREF();
       if (ref != null) {
         if (ref.getDB().toLowerCase().equals(DatabaseIdentifiers.IdentifierDatabases.NCBI_Taxonomy.toString().toLowerCase())) {
-          detSpecies = Species.search(allSpecies, ref.getID(), Species.NCBI_TAX_ID);
+          detSpecies = SpeciesRegistry.getInstance().search(ref.getID());
         }
       }
-      if (pwOrg.getNAME() != null) {
+      if (detSpecies == null && pwOrg.getNAME() != null) {
         String newSpecies = pwOrg.getNAME();
-        detSpecies = Species.search(allSpecies, newSpecies, Species.COMMON_NAME);        
+        detSpecies = SpeciesRegistry.getInstance().search(newSpecies);
       } 
     } 
 
@@ -214,7 +292,7 @@ public class BioPAXL22KGML extends BioPAX2KGML {
    * @return
    */
   Pathway createPathway(Model m, String comment, pathway pathway, Species species) {
-    if(species!=null && geneSymbolMapper==null && geneIDKEGGmapper==null){
+    if(species!=null && !context.isSetMappers()){
       initalizeMappers(species);
     }
     
@@ -271,11 +349,8 @@ public class BioPAXL22KGML extends BioPAX2KGML {
 //    }
   }
   /**
-   * deteremines the gene ids of the elements in a pathway
-   * 
-   * This method is not so clean should be rewritten, becuase in the method
-   * {@link BioPAXL22KGML#getEntrezGeneIDsForPathways(List, String, Model)}
-   * complexes are not treated right
+   * deteremines the gene ids of the elements in a pathway, see
+   * {@link BioPAX2KGML#addEntrezGeneIDs(List)}
    * 
    * @param pathways
    * @param species
@@ -285,37 +360,12 @@ public class BioPAXL22KGML extends BioPAX2KGML {
   public List<BioPAXPathwayHolder> getEntrezGeneIDsForPathways(
       List<BioPAXPathwayHolder> pathways, String species, Model m) {
     log.info("Start parsing gene ids.");
-    ProgressBar bar = new ProgressBar(pathways.size());
-
-    Map<String, relationshipXref> xrefs = getMapFromSet(m.getObjects(relationshipXref.class));
-    for (BioPAXPathwayHolder pw : pathways) {
-      // if (pw.getRDFid().equals("http://pid.nci.nih.gov/biopaxpid_9796"))
-      // {//TODO: is necessary to uncomment!!!!
-      log.log(Level.FINER, "Pathway: " + pw.getPathwayName() + ": " + pw.getNoOfEntities());
-      Set<entity> pwEntities = new HashSet<entity>();
-      for (BioPAXElement entity : pw.entities) {
-        pwEntities.addAll(getEntitiesWithName((entity)entity));
-        if (!(Pathway.class.isAssignableFrom(entity.getClass())))// entity
-                                                                 // instanceof
-                                                                 // Pathway ||
-                                                                 // entity
-                                                                 // instanceof
-                                                                 // PathwayImpl))
-          log.log(Level.FINER, "--Input: " + entity.getRDFId() + "\t" + entity.getModelInterface());
-      }
-
-//      Map<entity, Integer> geneIDs = getEntrezGeneIDs(pwEntities, species, xrefs);
-//      for (java.util.Map.Entry<entity, Integer> entity : geneIDs.entrySet()) {
-//        log.log(Level.FINER, "----res: " + entity.getKey() + " " + entity.getValue());
-//        pw.addGeneID(entity.getValue());
-//      }
-      //TODO rewrite this method
-      // }//TODO: is necessary to uncomment!!!!
-      bar.DisplayBar();
-    }
+    initalizeMappersForSpecies(species);
+    addEntrezGeneIDs(pathways);
 
     return pathways;
   }
+
   
   /**
    * returns a list of all pathways containing pathway components
@@ -362,26 +412,57 @@ public class BioPAXL22KGML extends BioPAX2KGML {
    */
   protected Collection<? extends entity> getEntitiesWithName(entity entity) {
     Set<entity> resEntities = new HashSet<entity>();
+    collectEntitiesWithName(entity, resEntities);
+    return resEntities;
+  }
+  
+  /**
+   * Adds the entities of {@link #getEntitiesWithName(entity)} to the entered
+   * set, without creating a new set on each level of complexes.
+   * 
+   * @param entity
+   * @param resEntities
+   */
+  private void collectEntitiesWithName(entity entity, Set<? super entity> resEntities) {
     String name = entity==null?null:entity.getNAME();
 
     if (name!=null && !name.isEmpty() && !(pathway.class.isAssignableFrom(entity.getClass()))) {
       if (complex.class.isAssignableFrom(entity.getClass())) {
         complex c = (complex) entity;
         for (physicalEntityParticipant pe : c.getCOMPONENTS()) {
-          resEntities.addAll(getEntitiesWithName(pe.getPHYSICAL_ENTITY()));
+          collectEntitiesWithName(pe.getPHYSICAL_ENTITY(), resEntities);
         }
       } else if (complexAssembly.class.isAssignableFrom(entity.getClass())) {
         complexAssembly c = (complexAssembly) entity;
         for (InteractionParticipant pe : c.getPARTICIPANTS()) {
-          resEntities.addAll(getEntitiesWithName(((physicalEntityParticipant)pe).getPHYSICAL_ENTITY()));          
+          collectEntitiesWithName(((physicalEntityParticipant)pe).getPHYSICAL_ENTITY(), resEntities);          
         }
 
       } else {
         resEntities.add(entity);
       }
     } 
-    return resEntities;
-  }  
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.biopax.BioPAX2KGML#addEntitiesWithName(org.biopax.paxtools.model.BioPAXElement, java.util.Set)
+   */
+  @Override
+  protected void addEntitiesWithName(BioPAXElement element, Set<BioPAXElement> entities) {
+    if (element instanceof entity) {
+      collectEntitiesWithName((entity) element, entities);
+    }
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.biopax.BioPAX2KGML#getGeneIdentifiers(org.biopax.paxtools.model.BioPAXElement)
+   */
+  @Override
+  protected Map<IdentifierDatabases, Collection<String>> getGeneIdentifiers(
+      BioPAXElement element) {
+    return getDatabaseIdentifiers((entity) element, EntryType.gene, null);
+  }
+
   
   /**
    * firstly set {@link BioPAXL22KGML#augmentOriginalKEGGpathway} to true, 
@@ -399,7 +480,7 @@ public class BioPAXL22KGML extends BioPAX2KGML {
     selfRelation = 0;
     addedSubTypes = 0;
     Set<pathway> pathways = m.getObjects(pathway.class);
-    Species species = Species.search(allSpecies, p.getOrg(), Species.KEGG_ABBR);
+    Species species = SpeciesRegistry.getInstance().getByKeggAbbr(p.getOrg());
     if(species != null){
       initalizeMappers(species);
       
@@ -564,7 +645,7 @@ public class BioPAXL22KGML extends BioPAX2KGML {
       else 
         graphName = entryName;
     
-      keggname = BioPAX2KGML.getKEGGName(identifiers, species);
+      keggname = getKEGGName(identifiers, species);
     } else if (name!=null && !name.isEmpty()){
       graphName = name;
       keggname = getKEGGUnkownName();
@@ -607,16 +688,16 @@ public class BioPAXL22KGML extends BioPAX2KGML {
 
     // checking if entry already exists
     if (!augmentOriginalKEGGpathway){
-      Collection<de.zbit.kegg.parser.pathway.Entry> entries = keggPW.getEntries();
-      if (entries != null && entries.size() > 0) {
-        for (de.zbit.kegg.parser.pathway.Entry entry : entries) {        
-            // important to ignore id, because this can differ from file to file
-            if (((EntryExtended)entry).equalsWithoutIDNameReactionComparison(keggEntry)) {            
-              keggEntry = (EntryExtended) entry;
-              return keggEntry;
-            }        
+      // only entries with the same type and graphics name can be equal
+      Collection<de.zbit.kegg.parser.pathway.Entry> entries = 
+        context.getPathwayIndex(keggPW).getEntryCandidates(keggEntry);
+      for (de.zbit.kegg.parser.pathway.Entry entry : entries) {
+        // important to ignore id, because this can differ from file to file
+        if (((EntryExtended)entry).equalsWithoutIDNameReactionComparison(keggEntry)) {
+          keggEntry = (EntryExtended) entry;
+          return keggEntry;
         }
-      }      
+      }
                
       if (!keggname.startsWith(keggUnknownName)){
         // Search an existing kegg entry, that contains this keggname
@@ -1064,13 +1145,12 @@ public class BioPAXL22KGML extends BioPAX2KGML {
 
       // checking if entry already exists
       if (!augmentOriginalKEGGpathway) {
-        Collection<de.zbit.kegg.parser.pathway.Entry> entries = keggPW.getEntries();
-        if (entries != null && entries.size() > 0) {
-          for (de.zbit.kegg.parser.pathway.Entry entry : entries) {
-            // important to ignore id, because this can differ from file to file
-            if (entry.equalsWithoutIDNameReactionComparison(keggEntry1)) {
-              keggEntry1 = (EntryExtended) entry;
-            }
+        Collection<de.zbit.kegg.parser.pathway.Entry> entries = 
+          context.getPathwayIndex(keggPW).getEntryCandidates(keggEntry1);
+        for (de.zbit.kegg.parser.pathway.Entry entry : entries) {
+          // important to ignore id, because this can differ from file to file
+          if (entry.equalsWithoutIDNameReactionComparison(keggEntry1)) {
+            keggEntry1 = (EntryExtended) entry;
           }
         }
         // add entry to pathway
@@ -1186,7 +1266,6 @@ public class BioPAXL22KGML extends BioPAX2KGML {
    */
   private Relation createKEGGRelation(de.zbit.kegg.parser.pathway.Pathway keggPW, int keggEntry1Id,
       int keggEntry2Id, RelationType type, SubType subType, Set<xref> xrefs) {
-    ArrayList<Relation> existingRels = keggPW.getRelations();
     Relation r = null;
 
     // get the references
@@ -1195,30 +1274,19 @@ public class BioPAXL22KGML extends BioPAX2KGML {
     addXrefToDatabaseMap(map, xrefs);
     
     // Check if it already exists and only create novel relations.
-    if (existingRels.size() > 0) {
-      for (Relation rel : existingRels) {
-        boolean relExists = true;
-        if ((rel.getEntry1() == keggEntry1Id && rel.getEntry2() == keggEntry2Id)) {
-          relExists &= rel.isSetType() == (type != null);
-          if (relExists && type != null)
-            relExists &= (rel.getType().equals(type));
-         
-          if (relExists && subType !=null) {
-            r = rel;
-            boolean added = r.addSubtype(subType);
-            if (augmentOriginalKEGGpathway && added){
-              addedSubTypes++;
-              r.setSource("KEGG_AND_BIOCARTA");
-            }
-            return r;
-          }          
+    if (subType != null) {
+      r = context.getPathwayIndex(keggPW).getRelation(keggEntry1Id, keggEntry2Id, type);
+      if (r != null) {
+        boolean added = r.addSubtype(subType);
+        if (augmentOriginalKEGGpathway && added){
+          addedSubTypes++;
+          r.setSource("KEGG_AND_BIOCARTA");
         }
+        return r;
       }
-
-      r = new Relation(keggEntry1Id, keggEntry2Id, type, subType);
-    } else {
-      r = new Relation(keggEntry1Id, keggEntry2Id, type, subType);
     }
+
+    r = new Relation(keggEntry1Id, keggEntry2Id, type, subType);
     
     r.addDatabaseIdentifiers(map);
     // If we are here, the relation r is NOVEL AND NOT CURRENTLY IN THE PATHWAY
@@ -1311,7 +1379,8 @@ public class BioPAXL22KGML extends BioPAX2KGML {
 
     Reaction r = null;
     boolean reactionExists = false;
-    for (Reaction existingReact : keggPW.getReactions()) {
+    for (Reaction existingReact : context.getPathwayIndex(keggPW).getReactionCandidates(substrates,
+      products)) {
       List<ReactionComponent> existingProds = existingReact.getProducts();
       List<ReactionComponent> extistingSubs = existingReact.getSubstrates();
 
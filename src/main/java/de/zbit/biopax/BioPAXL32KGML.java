@@ -33,10 +33,13 @@ import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -100,7 +103,6 @@ import de.zbit.util.SortedArrayList;
 import de.zbit.util.Species;
 import de.zbit.util.Utils;
 import de.zbit.util.objectwrapper.ValuePairUncomparable;
-import de.zbit.util.progressbar.ProgressBar;
 
 /**
  * This class works with PaxTools. It is used to fetch information out of a
@@ -114,24 +116,51 @@ public class BioPAXL32KGML extends BioPAX2KGML {
   
   public static final Logger log = Logger.getLogger(BioPAXL32KGML.class.getName());
   
+  /**
+   * pathway membership of the entities of the last model, see
+   * {@link #getEntityPathwayIndex(Model)}
+   */
+  private EntityPathwayIndex entityPathwayIndex = null;
+
+  /**
+   * Creates a converter with a new, empty {@link BioPAXConversionContext}.
+   */
+  public BioPAXL32KGML() {
+    super();
+  }
+  
+  /**
+   * Creates a converter, which uses the entered context.
+   * 
+   * @param context
+   */
+  public BioPAXL32KGML(BioPAXConversionContext context) {
+    super(context);
+  }
+  
 //  Map<String, Entity> elementsRead = new HashMap<String, Entity>();
 //  Map<String, Entity> elementsNotRead = new HashMap<String, Entity>();
 
   /**
    * this method parses the biopax pathway by firstly determining the pathway species and
-   * then parsing the single pathway
+   * then parsing the single pathway. The counters of the context restart for
+   * each pathway (see {@link BioPAXConversionContext#startPathway(int)}).
    * @param m
    * @param pathways
+   * @param queue if not null, each pathway is put into this queue as soon as it
+   *        is converted and the returned collection stays empty
    * @return
    */
   Collection<de.zbit.kegg.parser.pathway.Pathway> createPathways(Model m, 
-      String comment, Set<Pathway> pathways, Species species) {
+      String comment, Set<Pathway> pathways, Species species,
+      BlockingQueue<de.zbit.kegg.parser.pathway.Pathway> queue) {
     if (species != null)
       initalizeMappers(species);
 
     Collection<de.zbit.kegg.parser.pathway.Pathway> keggPWs = 
       new ArrayList<de.zbit.kegg.parser.pathway.Pathway>();
 
+    int position = 0;
     for (Pathway pathway : pathways) {
       // determine the pathway organism
       Species newSpecies = determineSpecies(pathway.getOrganism());
@@ -139,12 +168,72 @@ public class BioPAXL32KGML extends BioPAX2KGML {
         initalizeMappers(newSpecies);
         species = newSpecies;
       }
-      keggPWs.add(createPathway(m, comment, pathway, species));
+      context.startPathway(position++);
+      if (!addPathway(createPathway(m, comment, pathway, species), keggPWs, queue)) {
+        break;
+      }
     }
     
     return keggPWs;
   }
 
+  /**
+   * Converts the pathways like {@link #createPathways(Model, String, Set, Species, BlockingQueue)},
+   * but with the given number of threads. The species of the pathways are
+   * determined sequentially in input order, the mappers are loaded once per
+   * species and each pathway is converted by a new converter with its own
+   * {@link BioPAXConversionContext}. As in the sequential conversion, the
+   * counters restart for each pathway (see
+   * {@link BioPAXConversionContext#startPathway(int)}), so the pathways do
+   * not depend on the number of threads.
+   * 
+   * @param m
+   * @param comment
+   * @param pathways
+   * @param species default species, if no species can be determined
+   * @param threads
+   * @param queue if not null, each pathway is put into this queue as soon as it
+   *        is converted and the returned collection stays empty
+   * @return the pathways in the iteration order of <code>pathways</code>
+   */
+  Collection<de.zbit.kegg.parser.pathway.Pathway> createPathways(final Model m, 
+      final String comment, Set<Pathway> pathways, Species species, int threads,
+      BlockingQueue<de.zbit.kegg.parser.pathway.Pathway> queue) {
+    if (threads <= 1) {
+      return createPathways(m, comment, pathways, species, queue);
+    }
+    
+    Map<Species, BioPAXConversionContext> mappersBySpecies = 
+      new HashMap<Species, BioPAXConversionContext>();
+    List<Callable<de.zbit.kegg.parser.pathway.Pathway>> tasks = 
+      new ArrayList<Callable<de.zbit.kegg.parser.pathway.Pathway>>(pathways.size());
+    int position = 0;
+    for (final Pathway pathway : pathways) {
+      Species newSpecies = determineSpecies(pathway.getOrganism());
+      if (newSpecies != null) {
+        species = newSpecies;
+      }
+      BioPAXConversionContext mappers = mappersBySpecies.get(species);
+      if (mappers == null) {
+        mappers = newContext(species);
+        mappersBySpecies.put(species, mappers);
+      }
+      
+      BioPAXConversionContext conversion = mappers.newConversion();
+      conversion.startPathway(position++);
+      final BioPAXL32KGML converter = new BioPAXL32KGML(conversion);
+      final Species pwSpecies = species;
+      tasks.add(new Callable<de.zbit.kegg.parser.pathway.Pathway>() {
+        @Override
+        public de.zbit.kegg.parser.pathway.Pathway call() {
+          return converter.createPathway(m, comment, pathway, pwSpecies);
+        }
+      });
+    }
+    
+    return convertInParallel(tasks, threads, queue);
+  }
+
   /**
    * determines the species of the pathway and returns {@link Species}
    * the default species is null
@@ -160,14 +249,14 @@ public class BioPAXL32KGML extends BioPAX2KGML {
         for (Xref xref : references) {
           if(xref.getDb().toLowerCase().equals(
               DatabaseIdentifiers.IdentifierDatabases.NCBI_Taxonomy.toString().toLowerCase())){
-            detSpecies = Species.search(allSpecies, xref.getId(), Species.NCBI_TAX_ID);
+            detSpecies = SpeciesRegistry.getInstance().search(xref.getId());
           }
         }
       }
       
-      if (pwOrg.getName() != null && pwOrg.getName().size()>0) {
+      if (detSpecies == null && pwOrg.getName() != null && pwOrg.getName().size()>0) {
         String newSpecies = Utils.iterableToList(pwOrg.getName()).get(0);
-        detSpecies = Species.search(allSpecies, newSpecies, Species.COMMON_NAME);
+        detSpecies = SpeciesRegistry.getInstance().search(newSpecies);
       } 
     } 
     
@@ -225,7 +314,7 @@ public class BioPAXL32KGML extends BioPAX2KGML {
    */
   protected de.zbit.kegg.parser.pathway.Pathway createPathway(Model m, String comment, 
       Pathway pathway, Species species) {
-    if(species!=null && geneSymbolMapper==null && geneIDKEGGmapper==null){
+    if(species!=null && !context.isSetMappers()){
       initalizeMappers(species);
     }
     
@@ -245,6 +334,7 @@ public class BioPAXL32KGML extends BioPAX2KGML {
 
     
     parseInnerPathway(m, pathway, species, keggPW);
+    log.fine("Entity cache: " + context.getEntityCache(keggPW));
     
     return keggPW;
   }
@@ -296,7 +386,7 @@ public class BioPAXL32KGML extends BioPAX2KGML {
     selfRelation = 0;
     addedSubTypes = 0;
     Set<Pathway> pathways = m.getObjects(Pathway.class);
-    Species species = Species.search(allSpecies, p.getOrg(), Species.KEGG_ABBR);
+    Species species = SpeciesRegistry.getInstance().getByKeggAbbr(p.getOrg());
     if(species != null){
       initalizeMappers(species);
       
@@ -350,6 +440,7 @@ public class BioPAXL32KGML extends BioPAX2KGML {
     for (Entity entity : m.getObjects(Entity.class)) {
       parseEntity(entity, keggPW, m, species);
     }
+    log.fine("Entity cache: " + context.getEntityCache(keggPW));
     
     return keggPW;
   }
@@ -402,7 +493,12 @@ public class BioPAXL32KGML extends BioPAX2KGML {
   }
 
   /**
-   * parse a BioPax PhysicalEntity element
+   * parse a BioPax PhysicalEntity element. Each entity is only converted once
+   * per KEGG pathway, further calls return the entry from the
+   * {@link BioPAXConversionContext#getEntityCache(de.zbit.kegg.parser.pathway.Pathway)}.
+   * If {@link #augmentOriginalKEGGpathway} is set, the cache is not used,
+   * because these entries are neither added to the pathway nor compared with
+   * its entries, so each call returns a new entry as before.
    * 
    * @param entity
    * @param keggPW
@@ -412,7 +508,15 @@ public class BioPAXL32KGML extends BioPAX2KGML {
    */
   private EntryExtended parsePhysicalEntity(PhysicalEntity entity,
       de.zbit.kegg.parser.pathway.Pathway keggPW, Model m, Species species) {
+    IdentityCache<BioPAXElement, EntryExtended> cache = null;
     EntryExtended keggEntry = null;
+    if (!augmentOriginalKEGGpathway) {
+      cache = context.getEntityCache(keggPW);
+      keggEntry = cache.get(entity);
+      if (keggEntry != null) {
+        return keggEntry;
+      }
+    }
 
     if (Complex.class.isAssignableFrom(entity.getClass())) {
       List<Integer> components = createComplexComponentList(((Complex) entity).getComponent(),
@@ -444,6 +548,9 @@ public class BioPAXL32KGML extends BioPAX2KGML {
           ",", null, null);
     }
 
+    if (cache != null) {
+      cache.put(entity, keggEntry);
+    }
     return keggEntry;
   }
 
@@ -491,25 +598,19 @@ public class BioPAXL32KGML extends BioPAX2KGML {
    * @return
    */
   private List<BioPAXPathwayHolder> getPathwayEntities(String species, Model m) {
-    List<BioPAXPathwayHolder> pathways = new ArrayList<BioPAXPathwayHolder>();
-
-    for (Entity entity : m.getObjects(Entity.class)) {
-      for (Interaction string : entity.getParticipantOf()) {
-        for (Pathway pw : string.getPathwayComponentOf()) {
-          BioPAXPathwayHolder helper = new BioPAXPathwayHolder(pw.getRDFId(),
-              getPathwayName(pw));
-          int index = pathways.indexOf(helper);
-          if (index > -1) {
-            helper = pathways.get(index);
-          } else {
-            pathways.add(helper);
-          }
-          helper.addEntity(entity);
-        }
-      }
+    return getEntityPathwayIndex(m).createPathwayHolders(true);
+  }
+  
+  /**
+   * @param m
+   * @return the index of the pathways and their entities for the entered
+   *         model. The index of the last model is kept and reused.
+   */
+  protected EntityPathwayIndex getEntityPathwayIndex(Model m) {
+    if (entityPathwayIndex == null || entityPathwayIndex.getModel() != m) {
+      entityPathwayIndex = new EntityPathwayIndex(m);
     }
-
-    return pathways;
+    return entityPathwayIndex;
   }
   
   /**
@@ -557,14 +658,8 @@ public class BioPAXL32KGML extends BioPAX2KGML {
     String name = getPathwayName(pathway);
     BufferedWriter bw = new BufferedWriter(new FileWriter(new File(name + ".owl")));
 
-    for (Entity entity : m.getObjects(Entity.class)) {
-      for (Interaction string : entity.getParticipantOf()) {
-        for (Pathway pw : string.getPathwayComponentOf()) {
-          if (pw.equals(pathway)) {
-            bw.append(entity.getModelInterface() + "\t" + entity.getRDFId() + "\n");
-          }
-        }
-      }
+    for (Entity entity : getEntityPathwayIndex(m).getEntities(pathway)) {
+      bw.append(entity.getModelInterface() + "\t" + entity.getRDFId() + "\n");
     }
 
     bw.close();
@@ -579,26 +674,11 @@ public class BioPAXL32KGML extends BioPAX2KGML {
    * @return
    */
   public List<BioPAXPathwayHolder> getPathwaysWithGeneID(String species, Model m) {
-    List<BioPAXPathwayHolder> pathways = new ArrayList<BioPAXPathwayHolder>();
-
-    for (Entity entity : m.getObjects(Entity.class)) {
-      for (Interaction string : entity.getParticipantOf()) {
-        for (Pathway pw : string.getPathwayComponentOf()) {
-          BioPAXPathwayHolder helper = new BioPAXPathwayHolder(pw.getRDFId());
-          int index = pathways.indexOf(helper);
-          if (index > -1) {
-            helper = pathways.get(index);
-          } else {
-            pathways.add(helper);
-          }
-          helper.addEntity(entity);
-        }
-      }
-    }
+    List<BioPAXPathwayHolder> pathways = getEntityPathwayIndex(m).createPathwayHolders(false);
 
     Map<String, RelationshipXref> xrefs = getMapFromSet(m.getObjects(RelationshipXref.class));
     for (BioPAXPathwayHolder pw : pathways) {
-      if (pw.getPathwayName().equals("http://pid.nci.nih.gov/biopaxpid_9796")) {
+      if (pw.getRDFid().equals("http://pid.nci.nih.gov/biopaxpid_9796")) {
         log.log(Level.FINER, "Pathway: " + pw.getPathwayName() + ": " + pw.getNoOfEntities());
         Set<BioPAXElement> pwEntities = new HashSet<BioPAXElement>();
         for (BioPAXElement entity : pw.entities) {
@@ -651,7 +731,7 @@ public class BioPAXL32KGML extends BioPAX2KGML {
         graphName = BioPAX2KGML.getShortestString(names);
       }
       
-      keggname = BioPAX2KGML.getKEGGName(identifiers, species);
+      keggname = getKEGGName(identifiers, species);
 
     
     } else if (name!=null && !name.isEmpty()){
@@ -697,16 +777,16 @@ public class BioPAXL32KGML extends BioPAX2KGML {
     // checking if entry already exists
 
     if (!augmentOriginalKEGGpathway){
-      Collection<de.zbit.kegg.parser.pathway.Entry> entries = keggPW.getEntries();
-      if (entries != null && entries.size() > 0) {
-        for (de.zbit.kegg.parser.pathway.Entry entry : entries) {
-          // important to ignore id, because this can differ from file to file
-          if (((EntryExtended)entry).equalsWithoutIDNameReactionComparison(keggEntry)) {            
-            keggEntry = (EntryExtended) entry;
-            return keggEntry;
-          }        
+      // only entries with the same type and graphics name can be equal
+      Collection<de.zbit.kegg.parser.pathway.Entry> entries = 
+        context.getPathwayIndex(keggPW).getEntryCandidates(keggEntry);
+      for (de.zbit.kegg.parser.pathway.Entry entry : entries) {
+        // important to ignore id, because this can differ from file to file
+        if (((EntryExtended)entry).equalsWithoutIDNameReactionComparison(keggEntry)) {
+          keggEntry = (EntryExtended) entry;
+          return keggEntry;
         }
-      }            
+      }
             
       if (!keggname.startsWith(keggUnknownName)){
         // Search an existing kegg entry, that contains this keggname
@@ -951,13 +1031,12 @@ public class BioPAXL32KGML extends BioPAX2KGML {
 
       // checking if entry already exists
       if (!augmentOriginalKEGGpathway) {
-        Collection<de.zbit.kegg.parser.pathway.Entry> entries = keggPW.getEntries();
-        if (entries != null && entries.size() > 0) {
-          for (de.zbit.kegg.parser.pathway.Entry entry : entries) {
-            // important to ignore id, because this can differ from file to file
-            if (entry.equalsWithoutIDNameReactionComparison(keggEntry1)) {
-              keggEntry1 = (EntryExtended) entry;
-            }
+        Collection<de.zbit.kegg.parser.pathway.Entry> entries = 
+          context.getPathwayIndex(keggPW).getEntryCandidates(keggEntry1);
+        for (de.zbit.kegg.parser.pathway.Entry entry : entries) {
+          // important to ignore id, because this can differ from file to file
+          if (entry.equalsWithoutIDNameReactionComparison(keggEntry1)) {
+            keggEntry1 = (EntryExtended) entry;
           }
         }
         // add entry to pathway
@@ -1106,11 +1185,8 @@ public class BioPAXL32KGML extends BioPAX2KGML {
   }  
 
   /**
-   * deteremines the gene ids of the elements in a pathway
-   * 
-   * This method is not so clean should be rewritten, becuase in the method
-   * {@link BioPAXL32KGML#getEntrezGeneIDsForPathways(List, String, Model)}
-   * complexes are not treated right
+   * deteremines the gene ids of the elements in a pathway, see
+   * {@link BioPAX2KGML#addEntrezGeneIDs(List)}
    * 
    * @param pathways
    * @param species
@@ -1120,31 +1196,12 @@ public class BioPAXL32KGML extends BioPAX2KGML {
   public List<BioPAXPathwayHolder> getEntrezGeneIDsForPathways(
       List<BioPAXPathwayHolder> pathways, String species, Model m) {
     log.info("Start parsing gene ids.");
-    ProgressBar bar = new ProgressBar(pathways.size());
-
-    Map<String, RelationshipXref> xrefs = getMapFromSet(m.getObjects(RelationshipXref.class));
-    for (BioPAXPathwayHolder pw : pathways) {
-      // if (pw.getRDFid().equals("http://pid.nci.nih.gov/biopaxpid_9796"))
-      // {//TODO: is necessary to uncomment!!!!
-      log.log(Level.FINER, "Pathway: " + pw.getPathwayName() + ": " + pw.getNoOfEntities());
-      Set<BioPAXElement> pwEntities = new HashSet<BioPAXElement>();
-      for (BioPAXElement entity : pw.entities) {
-        pwEntities.addAll(getEntitiesWithName((Entity) entity));
-        if (!(Pathway.class.isAssignableFrom(entity.getClass())))
-          log.log(Level.FINER, "--Input: " + entity.getRDFId() + "\t" + entity.getModelInterface());
-      }
-
-//      Map<Entity, Integer> geneIDs = getEntrezGeneIDs(pwEntities, species, xrefs);
-//      for (java.util.Map.Entry<Entity, Integer> entity : geneIDs.entrySet()) {
-//        log.log(Level.FINER, "----res: " + entity.getKey() + " " + entity.getValue());
-//        pw.addGeneID(entity.getValue());
-//      }
-      // }//TODO: is necessary to uncomment!!!!
-      bar.DisplayBar();
-    }
+    initalizeMappersForSpecies(species);
+    addEntrezGeneIDs(pathways);
 
     return pathways;
   }
+
   
   /**
    * The method returns the smallest entity having a name, i.e. a gene symbol,
@@ -1156,18 +1213,33 @@ public class BioPAXL32KGML extends BioPAX2KGML {
    */
   protected static Collection<? extends BioPAXElement> getEntitiesWithName(Entity entity) {
     Set<BioPAXElement> resEntities = new HashSet<BioPAXElement>();
+    collectEntitiesWithName(entity, resEntities);
+    return resEntities;
+  }
+  
+  /**
+   * Adds the entities of {@link #getEntitiesWithName(Entity)} to the entered
+   * set, without creating a new set on each level of complexes and
+   * interactions.
+   * 
+   * @param entity
+   * @param resEntities
+   */
+  private static void collectEntitiesWithName(Entity entity, Set<BioPAXElement> resEntities) {
     Set<String> name = entity.getName();
 
     if (name!=null && name.size() > 0 && !(Pathway.class.isAssignableFrom(entity.getClass()))) {
       if (Complex.class.isAssignableFrom(entity.getClass())) {
         Complex c = (Complex) entity;
         for (PhysicalEntity pe : c.getComponent()) {
-          resEntities.addAll(getEntitiesWithName(pe));
+          collectEntitiesWithName(pe, resEntities);
         }
       } else if (ComplexAssembly.class.isAssignableFrom(entity.getClass())) {
         ComplexAssembly c = (ComplexAssembly) entity;
         for (Stoichiometry pe : c.getParticipantStoichiometry()) {
-          resEntities.addAll(getEntitiesWithName((Entity) pe));
+          if (pe.getPhysicalEntity() != null) {
+            collectEntitiesWithName(pe.getPhysicalEntity(), resEntities);
+          }
         }
 
       } else {
@@ -1176,12 +1248,31 @@ public class BioPAXL32KGML extends BioPAX2KGML {
     } else if (entity.getParticipantOf().size() > 0
         && !(Pathway.class.isAssignableFrom(entity.getClass()))) {
       for (Entity entity2 : entity.getParticipantOf()) {
-        resEntities.addAll(getEntitiesWithName(entity2));
+        collectEntitiesWithName(entity2, resEntities);
       }
     }
-    return resEntities;
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.biopax.BioPAX2KGML#addEntitiesWithName(org.biopax.paxtools.model.BioPAXElement, java.util.Set)
+   */
+  @Override
+  protected void addEntitiesWithName(BioPAXElement element, Set<BioPAXElement> entities) {
+    if (element instanceof Entity) {
+      collectEntitiesWithName((Entity) element, entities);
+    }
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.biopax.BioPAX2KGML#getGeneIdentifiers(org.biopax.paxtools.model.BioPAXElement)
+   */
+  @Override
+  protected Map<IdentifierDatabases, Collection<String>> getGeneIdentifiers(
+      BioPAXElement element) {
+    return getDatabaseIdentifiers((Entity) element, EntryType.gene, null);
   }
 
+
 //  /**
 //   * This method maps to all gene symbols of the entered entities the
 //   * corresponding gene id It's an advantage to preprocess the entities to
@@ -1297,19 +1388,19 @@ public class BioPAXL32KGML extends BioPAX2KGML {
               if (con instanceof BiochemicalReaction) {
                 BiochemicalReaction br = (BiochemicalReaction) con; 
                 r = createKEGGReaction(br.getLeft(), br.getRight(),
-                    Utils.iterableToList(br.getParticipantStoichiometry()), keggPW, m, species,
+                    br.getParticipantStoichiometry(), keggPW, m, species,
                         getReactionType(con.getConversionDirection()), br.getXref());
 
               } else if (con instanceof ComplexAssembly) {
                 ComplexAssembly ca = (ComplexAssembly) con;
                 r = createKEGGReaction(ca.getLeft(), ca.getRight(),
-                    Utils.iterableToList(ca.getParticipantStoichiometry()), keggPW, m, species,
+                    ca.getParticipantStoichiometry(), keggPW, m, species,
                         getReactionType(con.getConversionDirection()), ca.getXref());
 
               } else if (con instanceof TransportWithBiochemicalReaction) {
                 TransportWithBiochemicalReaction tbr = (TransportWithBiochemicalReaction) con; 
                 r = createKEGGReaction(tbr.getLeft(), tbr.getRight(),
-                    Utils.iterableToList(tbr.getParticipantStoichiometry()), keggPW, m, species,
+                    tbr.getParticipantStoichiometry(), keggPW, m, species,
                         getReactionType(con.getConversionDirection()), tbr.getXref());
 
               } else {
@@ -1317,70 +1408,24 @@ public class BioPAXL32KGML extends BioPAX2KGML {
               }
 
               if (r!=null) {
-                if (keggEntry1s != null && keggEntry1s.size()>0) {
-                  for (ValuePairUncomparable<EntryExtended, RelationType> vp : keggEntry1s) {
-                    if (vp.getB().equals(RelationType.maplink)) {
-                      for (ReactionComponent rc : r.getSubstrates()) {
-                        createKEGGRelation(keggPW, vp.getA().getId(), rc.getId(), vp.getB(), subtype,
-                            con.getXref());
-                      }
-                    } else if (vp.getB().equals(RelationType.PPrel) && r!=null) {
-                      vp.getA().appendReaction(r.getName());
-                    }  
-                  }
-                } else if (keggEntry1 != null){
-                  for (ReactionComponent rc : r.getSubstrates()) {
-                    createKEGGRelation(keggPW, keggEntry1.getId(), rc.getId(), RelationType.maplink, subtype,
-                        con.getXref());
-                  }
-                }
+                createKEGGReactionRelations(keggEntry1s, keggEntry1, r, keggPW, subtype, con.getXref());
               }
             }
           } else if (Transport.class.isAssignableFrom(con.getClass())) {
             Transport t = (Transport) con;
             Reaction r = createKEGGReaction(t.getLeft(), t.getRight(), 
-                Utils.collectionToList(t.getParticipantStoichiometry()),
+                t.getParticipantStoichiometry(),
                 keggPW, m, species, getReactionType(t.getConversionDirection()), t.getXref());   
             if (r!=null) {
-              if (keggEntry1s!=null && keggEntry1s.size()>0) {
-                for (ValuePairUncomparable<EntryExtended, RelationType> vp : keggEntry1s) {
-                  if (vp.getB().equals(RelationType.maplink) && r!=null) {
-                    for (ReactionComponent rc : r.getSubstrates()) {
-                      createKEGGRelation(keggPW, vp.getA().getId(), rc.getId(), vp.getB(), subtype, 
-                          con.getXref());
-                    }
-                  } else if (vp.getB().equals(RelationType.PPrel) && r!=null) {
-                    vp.getA().appendReaction(r.getName());
-                  }  
-                }
-              } else if (keggEntry1!=null) {
-                for (ReactionComponent rc : r.getSubstrates()) {
-                  createKEGGRelation(keggPW, keggEntry1.getId(), rc.getId(), RelationType.maplink,  
-                      subtype, con.getXref());
-                }
-              }
+              createKEGGReactionRelations(keggEntry1s, keggEntry1, r, keggPW, subtype, con.getXref());
             }
           } else if (Degradation.class.isAssignableFrom(con.getClass())) {
             Degradation d = (Degradation) con;
             Reaction r = createKEGGReaction(d.getLeft(), d.getRight(), 
-                Utils.collectionToList(d.getParticipantStoichiometry()), keggPW, m, species, 
+                d.getParticipantStoichiometry(), keggPW, m, species, 
                 getReactionType(d.getConversionDirection()), d.getXref());   
             if(r!=null) {
-              if (keggEntry1s!=null && keggEntry1s.size()>0){
-                for (ValuePairUncomparable<EntryExtended, RelationType> vp : keggEntry1s) {
-                  if (vp.getB().equals(RelationType.maplink) && r!=null) {
-                    for (ReactionComponent rc : r.getSubstrates()) {
-                      createKEGGRelation(keggPW, vp.getA().getId(), rc.getId(), vp.getB(), subtype, con.getXref());
-                    }
-                  } else if (vp.getB().equals(RelationType.PPrel) && r!=null) {
-                    vp.getA().appendReaction(r.getName());
-                  }  
-                }
-              } else if (keggEntry1!=null) {
-                for (ReactionComponent rc : r.getSubstrates()) {
-                  createKEGGRelation(keggPW, keggEntry1.getId(), rc.getId(), RelationType.maplink, subtype, con.getXref());
-                }
-              }
+              createKEGGReactionRelations(keggEntry1s, keggEntry1, r, keggPW, subtype, con.getXref());
             }
           } else if (Conversion.class.isAssignableFrom(con.getClass())){
               List<Relation> rels =  createKEGGRelations(con.getLeft(), con.getRight(), keggPW, 
@@ -1456,6 +1501,47 @@ public class BioPAXL32KGML extends BioPAX2KGML {
     return keggEntry1;
   }
 
+  /**
+   * Links the controllers of a conversion to the KEGG reaction <code>r</code>
+   * that was created for it: maplink controllers get a relation to every
+   * substrate, PPrel controllers get the reaction name appended. Without
+   * controllers, <code>keggEntry1</code> (if any) is linked to the substrates.
+   * 
+   * @param keggEntry1s
+   * @param keggEntry1
+   * @param r
+   * @param keggPW
+   * @param subtype
+   * @param xrefs
+   */
+  private void createKEGGReactionRelations(
+      List<ValuePairUncomparable<EntryExtended, RelationType>> keggEntry1s, EntryExtended keggEntry1,
+      Reaction r, de.zbit.kegg.parser.pathway.Pathway keggPW, SubType subtype, Set<Xref> xrefs) {
+    List<ReactionComponent> substrates = r.getSubstrates();
+    int[] substrateIds = new int[substrates.size()];
+    for (int i = 0; i < substrateIds.length; i++) {
+      substrateIds[i] = substrates.get(i).getId();
+    }
+
+    if (keggEntry1s != null && keggEntry1s.size() > 0) {
+      for (ValuePairUncomparable<EntryExtended, RelationType> vp : keggEntry1s) {
+        if (vp.getB().equals(RelationType.maplink)) {
+          int entry1Id = vp.getA().getId();
+          for (int substrateId : substrateIds) {
+            createKEGGRelation(keggPW, entry1Id, substrateId, vp.getB(), subtype, xrefs);
+          }
+        } else if (vp.getB().equals(RelationType.PPrel)) {
+          vp.getA().appendReaction(r.getName());
+        }
+      }
+    } else if (keggEntry1 != null) {
+      int entry1Id = keggEntry1.getId();
+      for (int substrateId : substrateIds) {
+        createKEGGRelation(keggPW, entry1Id, substrateId, RelationType.maplink, subtype, xrefs);
+      }
+    }
+  }
+
   /**
    * returns teh appropriate KEGG ReactionType to the ConverstionDirectionType
    * @param conversionDirection
@@ -1491,25 +1577,25 @@ public class BioPAXL32KGML extends BioPAX2KGML {
       if  (!augmentOriginalKEGGpathway){
         ComplexAssembly ca = (ComplexAssembly) entity;
         createKEGGReaction(ca.getLeft(), ca.getRight(),
-            Utils.iterableToList(ca.getParticipantStoichiometry()), keggPW, m, species, 
+            ca.getParticipantStoichiometry(), keggPW, m, species, 
             getReactionType(ca.getConversionDirection()), ca.getXref());
       }
     } else if (BiochemicalReaction.class.isAssignableFrom(entity.getClass())) {
       if  (!augmentOriginalKEGGpathway){
         BiochemicalReaction br = (BiochemicalReaction) entity; 
         createKEGGReaction(br.getLeft(), br.getRight(),
-          Utils.iterableToList(br.getParticipantStoichiometry()), keggPW, m, species, 
+          br.getParticipantStoichiometry(), keggPW, m, species, 
           getReactionType(br.getConversionDirection()), br.getXref());
       }
     } else if (Degradation.class.isAssignableFrom(entity.getClass())) {
       Degradation d = (Degradation) entity;
       createKEGGReaction(d.getLeft(), d.getRight(), 
-          Utils.collectionToList(d.getParticipantStoichiometry()),
+          d.getParticipantStoichiometry(),
           keggPW, m, species, getReactionType(d.getConversionDirection()), d.getXref()); 
     } else if (Transport.class.isAssignableFrom(entity.getClass())) {
       Transport t = (Transport) entity;
       createKEGGReaction(t.getLeft(), t.getRight(),  
-          Utils.collectionToList(t.getParticipantStoichiometry()),
+          t.getParticipantStoichiometry(),
           keggPW, m, species, getReactionType(t.getConversionDirection()), t.getXref()); 
     } else if (TransportWithBiochemicalReaction.class.isAssignableFrom(entity.getClass())) {
       if  (!augmentOriginalKEGGpathway){
@@ -1517,7 +1603,7 @@ public class BioPAXL32KGML extends BioPAX2KGML {
         // deltaG, deltaH, deltaS, ec, and KEQ are ignored
         BiochemicalReaction br = (BiochemicalReaction) entity; 
         createKEGGReaction(br.getLeft(), br.getRight(), 
-            Utils.iterableToList(br.getParticipantStoichiometry()),
+            br.getParticipantStoichiometry(),
           keggPW, m, species, getReactionType(br.getConversionDirection()), br.getXref());
       }
     } else if (Conversion.class.isAssignableFrom(entity.getClass())){
@@ -1617,39 +1703,25 @@ public class BioPAXL32KGML extends BioPAX2KGML {
    */
   private Relation createKEGGRelation(de.zbit.kegg.parser.pathway.Pathway keggPW, int keggEntry1Id,
       int keggEntry2Id, RelationType type, SubType subType, Set<Xref> xrefs) {
-    ArrayList<Relation> existingRels = keggPW.getRelations();
     Relation r = null;
 
- // get the references
+    // Check if it already exists and only create novel relations.
+    r = context.getPathwayIndex(keggPW).getRelation(keggEntry1Id, keggEntry2Id, type);
+    if (r != null) {
+      boolean added = r.addSubtype(subType);
+      if (augmentOriginalKEGGpathway && added){
+        addedSubTypes++;
+        r.setSource("KEGG_AND_BIOCARTA");
+      }  
+      return r;
+    }
+
+    // get the references
     Map<IdentifierDatabases, Collection<String>> map = 
       new HashMap<DatabaseIdentifiers.IdentifierDatabases, Collection<String>>();
     addXrefToDatabaseMap(map, xrefs);
-    
-    // Check if it already exists and only create novel relations.
-    if (existingRels.size() > 0) {
-      for (Relation rel : existingRels) {
-        boolean relExists = true;
-        if ((rel.getEntry1() == keggEntry1Id && rel.getEntry2() == keggEntry2Id)) {
-          relExists &= rel.isSetType() == (type != null);
-          if (relExists && type != null)
-            relExists &= (rel.getType().equals(type));
-         
-          if (relExists) {
-            r = rel;
-            boolean added = r.addSubtype(subType);
-            if (augmentOriginalKEGGpathway && added){
-              addedSubTypes++;
-              r.setSource("KEGG_AND_BIOCARTA");
-            }  
-            return r;
-          }          
-        }
-      }
 
-      r = new Relation(keggEntry1Id, keggEntry2Id, type, subType);
-    } else {
-      r = new Relation(keggEntry1Id, keggEntry2Id, type, subType);
-    }
+    r = new Relation(keggEntry1Id, keggEntry2Id, type, subType);
     
     r.addDatabaseIdentifiers(map);
     
@@ -1671,6 +1743,30 @@ public class BioPAXL32KGML extends BioPAX2KGML {
     return r;
   }
 
+  /**
+   * Maps every participant of a conversion to its stoichiometric coefficient,
+   * so that both sides of the reaction can be looked up without rescanning
+   * the {@link Stoichiometry} list. Only the first {@link Stoichiometry} of a
+   * participant counts and coefficients outside of ]0, Integer.MAX_VALUE[
+   * are mapped to <code>null</code>.
+   * 
+   * @param stoichiometry
+   * @return identity map from participant to coefficient
+   */
+  private static Map<PhysicalEntity, Integer> getStoichiometricCoefficients(
+      Collection<Stoichiometry> stoichiometry) {
+    Map<PhysicalEntity, Integer> coefficients = new IdentityHashMap<PhysicalEntity, Integer>();
+    if (stoichiometry != null) {
+      for (Stoichiometry stoichi : stoichiometry) {
+        PhysicalEntity pe = stoichi.getPhysicalEntity();
+        if (pe == null || coefficients.containsKey(pe)) continue;
+        Integer stoich = (int) stoichi.getStoichiometricCoefficient();
+        coefficients.put(pe, (stoich > 0 && stoich < Integer.MAX_VALUE) ? stoich : null);
+      }
+    }
+    return coefficients;
+  }
+
   /**
    * Checks if the reaction already exists in the kegg pathway. If yes the
    * existing relaction is returned, otherwise a new reaction is created and
@@ -1682,25 +1778,20 @@ public class BioPAXL32KGML extends BioPAX2KGML {
    * @param species
    */
   private Reaction createKEGGReaction(Set<PhysicalEntity> lefts, Set<PhysicalEntity> rights,
-      List<Stoichiometry> stoichiometry, de.zbit.kegg.parser.pathway.Pathway keggPW, Model m,
+      Collection<Stoichiometry> stoichiometry, de.zbit.kegg.parser.pathway.Pathway keggPW, Model m,
       Species species, ReactionType rType, Set<Xref> xrefs) {
     List<ReactionComponent> products = new ArrayList<ReactionComponent>();
     List<ReactionComponent> substrates = new ArrayList<ReactionComponent>();
+    Map<PhysicalEntity, Integer> coefficients = getStoichiometricCoefficients(stoichiometry);
 
     for (PhysicalEntity left : lefts) {
       EntryExtended keggEntry = parsePhysicalEntity(left, keggPW, m, species);
       if (keggEntry != null) {
         ReactionComponent rc = new ReactionComponent(keggEntry.getId(), keggEntry.getName());
 
-        for (Stoichiometry stoichi : stoichiometry) {
-          if (stoichi.getPhysicalEntity()==null) continue;
-          if (stoichi.getPhysicalEntity().equals(left)) {
-            Integer stoich = (int)stoichi.getStoichiometricCoefficient();
-            if (stoich >0 && stoich<Integer.MAX_VALUE) {
-              rc.setStoichiometry(stoich);
-            }
-            break;
-          }
+        Integer stoich = coefficients.get(left);
+        if (stoich != null) {
+          rc.setStoichiometry(stoich);
         }
         substrates.add(rc);  
       }
@@ -1715,18 +1806,7 @@ public class BioPAXL32KGML extends BioPAX2KGML {
 
           keggEntry.setComponents(complexEntries);
         }
-        Integer complexStoich = null;
-        for (Stoichiometry stoichi : stoichiometry) {
-          if (stoichi.getPhysicalEntity() == null)
-            continue;
-          if (stoichi.getPhysicalEntity().equals(right)) {
-            Integer stoich = (int) stoichi.getStoichiometricCoefficient();
-            if (stoich > 0 && stoich < Integer.MAX_VALUE) {
-              complexStoich = stoich;
-            }
-            break;
-          }
-        }
+        Integer complexStoich = coefficients.get(right);
 
         ReactionComponent rc = new ReactionComponent(keggEntry.getId(), keggEntry.getName());
 
@@ -1740,7 +1820,8 @@ public class BioPAXL32KGML extends BioPAX2KGML {
 
     Reaction r = null;
     boolean reactionExists = false;
-    for (Reaction existingReact : keggPW.getReactions()) {
+    for (Reaction existingReact : context.getPathwayIndex(keggPW).getReactionCandidates(substrates,
+      products)) {
       List<ReactionComponent> existingProds = existingReact.getProducts();
       List<ReactionComponent> extistingSubs = existingReact.getSubstrates();
 
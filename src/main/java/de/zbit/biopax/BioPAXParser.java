@@ -0,0 +1,66 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import org.biopax.paxtools.io.BioPAXIOHandler;
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.io.jena.JenaIOHandler;
+
+/**
+ * The parser backends, which can be used to read BioPAX owl files.
+ * 
+ * @version $Rev$
+ */
+public enum BioPAXParser {
+  
+  /**
+   * StAX-based {@link SimpleIOHandler}, which reads the file in a single pass
+   * without building an intermediate RDF graph.
+   */
+  SIMPLE {
+    @Override
+    public BioPAXIOHandler createIOHandler() {
+      return new SimpleIOHandler();
+    }
+  },
+  
+  /**
+   * {@link JenaIOHandler}, which loads the whole file into a Jena RDF model
+   * first. Slower and more memory consuming, but more lenient with unusual
+   * RDF/XML serializations.
+   */
+  JENA {
+    @Override
+    public BioPAXIOHandler createIOHandler() {
+      return new JenaIOHandler();
+    }
+  };
+  
+  /**
+   * @return a new {@link BioPAXIOHandler} of this backend
+   */
+  public abstract BioPAXIOHandler createIOHandler();
+  
+}
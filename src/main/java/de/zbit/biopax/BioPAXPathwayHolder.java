@@ -33,7 +33,8 @@ import org.biopax.paxtools.model.level3.Entity;
 
 /**
  * This class stores one BioPax pathway, its BioCarta id, the standard name, 
- * and the contained entities and gene ids in {@link Set} objects 
+ * and the contained entities in a {@link Set} and the gene ids in an
+ * {@link IntHashSet}
  * 
  * @author Finja B&uuml;chel
  * @version $Rev: 180 $
@@ -41,7 +42,7 @@ import org.biopax.paxtools.model.level3.Entity;
 public class BioPAXPathwayHolder {
 
   Set<BioPAXElement> entities = null;
-  Set<Integer> geneIDs = null;
+  IntHashSet geneIDs = null;
   String biopaxRDFid;
   String name = null;
   
@@ -109,7 +110,7 @@ public class BioPAXPathwayHolder {
     return getRDFid().hashCode()*13;
   }
 
-  public boolean addGeneID(Integer key) {
+  public boolean addGeneID(int key) {
     if(geneIDsIsSet()){
       return geneIDs.add(key);
     }
@@ -124,14 +125,21 @@ public class BioPAXPathwayHolder {
   }
 
   private boolean createGeneIDs() {
-    geneIDs = new HashSet<Integer>();
+    geneIDs = new IntHashSet();
     return true;
   }
 
-  public Set<Integer> getGeneIDs() {
+  /**
+   * @return the gene ids of the pathway or null, if no gene id was added
+   */
+  public IntHashSet getGeneIDs() {
     return geneIDs;
   }
   
+  public int getNoOfGeneIDs() {
+    return geneIDs == null ? 0 : geneIDs.size();
+  }
+  
   /**
    * 
    * @return an empty String if the name is null
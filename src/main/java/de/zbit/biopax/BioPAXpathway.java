@@ -38,7 +38,6 @@ import de.zbit.kegg.parser.pathway.Graphics;
 import de.zbit.kegg.parser.pathway.Pathway;
 import de.zbit.kegg.parser.pathway.ext.EntryExtended;
 import de.zbit.mapper.AbstractMapper;
-import de.zbit.mapper.GeneID2KeggIDMapper;
 import de.zbit.mapper.MappingUtils;
 import de.zbit.mapper.MappingUtils.IdentifierType;
 import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
@@ -106,13 +105,27 @@ public class BioPAXpathway {
    * not be determined (or is not in our list).
    */
   public static Species getSpecies(Pathway p, List<Species> availableOrganisms) {
+    SpeciesRegistry registry = SpeciesRegistry.getInstance();
+    if (availableOrganisms != registry.getSpecies()) {
+      registry = new SpeciesRegistry(availableOrganisms);
+    }
+    return getSpecies(p, registry);
+  }
+  
+  /**
+   * Get the species for a pathway.
+   * 
+   * @param p KGML formatted BioPAX pathway (see {@link #getKGMLpathway(String)}).
+   * @param registry the available organisms
+   * @return the species for the pathway or <code>NULL</code> if it could
+   * not be determined (or is not in the registry).
+   */
+  public static Species getSpecies(Pathway p, SpeciesRegistry registry) {
     // 1. try to get directly from attribute
     if (p.isSetOrg()) {
-      String keggAbbr = p.getOrg().toLowerCase().trim();
-      for (Species s : availableOrganisms) {
-        if (s.getKeggAbbr().equals(keggAbbr)) {
-          return s;
-        }
+      Species s = registry.getByKeggAbbr(p.getOrg());
+      if (s != null) {
+        return s;
       }
     }
     
@@ -122,10 +135,9 @@ public class BioPAXpathway {
     if (taxon!=null && taxon.size()>0 && taxon.iterator().next().trim().length()>0) {
       try {
         int tax = Integer.parseInt(taxon.iterator().next().trim());
-        for (Species s : availableOrganisms) {
-          if (s.getNCBITaxonID().equals(tax)) {
-            return s;
-          }
+        Species s = registry.get(tax);
+        if (s != null) {
+          return s;
         }
       } catch (Exception e) {
         log.log(Level.WARNING, "Could not match Taxon ids.", e);
@@ -243,14 +255,14 @@ public class BioPAXpathway {
    * @param species
    */
   private static void mapEntryNamesFromEntrezToKEGG(Pathway p, Species species) {
-    GeneID2KeggIDMapper mapper=null;
+    GeneIDKeggIndex mapper=null;
     try {
-      mapper = new GeneID2KeggIDMapper(species);
+      mapper = GeneIDKeggIndex.getInstance(species);
     } catch (IOException e1) {
-      log.log(Level.WARNING, "Could not establish GeneID2KeggIDMapper.", e1);
+      log.log(Level.WARNING, "Could not establish GeneIDKeggIndex.", e1);
     }
     
-    if (mapper!=null && mapper.isReady() && p.isSetEntries()) {
+    if (mapper!=null && p.isSetEntries()) {
       for (Entry e : p.getEntries()) {
         if (e.getName().toLowerCase().startsWith("unknown") && e instanceof EntryExtended) {
           EntryExtended ee = (EntryExtended) e;
@@ -0,0 +1,181 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.Entity;
+import org.biopax.paxtools.model.level3.Interaction;
+import org.biopax.paxtools.model.level3.Pathway;
+
+/**
+ * Index of the pathway membership of the entities of a BioPAX Level 3
+ * {@link Model}. An entity belongs to a pathway, if it participates in an
+ * interaction, which is a component of the pathway. The index is built in one
+ * pass over all entities and maps
+ * <ul>
+ * <li>the RDF id of each pathway to its entities and</li>
+ * <li>each entity to its pathways.</li>
+ * </ul>
+ * Pathways and entities are kept in the order in which they are found in the
+ * model.
+ * 
+ * @version $Rev$
+ */
+public class EntityPathwayIndex {
+  
+  /**
+   * pathways by their RDF id
+   */
+  private final Map<String, Pathway> pathways = new LinkedHashMap<String, Pathway>();
+  
+  /**
+   * entities by the RDF id of their pathway
+   */
+  private final Map<String, Set<Entity>> entitiesByPathway = 
+    new LinkedHashMap<String, Set<Entity>>();
+  
+  /**
+   * pathways of each entity
+   */
+  private final Map<Entity, Set<Pathway>> pathwaysByEntity = 
+    new IdentityHashMap<Entity, Set<Pathway>>();
+  
+  /**
+   * the model, from which the index was built
+   */
+  private final Model model;
+  
+  /**
+   * Builds the index for all entities of the entered model.
+   * 
+   * @param m
+   */
+  public EntityPathwayIndex(Model m) {
+    this.model = m;
+    for (Entity entity : m.getObjects(Entity.class)) {
+      for (Interaction interaction : entity.getParticipantOf()) {
+        for (Pathway pw : interaction.getPathwayComponentOf()) {
+          add(pw, entity);
+        }
+      }
+    }
+  }
+  
+  /**
+   * @param pw
+   * @param entity
+   */
+  private void add(Pathway pw, Entity entity) {
+    String id = pw.getRDFId();
+    Set<Entity> entities = entitiesByPathway.get(id);
+    if (entities == null) {
+      entities = new LinkedHashSet<Entity>();
+      entitiesByPathway.put(id, entities);
+      pathways.put(id, pw);
+    }
+    entities.add(entity);
+    
+    Set<Pathway> entityPathways = pathwaysByEntity.get(entity);
+    if (entityPathways == null) {
+      entityPathways = new LinkedHashSet<Pathway>();
+      pathwaysByEntity.put(entity, entityPathways);
+    }
+    entityPathways.add(pw);
+  }
+  
+  /**
+   * @return the model, from which the index was built
+   */
+  public Model getModel() {
+    return model;
+  }
+  
+  /**
+   * @return all pathways, which contain at least one entity
+   */
+  public Collection<Pathway> getPathways() {
+    return Collections.unmodifiableCollection(pathways.values());
+  }
+  
+  /**
+   * @param rdfId
+   * @return the pathway with the entered RDF id or null
+   */
+  public Pathway getPathway(String rdfId) {
+    return pathways.get(rdfId);
+  }
+  
+  /**
+   * @param pathway
+   * @return the entities of the pathway, never null
+   */
+  public Set<Entity> getEntities(Pathway pathway) {
+    Set<Entity> entities = entitiesByPathway.get(pathway.getRDFId());
+    return entities == null ? Collections.<Entity>emptySet() : Collections.unmodifiableSet(entities);
+  }
+  
+  /**
+   * @param entity
+   * @return the pathways of the entity, never null
+   */
+  public Set<Pathway> getPathways(Entity entity) {
+    Set<Pathway> entityPathways = pathwaysByEntity.get(entity);
+    return entityPathways == null ? Collections.<Pathway>emptySet() : 
+      Collections.unmodifiableSet(entityPathways);
+  }
+  
+  /**
+   * Creates a new {@link BioPAXPathwayHolder} with the entities of each
+   * pathway.
+   * 
+   * @param withNames if true, the holders get the name of the pathway (see
+   *        {@link BioPAXL32KGML#getPathwayName(Entity)})
+   * @return one holder per pathway
+   */
+  public List<BioPAXPathwayHolder> createPathwayHolders(boolean withNames) {
+    List<BioPAXPathwayHolder> holders = new ArrayList<BioPAXPathwayHolder>(pathways.size());
+    for (Map.Entry<String, Pathway> pw : pathways.entrySet()) {
+      BioPAXPathwayHolder holder = withNames ? 
+        new BioPAXPathwayHolder(pw.getKey(), BioPAXL32KGML.getPathwayName(pw.getValue())) :
+        new BioPAXPathwayHolder(pw.getKey());
+      for (Entity entity : entitiesByPathway.get(pw.getKey())) {
+        holder.addEntity(entity);
+      }
+      holders.add(holder);
+    }
+    return holders;
+  }
+  
+}
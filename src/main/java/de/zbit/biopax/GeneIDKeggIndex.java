@@ -0,0 +1,494 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.io.OpenFile;
+import de.zbit.mapper.GeneID2KeggIDMapper;
+import de.zbit.util.Species;
+
+/**
+ * Read-only lookup from NCBI gene ids to KEGG gene ids (e.g. 'hsa:1'), which
+ * replaces the {@link GeneID2KeggIDMapper} in the converters.
+ * <p>
+ * The index consists of the sorted gene ids, an offset table and a pool with
+ * the KEGG ids. It is generated once from the bundled
+ * <code>res/&lt;abbr&gt;_ncbi-geneid.list</code> files and written to
+ * {@link #getIndexDirectory()}, later starts memory-map this file read-only,
+ * so neither reading the list nor heap for the mapping is needed. The index
+ * stores the size and the modification time of the list, from which it was
+ * built, and is built again, if the bundled list changes. For species without
+ * bundled list the index is built once from a {@link GeneID2KeggIDMapper} and
+ * written to the same directory, it is kept until it is deleted.
+ * <p>
+ * File layout (big endian): magic, version, number of ids <i>n</i>, pool size,
+ * size of the list (long), modification time of the list (long), <i>n</i> gene
+ * ids, <i>n</i>+1 pool offsets, pool (UTF-8).
+ * 
+ * @version $Rev$
+ */
+public class GeneIDKeggIndex {
+  
+  public static final Logger log = Logger.getLogger(GeneIDKeggIndex.class.getName());
+  
+  /**
+   * system property to change the directory of the index files
+   */
+  public static final String INDEX_DIRECTORY_PROPERTY = "sbvc.index.dir";
+  
+  private static final int MAGIC = 0x474B4958; // "GKIX"
+  private static final int VERSION = 3;
+  private static final int HEADER_SIZE = 32;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  /**
+   * sorted gene ids
+   */
+  private final IntBuffer geneIDs;
+  
+  /**
+   * offset of the KEGG id of the i-th gene id in the {@link #pool}
+   */
+  private final IntBuffer offsets;
+  
+  /**
+   * UTF-8 encoded KEGG ids
+   */
+  private final ByteBuffer pool;
+  
+  private final int size;
+  
+  /**
+   * size of the list, from which the index was built, or 0
+   */
+  private final long sourceLength;
+  
+  /**
+   * modification time of the list, from which the index was built, or 0
+   */
+  private final long sourceLastModified;
+  
+  /**
+   * @param buffer the complete index, starting with the header
+   * @throws IOException if the buffer does not contain a valid index
+   */
+  private GeneIDKeggIndex(ByteBuffer buffer) throws IOException {
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a gene id index.");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported gene id index version " + buffer.getInt(4) + ".");
+    }
+    size = buffer.getInt(8);
+    int poolSize = buffer.getInt(12);
+    sourceLength = buffer.getLong(16);
+    sourceLastModified = buffer.getLong(24);
+    long poolStart = HEADER_SIZE + 4L * (2L * size + 1);
+    if (size < 0 || poolSize < 0 || buffer.capacity() != poolStart + poolSize) {
+      throw new IOException("Corrupt gene id index.");
+    }
+    geneIDs = slice(buffer, HEADER_SIZE, 4 * size).asIntBuffer();
+    offsets = slice(buffer, HEADER_SIZE + 4 * size, 4 * (size + 1)).asIntBuffer();
+    pool = slice(buffer, (int) poolStart, poolSize);
+    
+    // the gene ids must be sorted for the binary search and the offsets inside the pool
+    if (offsets.get(0) != 0 || offsets.get(size) != poolSize) {
+      throw new IOException("Corrupt gene id index.");
+    }
+    for (int i = 0; i < size; i++) {
+      if ((i > 0 && geneIDs.get(i - 1) >= geneIDs.get(i)) || offsets.get(i) > offsets.get(i + 1)) {
+        throw new IOException("Corrupt gene id index.");
+      }
+    }
+  }
+  
+  /**
+   * @param buffer
+   * @param position
+   * @param length
+   * @return a view of the entered range
+   */
+  private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(position);
+    view.limit(position + length);
+    return view.slice();
+  }
+  
+  /**
+   * @param geneID
+   * @return the KEGG id of the gene id or null
+   */
+  public String map(int geneID) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int value = geneIDs.get(mid);
+      if (value < geneID) {
+        low = mid + 1;
+      } else if (value > geneID) {
+        high = mid - 1;
+      } else {
+        int start = offsets.get(mid);
+        byte[] bytes = new byte[offsets.get(mid + 1) - start];
+        ByteBuffer view = pool.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, UTF8);
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * @return the number of gene ids
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * @return the size of the list in bytes, from which the index was built, or 0
+   */
+  public long getSourceLength() {
+    return sourceLength;
+  }
+  
+  /**
+   * @return the modification time of the list, from which the index was built,
+   *         or 0
+   */
+  public long getSourceLastModified() {
+    return sourceLastModified;
+  }
+  
+  /**
+   * @return the directory for the index files, see
+   *         {@link #INDEX_DIRECTORY_PROPERTY}. The default is
+   *         <code>~/.sbvc/index</code>, which, unlike a shared temporary
+   *         directory, can not be written by other users.
+   */
+  public static File getIndexDirectory() {
+    String dir = System.getProperty(INDEX_DIRECTORY_PROPERTY);
+    if (dir == null || dir.trim().length() == 0) {
+      return new File(new File(System.getProperty("user.home"), ".sbvc"), "index");
+    }
+    return new File(dir);
+  }
+  
+  /**
+   * @param keggAbbr
+   * @return the name of the bundled list with gene ids for the species
+   */
+  public static String getListResource(String keggAbbr) {
+    return "res/" + keggAbbr + "_ncbi-geneid.list";
+  }
+  
+  /**
+   * Returns the index for the species. An index file in
+   * {@link #getIndexDirectory()} is memory-mapped, if it was built from the
+   * current bundled list (same size and modification time, the list itself is
+   * not read). Otherwise the index is generated from the bundled list and
+   * written to this directory. If there is no bundled list, an existing index
+   * file is used, else it is built from a {@link GeneID2KeggIDMapper}, which
+   * may download the mapping, and written to this directory.
+   * 
+   * @param species must have a KEGG abbreviation
+   * @return the index of the species
+   * @throws IOException if the mapping could not be read
+   */
+  public static GeneIDKeggIndex getInstance(Species species) throws IOException {
+    String keggAbbr = species.getKeggAbbr();
+    long[] source = getSourceStamp(getListResource(keggAbbr));
+    
+    File file = new File(getIndexDirectory(), keggAbbr + "_ncbi-geneid.idx");
+    if (file.canRead()) {
+      try {
+        GeneIDKeggIndex index = map(file);
+        if (index.getSourceLength() == source[0] && index.getSourceLastModified() == source[1]) {
+          return index;
+        }
+        log.info("Gene id index '" + file + "' is outdated, it is recreated.");
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Could not read gene id index '" + file + "', it is recreated.", e);
+      }
+    }
+    
+    byte[] index;
+    BufferedReader list = OpenFile.openFile(getListResource(keggAbbr), GeneIDKeggIndex.class);
+    if (list == null) {
+      index = toIndex(new GeneID2KeggIDMapper(species).getMapping(), source[0], source[1]);
+    } else {
+      try {
+        index = build(list, source[0], source[1]);
+      } finally {
+        list.close();
+      }
+    }
+    
+    try {
+      write(index, file);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not write gene id index '" + file + "'.", e);
+    }
+    return new GeneIDKeggIndex(ByteBuffer.wrap(index));
+  }
+  
+  /**
+   * @param file an index, which was written by {@link #write(byte[], File)}
+   * @return the memory-mapped index
+   * @throws IOException
+   */
+  public static GeneIDKeggIndex map(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new GeneIDKeggIndex(buffer);
+    } finally {
+      // the mapping stays valid after closing the file
+      raf.close();
+    }
+  }
+  
+  /**
+   * @param mapping gene id to KEGG id
+   * @return an index on the heap
+   */
+  public static GeneIDKeggIndex fromMapping(Map<Integer, String> mapping) {
+    try {
+      return new GeneIDKeggIndex(ByteBuffer.wrap(toIndex(mapping, 0, 0)));
+    } catch (IOException e) {
+      // can not happen for a newly created index
+      throw new IllegalStateException(e);
+    }
+  }
+  
+  /**
+   * @param mapping gene id to KEGG id
+   * @param sourceLength
+   * @param sourceLastModified
+   * @return the index in the file layout
+   */
+  private static byte[] toIndex(Map<Integer, String> mapping, long sourceLength,
+    long sourceLastModified) {
+    int[] ids = new int[mapping.size()];
+    String[] keggIDs = new String[mapping.size()];
+    int n = 0;
+    for (Map.Entry<Integer, String> entry : mapping.entrySet()) {
+      if (entry.getKey() != null && entry.getValue() != null) {
+        ids[n] = entry.getKey();
+        keggIDs[n++] = entry.getValue();
+      }
+    }
+    return toIndex(ids, keggIDs, n, sourceLength, sourceLastModified);
+  }
+  
+  /**
+   * Determines the size and the modification time of a bundled list without
+   * reading it. The list is searched in the file system and on the class path.
+   * 
+   * @param resource see {@link #getListResource(String)}
+   * @return the size in bytes and the modification time of the list or two
+   *         zeros, if there is no such list
+   * @throws IOException
+   */
+  public static long[] getSourceStamp(String resource) throws IOException {
+    File file = new File(resource);
+    if (file.isFile()) {
+      return new long[] {file.length(), file.lastModified()};
+    }
+    URL url = GeneIDKeggIndex.class.getResource("/" + resource);
+    if (url == null) {
+      return new long[] {0, 0};
+    }
+    URLConnection connection = url.openConnection();
+    return new long[] {connection.getContentLengthLong(), connection.getLastModified()};
+  }
+  
+  /**
+   * Parses a list with lines 'abbr:keggid &lt;TAB&gt; ncbi-geneid:geneid'. If
+   * a gene id occurs more than once, the last line wins.
+   * 
+   * @param list
+   * @param sourceLength size of the list, see {@link #getSourceStamp(String)}
+   * @param sourceLastModified modification time of the list, see
+   *        {@link #getSourceStamp(String)}
+   * @return the index in the file layout
+   * @throws IOException
+   */
+  public static byte[] build(BufferedReader list, long sourceLength, long sourceLastModified)
+    throws IOException {
+    int[] ids = new int[1 << 15];
+    String[] keggIDs = new String[ids.length];
+    int n = 0;
+    String line;
+    while ((line = list.readLine()) != null) {
+      int tab = line.indexOf('\t');
+      int colon = line.indexOf(':', tab + 1);
+      if (tab < 1 || colon < 0) {
+        continue;
+      }
+      int geneID;
+      try {
+        geneID = Integer.parseInt(line.substring(colon + 1).trim());
+      } catch (NumberFormatException e) {
+        log.fine("Skipping line '" + line + "'.");
+        continue;
+      }
+      if (n == ids.length) {
+        ids = Arrays.copyOf(ids, n * 2);
+        keggIDs = Arrays.copyOf(keggIDs, n * 2);
+      }
+      ids[n] = geneID;
+      keggIDs[n++] = line.substring(0, tab).trim();
+    }
+    return toIndex(ids, keggIDs, n, sourceLength, sourceLastModified);
+  }
+  
+  /**
+   * @param ids
+   * @param keggIDs
+   * @param n number of used elements in both arrays
+   * @param sourceLength
+   * @param sourceLastModified
+   * @return the index in the file layout
+   */
+  private static byte[] toIndex(int[] ids, String[] keggIDs, int n, long sourceLength,
+    long sourceLastModified) {
+    // sort by gene id (high bits), equal ids keep their order (low bits)
+    long[] order = new long[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = ((long) ids[i] << 32) | i;
+    }
+    Arrays.sort(order);
+    
+    // keep the last occurrence of each gene id
+    int[] sortedIDs = new int[n];
+    byte[][] values = new byte[n][];
+    int size = 0;
+    int poolSize = 0;
+    for (int i = 0; i < n; i++) {
+      int index = (int) order[i];
+      if (size > 0 && sortedIDs[size - 1] == ids[index]) {
+        poolSize -= values[--size].length;
+      }
+      sortedIDs[size] = ids[index];
+      values[size] = keggIDs[index].getBytes(UTF8);
+      poolSize += values[size++].length;
+    }
+    
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * (2 * size + 1) + poolSize);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(poolSize);
+    buffer.putLong(sourceLength).putLong(sourceLastModified);
+    for (int i = 0; i < size; i++) {
+      buffer.putInt(sortedIDs[i]);
+    }
+    int offset = 0;
+    for (int i = 0; i < size; i++) {
+      buffer.putInt(offset);
+      offset += values[i].length;
+    }
+    buffer.putInt(offset);
+    for (int i = 0; i < size; i++) {
+      buffer.put(values[i]);
+    }
+    return buffer.array();
+  }
+  
+  /**
+   * Writes the index to a temporary file, which is renamed to the entered
+   * file, so that readers never see a partial index.
+   * 
+   * @param index
+   * @param file
+   * @throws IOException
+   */
+  public static void write(byte[] index, File file) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create directory '" + dir + "'.");
+    }
+    File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+    FileOutputStream out = new FileOutputStream(tmp);
+    try {
+      out.write(index);
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+        throw new IOException("Could not rename '" + tmp + "' to '" + file + "'.");
+      }
+    }
+  }
+  
+  /**
+   * Generates the index files for the bundled lists.
+   * 
+   * @param args KEGG abbreviations, default: hsa mmu rno
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      args = new String[] {"hsa", "mmu", "rno"};
+    }
+    for (String keggAbbr : args) {
+      BufferedReader list = OpenFile.openFile(getListResource(keggAbbr), GeneIDKeggIndex.class);
+      if (list == null) {
+        log.warning("No bundled list for '" + keggAbbr + "'.");
+        continue;
+      }
+      try {
+        long[] source = getSourceStamp(getListResource(keggAbbr));
+        File file = new File(getIndexDirectory(), keggAbbr + "_ncbi-geneid.idx");
+        write(build(list, source[0], source[1]), file);
+        log.info("Wrote " + file + ".");
+      } finally {
+        list.close();
+      }
+    }
+  }
+  
+}
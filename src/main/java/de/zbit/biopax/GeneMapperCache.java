@@ -0,0 +1,264 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.mapper.GeneSymbol2GeneIDMapper;
+import de.zbit.util.Species;
+import de.zbit.util.objectwrapper.ValuePairUncomparable;
+
+/**
+ * Process-wide cache of the {@link GeneSymbol2GeneIDMapper} (wrapped in a
+ * {@link GeneSymbolResolver}) and the {@link GeneIDKeggIndex} of a species,
+ * keyed by the NCBI taxonomy id.
+ * <p>
+ * The mappers are loaded lazily on the first request for a species and are
+ * only read afterwards, so they are shared between all conversions. If more
+ * than {@link #getMaximumSize()} species are cached, the least recently used
+ * species is evicted. Concurrent requests for the same species wait for a
+ * single load. A failed load is cached like a successful one, so the
+ * conversions of a species, whose mappers can not be loaded (e.g. because
+ * the download fails), do not retry it. {@link #clear()} allows a new
+ * attempt.
+ * 
+ * @version $Rev$
+ */
+public class GeneMapperCache {
+  
+  public static final Logger log = Logger.getLogger(GeneMapperCache.class.getName());
+  
+  /**
+   * default number of species, whose mappers are kept in memory
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 4;
+  
+  /**
+   * the process-wide instance
+   */
+  private static final GeneMapperCache instance = new GeneMapperCache(DEFAULT_MAXIMUM_SIZE);
+  
+  /**
+   * taxonomy id to the (possibly still loading) mappers, in access order
+   */
+  private final LinkedHashMap<Integer, FutureTask<ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex>>> mappers;
+  
+  private int maximumSize;
+  
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong loadTime = new AtomicLong();
+  
+  /**
+   * @param maximumSize number of species, whose mappers are kept in memory
+   */
+  @SuppressWarnings("serial")
+  public GeneMapperCache(int maximumSize) {
+    this.maximumSize = maximumSize;
+    this.mappers = new LinkedHashMap<Integer, FutureTask<ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex>>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+        Map.Entry<Integer, FutureTask<ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex>>> eldest) {
+        if (size() > GeneMapperCache.this.maximumSize) {
+          evictions.incrementAndGet();
+          log.fine("Evicting mappers for taxonomy id " + eldest.getKey() + ".");
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+  
+  /**
+   * @return the process-wide cache
+   */
+  public static GeneMapperCache getInstance() {
+    return instance;
+  }
+  
+  /**
+   * Returns the resolver of the gene symbol to gene id mapper (A) and the
+   * gene id to KEGG id index (B) for the entered species. B is null if the
+   * species has no KEGG abbreviation. Species without taxonomy id are loaded
+   * without caching.
+   * 
+   * @param species
+   * @return the mappers of the species
+   * @throws IOException if a mapper could not be loaded
+   */
+  public ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex> getMappers(
+    final Species species) throws IOException {
+    Integer taxonomyId = species.getNCBITaxonID();
+    if (taxonomyId == null) {
+      misses.incrementAndGet();
+      return load(species);
+    }
+    
+    FutureTask<ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex>> task;
+    boolean owner = false;
+    synchronized (mappers) {
+      task = mappers.get(taxonomyId);
+      if (task == null) {
+        task = new FutureTask<ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex>>(
+          new Callable<ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex>>() {
+            @Override
+            public ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex> call() throws IOException {
+              return load(species);
+            }
+          });
+        mappers.put(taxonomyId, task);
+        owner = true;
+      }
+    }
+    
+    if (owner) {
+      misses.incrementAndGet();
+      task.run();
+    } else {
+      hits.incrementAndGet();
+    }
+    
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+  
+  /**
+   * @param species
+   * @return the newly loaded mappers of the species
+   * @throws IOException
+   */
+  private ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex> load(Species species)
+    throws IOException {
+    long start = System.nanoTime();
+    try {
+      GeneSymbol2GeneIDMapper symbolMapper = new GeneSymbol2GeneIDMapper(species.getCommonName());
+      GeneIDKeggIndex keggIndex = null;
+      if (species.getKeggAbbr() != null) {
+        keggIndex = GeneIDKeggIndex.getInstance(species);
+      }
+      return new ValuePairUncomparable<GeneSymbolResolver, GeneIDKeggIndex>(
+          new GeneSymbolResolver(symbolMapper), keggIndex);
+    } finally {
+      long time = System.nanoTime() - start;
+      loadTime.addAndGet(time);
+      log.log(Level.FINE, "Loading the mappers for '" + species.getCommonName() + "' took "
+          + (time / 1000000) + " ms.");
+    }
+  }
+  
+  /**
+   * Removes all cached mappers and failed loads. The counters are not reset.
+   */
+  public void clear() {
+    synchronized (mappers) {
+      mappers.clear();
+    }
+  }
+  
+  /**
+   * @return the number of cached species
+   */
+  public int size() {
+    synchronized (mappers) {
+      return mappers.size();
+    }
+  }
+  
+  /**
+   * @return the number of species, whose mappers are kept in memory
+   */
+  public int getMaximumSize() {
+    synchronized (mappers) {
+      return maximumSize;
+    }
+  }
+  
+  /**
+   * @param maximumSize the number of species, whose mappers are kept in
+   *        memory. Takes effect with the next load.
+   */
+  public void setMaximumSize(int maximumSize) {
+    synchronized (mappers) {
+      this.maximumSize = maximumSize;
+    }
+  }
+  
+  /**
+   * @return the number of requests, which were answered from the cache
+   */
+  public long getHits() {
+    return hits.get();
+  }
+  
+  /**
+   * @return the number of requests, which had to load the mappers
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+  
+  /**
+   * @return the number of species, which were evicted from the cache
+   */
+  public long getEvictions() {
+    return evictions.get();
+  }
+  
+  /**
+   * @return the total time spent loading mappers in milliseconds
+   */
+  public long getLoadTime() {
+    return loadTime.get() / 1000000;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " [size=" + size() + ", hits=" + getHits()
+        + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", loadTime="
+        + getLoadTime() + " ms]";
+  }
+  
+}
@@ -0,0 +1,181 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.mapper.GeneSymbol2GeneIDMapper;
+
+/**
+ * Maps gene symbols to Entrez gene ids with a {@link GeneSymbol2GeneIDMapper}
+ * and remembers every result, also the symbols which could not be mapped.
+ * <p>
+ * If a symbol can not be mapped, the symbol without '-' or, if it has no
+ * '-', the symbol with '_' instead of blanks is tried. The result of these
+ * variants is stored for the variant and the original symbol, so the mapper
+ * is asked at most once per symbol and variant. The resolver lives as long
+ * as its mapper in the {@link GeneMapperCache} and may be used by several
+ * threads.
+ * 
+ * @version $Rev$
+ */
+public class GeneSymbolResolver {
+  
+  public static final Logger log = Logger.getLogger(GeneSymbolResolver.class.getName());
+  
+  /**
+   * stored for symbols which could not be mapped, gene ids are positive
+   */
+  private static final int NOT_FOUND = -1;
+  
+  private final GeneSymbol2GeneIDMapper mapper;
+  
+  /**
+   * gene id or {@link #NOT_FOUND} of each resolved symbol
+   */
+  private final ConcurrentMap<String, Integer> geneIDs = new ConcurrentHashMap<String, Integer>();
+  
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong negativeHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  
+  /**
+   * @param mapper
+   */
+  public GeneSymbolResolver(GeneSymbol2GeneIDMapper mapper) {
+    this.mapper = mapper;
+  }
+  
+  /**
+   * @return the underlying mapper
+   */
+  public GeneSymbol2GeneIDMapper getMapper() {
+    return mapper;
+  }
+  
+  /**
+   * Resolves the symbols in the order of the collection. The first symbol
+   * with a gene id wins, but the search stops at the first symbol without
+   * gene id, which contains a '-' or a blank.
+   * 
+   * @param geneSymbols
+   * @return the gene id or null
+   */
+  public Integer resolve(Collection<String> geneSymbols) {
+    for (String symbol : geneSymbols) {
+      Integer geneID = resolve(symbol);
+      if (geneID != null || symbol.contains("-") || symbol.contains(" ")) {
+        return geneID;
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * @param symbol
+   * @return the gene id of the symbol or of its normalised variant, or null
+   */
+  public Integer resolve(String symbol) {
+    Integer geneID = geneIDs.get(symbol);
+    if (geneID != null) {
+      if (geneID.intValue() == NOT_FOUND) {
+        negativeHits.incrementAndGet();
+        return null;
+      }
+      hits.incrementAndGet();
+      return geneID;
+    }
+    
+    misses.incrementAndGet();
+    try {
+      geneID = mapper.map(symbol);
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Error while mapping name: " + symbol + ".", e);
+    }
+    
+    if (geneID == null) {
+      if (symbol.contains("-")) {
+        geneID = resolve(symbol.replace("-", ""));
+      } else if (symbol.contains(" ")) {
+        geneID = resolve(symbol.replace(" ", "_"));
+      } else {
+        log.log(Level.FINER, "----- not found " + symbol);
+      }
+    }
+    
+    geneIDs.put(symbol, geneID == null ? Integer.valueOf(NOT_FOUND) : geneID);
+    return geneID;
+  }
+  
+  /**
+   * @return the number of resolved symbols and variants
+   */
+  public int size() {
+    return geneIDs.size();
+  }
+  
+  /**
+   * Removes all results. The counters are not reset.
+   */
+  public void clear() {
+    geneIDs.clear();
+  }
+  
+  /**
+   * @return the number of lookups, which returned a stored gene id
+   */
+  public long getHits() {
+    return hits.get();
+  }
+  
+  /**
+   * @return the number of lookups, which returned a stored "not found"
+   */
+  public long getNegativeHits() {
+    return negativeHits.get();
+  }
+  
+  /**
+   * @return the number of lookups, which had to ask the mapper
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " [size=" + size() + ", hits=" + getHits()
+        + ", negativeHits=" + getNegativeHits() + ", misses=" + getMisses() + "]";
+  }
+  
+}
@@ -0,0 +1,126 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Cache which compares its keys by identity and counts how often a lookup
+ * was answered from the cache. It is used to convert each BioPAX element only
+ * once per KEGG pathway. The cache is not synchronized, like the
+ * {@link BioPAXConversionContext} it belongs to.
+ * 
+ * @version $Rev$
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class IdentityCache<K, V> {
+  
+  private final Map<K, V> cache = new IdentityHashMap<K, V>();
+  
+  /**
+   * number of lookups, which found a value
+   */
+  private long hits = 0;
+  
+  /**
+   * number of lookups, which found no value
+   */
+  private long misses = 0;
+  
+  /**
+   * @param key
+   * @return the cached value or null. Each call is counted as hit or miss.
+   */
+  public V get(K key) {
+    V value = cache.get(key);
+    if (value != null) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return value;
+  }
+  
+  /**
+   * @param key
+   * @param value if null, the key is removed
+   */
+  public void put(K key, V value) {
+    if (value == null) {
+      cache.remove(key);
+    } else {
+      cache.put(key, value);
+    }
+  }
+  
+  /**
+   * Removes all values, but keeps the hit and miss counts.
+   */
+  public void clear() {
+    cache.clear();
+  }
+  
+  /**
+   * @return number of cached values
+   */
+  public int size() {
+    return cache.size();
+  }
+  
+  /**
+   * @return number of lookups, which found a value
+   */
+  public long getHits() {
+    return hits;
+  }
+  
+  /**
+   * @return number of lookups, which found no value
+   */
+  public long getMisses() {
+    return misses;
+  }
+  
+  /**
+   * @return fraction of lookups, which found a value, or 0 if there was
+   *         no lookup yet
+   */
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0d : (double) hits / lookups;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format("%s[size=%d, hits=%d, misses=%d, hitRate=%.1f%%]",
+      getClass().getSimpleName(), size(), hits, misses, getHitRate() * 100);
+  }
+  
+}
@@ -0,0 +1,189 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive <code>int</code> values with open addressing, which
+ * needs neither a boxed {@link Integer} nor a map entry per value. It is used
+ * for the gene ids of a {@link BioPAXPathwayHolder}.
+ * 
+ * @version $Rev$
+ */
+public class IntHashSet {
+  
+  /**
+   * slots of the hash table, 0 marks a free slot
+   */
+  private int[] values;
+  
+  /**
+   * 0 can not be stored in {@link #values}, so it is remembered here
+   */
+  private boolean containsZero = false;
+  
+  private int size = 0;
+  
+  /**
+   * 
+   */
+  public IntHashSet() {
+    this(8);
+  }
+  
+  /**
+   * @param expectedSize
+   */
+  public IntHashSet(int expectedSize) {
+    int capacity = 8;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    values = new int[capacity];
+  }
+  
+  /**
+   * @param value
+   * @param mask
+   * @return the start slot for the value
+   */
+  private static int slot(int value, int mask) {
+    int h = value * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+  
+  /**
+   * @param value
+   * @return true, if the value was not contained before
+   */
+  public boolean add(int value) {
+    if (value == 0) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    int mask = values.length - 1;
+    int i = slot(value, mask);
+    for (; values[i] != 0; i = (i + 1) & mask) {
+      if (values[i] == value) {
+        return false;
+      }
+    }
+    values[i] = value;
+    if (++size * 2 > values.length) {
+      resize();
+    }
+    return true;
+  }
+  
+  /**
+   * @param value
+   * @return true, if the value is contained
+   */
+  public boolean contains(int value) {
+    if (value == 0) {
+      return containsZero;
+    }
+    int mask = values.length - 1;
+    for (int i = slot(value, mask); values[i] != 0; i = (i + 1) & mask) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Doubles the capacity.
+   */
+  private void resize() {
+    int[] oldValues = values;
+    values = new int[oldValues.length * 2];
+    int mask = values.length - 1;
+    for (int value : oldValues) {
+      if (value != 0) {
+        int i = slot(value, mask);
+        while (values[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        values[i] = value;
+      }
+    }
+  }
+  
+  /**
+   * @return the number of values
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * @return true, if the set contains no value
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+  
+  /**
+   * Removes all values.
+   */
+  public void clear() {
+    Arrays.fill(values, 0);
+    containsZero = false;
+    size = 0;
+  }
+  
+  /**
+   * @return the values in ascending order
+   */
+  public int[] toArray() {
+    int[] array = new int[size];
+    int n = 0;
+    if (containsZero) {
+      array[n++] = 0;
+    }
+    for (int value : values) {
+      if (value != 0) {
+        array[n++] = value;
+      }
+    }
+    Arrays.sort(array);
+    return array;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+  
+}
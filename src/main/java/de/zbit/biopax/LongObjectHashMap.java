@@ -0,0 +1,150 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.util.Arrays;
+
+/**
+ * Minimal hash map with primitive <code>long</code> keys and open addressing,
+ * which avoids a boxed {@link Long} and a map entry object per key. Null
+ * values are not supported.
+ * 
+ * @version $Rev$
+ * @param <V> value type
+ */
+class LongObjectHashMap<V> {
+  
+  private long[] keys;
+  private Object[] values;
+  private int size = 0;
+  
+  /**
+   * 
+   */
+  public LongObjectHashMap() {
+    this(16);
+  }
+  
+  /**
+   * @param expectedSize
+   */
+  public LongObjectHashMap(int expectedSize) {
+    int capacity = 16;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    keys = new long[capacity];
+    values = new Object[capacity];
+  }
+  
+  /**
+   * @param key
+   * @param mask
+   * @return the start slot for the key
+   */
+  private static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+  
+  /**
+   * @param key
+   * @return the value of the key or null
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    int mask = keys.length - 1;
+    for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return (V) values[i];
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * @param key
+   * @param value must not be null
+   * @return the previous value of the key or null
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values are not supported.");
+    }
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    for (; values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        V old = (V) values[i];
+        values[i] = value;
+        return old;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    if (++size * 2 > keys.length) {
+      resize();
+    }
+    return null;
+  }
+  
+  /**
+   * Doubles the capacity.
+   */
+  private void resize() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new Object[oldValues.length * 2];
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldValues[j] != null) {
+        int i = slot(oldKeys[j], mask);
+        while (values[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+  
+  /**
+   * @return the number of keys
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * Removes all keys.
+   */
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+  
+}
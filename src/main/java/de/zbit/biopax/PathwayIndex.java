@@ -0,0 +1,355 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Graphics;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.RelationType;
+
+/**
+ * Hash index over the elements of a KEGG {@link Pathway}, which replaces the
+ * linear scans over all entries during the conversion.
+ * <p>
+ * Entries are indexed by their type and graphics name. Both are compared by
+ * {@link Entry#equalsWithoutIDNameReactionComparison(Object)}, so all entries
+ * which can be equal to a new entry are in the same bucket. The buckets keep
+ * the order of {@link Pathway#getEntries()}, hence scanning a bucket gives the
+ * same first (or last) match as scanning all entries.
+ * <p>
+ * Relations are indexed by the composite key (entry1, entry2) in a
+ * {@link LongObjectHashMap}, with one slot per {@link RelationType}. Only the
+ * first relation of the pathway with a given key and type is kept, which is
+ * the one a linear scan would find.
+ * <p>
+ * Reactions are indexed by a canonical signature: the sorted (id, name) keys
+ * of their substrates and products. Reactions are deduplicated with
+ * {@link List#contains(Object)} on equally sized component lists. If the
+ * components of the new reaction have pairwise different keys, every
+ * reaction passing this check has the same signature, so only the reactions
+ * of this bucket have to be compared.
+ * <p>
+ * The index follows the pathway: elements, which were added to the pathway
+ * after the last lookup, are indexed with the next lookup. If elements were
+ * removed, the index is rebuilt.
+ * 
+ * @version $Rev$
+ */
+public class PathwayIndex {
+  
+  /**
+   * the indexed pathway
+   */
+  private final Pathway pathway;
+  
+  /**
+   * number of {@link RelationType}s
+   */
+  private static final int RELATION_TYPES = RelationType.values().length;
+  
+  /**
+   * entries with the same {@link #entryKey(Entry)} in pathway order
+   */
+  private final Map<String, List<Entry>> entries = new HashMap<String, List<Entry>>();
+  
+  /**
+   * number of entries of {@link #pathway}, which are already indexed
+   */
+  private int indexedEntries = 0;
+  
+  /**
+   * (entry1, entry2) to the relations between these entries, indexed by
+   * {@link #typeSlot(RelationType)}
+   */
+  private final LongObjectHashMap<Relation[]> relations = new LongObjectHashMap<Relation[]>();
+  
+  /**
+   * number of relations of {@link #pathway}, which are already indexed
+   */
+  private int indexedRelations = 0;
+  
+  /**
+   * reactions with the same {@link #reactionSignature(List, List)} in pathway
+   * order
+   */
+  private final Map<String, List<Reaction>> reactions = new HashMap<String, List<Reaction>>();
+  
+  /**
+   * number of reactions of {@link #pathway}, which are already indexed
+   */
+  private int indexedReactions = 0;
+  
+  /**
+   * @param pathway
+   */
+  public PathwayIndex(Pathway pathway) {
+    this.pathway = pathway;
+  }
+  
+  /**
+   * @return the indexed pathway
+   */
+  public Pathway getPathway() {
+    return pathway;
+  }
+  
+  /**
+   * @param entry
+   * @return all entries of the pathway, which have the same type and graphics
+   *         name as the entered entry, in pathway order. Only these entries
+   *         can be equal to the entered one.
+   */
+  public List<Entry> getEntryCandidates(Entry entry) {
+    syncEntries();
+    List<Entry> candidates = entries.get(entryKey(entry));
+    if (candidates == null) {
+      return Collections.emptyList();
+    }
+    return candidates;
+  }
+  
+  /**
+   * Indexes the entries, which were added to the pathway since the last call.
+   */
+  private void syncEntries() {
+    List<Entry> pwEntries = pathway.getEntries();
+    int size = pwEntries == null ? 0 : pwEntries.size();
+    if (size < indexedEntries) {
+      entries.clear();
+      indexedEntries = 0;
+    }
+    for (int i = indexedEntries; i < size; i++) {
+      Entry entry = pwEntries.get(i);
+      String key = entryKey(entry);
+      List<Entry> bucket = entries.get(key);
+      if (bucket == null) {
+        bucket = new ArrayList<Entry>(1);
+        entries.put(key, bucket);
+      }
+      bucket.add(entry);
+    }
+    indexedEntries = size;
+  }
+  
+  /**
+   * @param entry1
+   * @param entry2
+   * @param type may be null
+   * @return the first relation of the pathway from entry1 to entry2 with the
+   *         entered type or null
+   */
+  public Relation getRelation(int entry1, int entry2, RelationType type) {
+    syncRelations();
+    Relation[] byType = relations.get(relationKey(entry1, entry2));
+    return byType == null ? null : byType[typeSlot(type)];
+  }
+  
+  /**
+   * Indexes the relations, which were added to the pathway since the last
+   * call.
+   */
+  private void syncRelations() {
+    List<Relation> pwRelations = pathway.getRelations();
+    int size = pwRelations == null ? 0 : pwRelations.size();
+    if (size < indexedRelations) {
+      relations.clear();
+      indexedRelations = 0;
+    }
+    for (int i = indexedRelations; i < size; i++) {
+      Relation rel = pwRelations.get(i);
+      long key = relationKey(rel.getEntry1(), rel.getEntry2());
+      Relation[] byType = relations.get(key);
+      if (byType == null) {
+        byType = new Relation[RELATION_TYPES + 1];
+        relations.put(key, byType);
+      }
+      int slot = typeSlot(rel.isSetType() ? rel.getType() : null);
+      if (byType[slot] == null) {
+        byType[slot] = rel;
+      }
+    }
+    indexedRelations = size;
+  }
+  
+  /**
+   * @param entry1
+   * @param entry2
+   * @return both entry ids packed into one long
+   */
+  private static long relationKey(int entry1, int entry2) {
+    return ((long) entry1 << 32) | (entry2 & 0xFFFFFFFFL);
+  }
+  
+  /**
+   * @param type
+   * @return 0 for null, otherwise the ordinal of the type plus one
+   */
+  private static int typeSlot(RelationType type) {
+    return type == null ? 0 : type.ordinal() + 1;
+  }
+  
+  /**
+   * @param substrates
+   * @param products
+   * @return the reactions of the pathway in pathway order, which can contain
+   *         the same substrates and products. If one side contains two
+   *         components with the same id and name, all reactions are returned.
+   */
+  public Collection<Reaction> getReactionCandidates(List<ReactionComponent> substrates,
+    List<ReactionComponent> products) {
+    String signature = reactionSignature(substrates, products);
+    if (signature == null) {
+      return pathway.getReactions();
+    }
+    syncReactions();
+    List<Reaction> candidates = reactions.get(signature);
+    if (candidates == null) {
+      return Collections.emptyList();
+    }
+    return candidates;
+  }
+  
+  /**
+   * Indexes the reactions, which were added to the pathway since the last
+   * call.
+   */
+  private void syncReactions() {
+    List<Reaction> pwReactions = pathway.getReactions();
+    int size = pwReactions == null ? 0 : pwReactions.size();
+    if (size < indexedReactions) {
+      reactions.clear();
+      indexedReactions = 0;
+    }
+    for (int i = indexedReactions; i < size; i++) {
+      Reaction r = pwReactions.get(i);
+      String signature = distinctSignature(r.getSubstrates()) + '\n' + distinctSignature(r.getProducts());
+      List<Reaction> bucket = reactions.get(signature);
+      if (bucket == null) {
+        bucket = new ArrayList<Reaction>(1);
+        reactions.put(signature, bucket);
+      }
+      bucket.add(r);
+    }
+    indexedReactions = size;
+  }
+  
+  /**
+   * @param substrates
+   * @param products
+   * @return the signature of the reaction or null, if one side contains the
+   *         same component key twice
+   */
+  private static String reactionSignature(List<ReactionComponent> substrates,
+    List<ReactionComponent> products) {
+    String subs = uniqueSignature(substrates);
+    String prods = subs == null ? null : uniqueSignature(products);
+    return prods == null ? null : subs + '\n' + prods;
+  }
+  
+  /**
+   * @param components
+   * @return the sorted component keys or null, if a key occurs twice
+   */
+  private static String uniqueSignature(List<ReactionComponent> components) {
+    String[] keys = componentKeys(components);
+    for (int i = 1; i < keys.length; i++) {
+      if (keys[i].equals(keys[i - 1])) {
+        return null;
+      }
+    }
+    return join(keys, keys.length);
+  }
+  
+  /**
+   * @param components
+   * @return the sorted, distinct component keys
+   */
+  private static String distinctSignature(List<ReactionComponent> components) {
+    String[] keys = componentKeys(components);
+    int distinct = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (distinct == 0 || !keys[i].equals(keys[distinct - 1])) {
+        keys[distinct++] = keys[i];
+      }
+    }
+    return join(keys, distinct);
+  }
+  
+  /**
+   * @param components
+   * @return the sorted keys of the components, which consist of the id and
+   *         the name, the fields compared by
+   *         {@link ReactionComponent#equals(Object)}
+   */
+  private static String[] componentKeys(List<ReactionComponent> components) {
+    String[] keys = new String[components == null ? 0 : components.size()];
+    for (int i = 0; i < keys.length; i++) {
+      ReactionComponent rc = components.get(i);
+      // unset ids and names are equal to each other
+      keys[i] = (rc.isSetID() ? rc.getId().toString() : "") + '\t'
+          + (rc.isSetName() ? rc.getName() : "");
+    }
+    Arrays.sort(keys);
+    return keys;
+  }
+  
+  /**
+   * @param keys
+   * @param length
+   * @return the first length keys separated by blanks
+   */
+  private static String join(String[] keys, int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(keys[i]);
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * @param entry
+   * @return the type and the graphics name of the entry
+   */
+  private static String entryKey(Entry entry) {
+    Graphics graphics = entry.getGraphics();
+    String name = graphics == null || graphics.getName() == null ? "" : graphics.getName();
+    return String.valueOf(entry.getType()) + '\t' + name;
+  }
+  
+}
@@ -0,0 +1,289 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.io.OpenFile;
+import de.zbit.resources.Resource;
+import de.zbit.util.Species;
+import de.zbit.util.Utils;
+
+/**
+ * Registry of all species known to the converters. The species are read once
+ * from the bundled flat file {@link #SPECIES_FILE} and, if available, from
+ * the UniProt species list of the SysBio library. Lookups by NCBI taxonomy
+ * id, KEGG abbreviation, scientific name and common name are answered from
+ * hash indexes instead of searching the list of species.
+ * <p>
+ * The registry is read-only after construction and can be shared between
+ * threads.
+ * 
+ * @version $Rev$
+ */
+public class SpeciesRegistry {
+  
+  public static final Logger log = Logger.getLogger(SpeciesRegistry.class.getName());
+  
+  /**
+   * resource with the species, one per line with the tab separated columns
+   * scientific name, UniProt extension, common name, KEGG abbreviation and
+   * NCBI taxonomy id. Lines starting with '#' are ignored.
+   */
+  public static final String SPECIES_FILE = "res/species.txt";
+  
+  /**
+   * the process-wide instance, created on first use
+   */
+  private static SpeciesRegistry instance = null;
+  
+  private final List<Species> species;
+  
+  private final Map<Integer, Species> byTaxonomyId;
+  private final Map<String, Species> byKeggAbbr;
+  private final Map<String, Species> byScientificName;
+  private final Map<String, Species> byCommonName;
+  
+  /**
+   * Indexes the entered species. If several species share a key, the first
+   * one is returned for it.
+   * 
+   * @param species
+   */
+  public SpeciesRegistry(Collection<Species> species) {
+    this.species = Collections.unmodifiableList(new ArrayList<Species>(species));
+    int capacity = Math.max(16, species.size() * 2);
+    byTaxonomyId = new HashMap<Integer, Species>(capacity);
+    byKeggAbbr = new HashMap<String, Species>(capacity);
+    byScientificName = new HashMap<String, Species>(capacity);
+    byCommonName = new HashMap<String, Species>(capacity);
+    
+    for (Species s : this.species) {
+      if (s.getNCBITaxonID() != null && !byTaxonomyId.containsKey(s.getNCBITaxonID())) {
+        byTaxonomyId.put(s.getNCBITaxonID(), s);
+      }
+      putName(byKeggAbbr, s.getKeggAbbr(), s);
+      putName(byScientificName, s.getScientificName(), s);
+      putName(byCommonName, s.getCommonName(), s);
+    }
+  }
+  
+  /**
+   * @param index
+   * @param name
+   * @param s
+   */
+  private static void putName(Map<String, Species> index, String name, Species s) {
+    if (name == null) {
+      return;
+    }
+    String key = normalize(name);
+    if (key.length() > 0 && !index.containsKey(key)) {
+      index.put(key, s);
+    }
+  }
+  
+  /**
+   * @param name
+   * @return the key of the name in the indexes
+   */
+  private static String normalize(String name) {
+    return name.trim().toLowerCase();
+  }
+  
+  /**
+   * @return the process-wide registry
+   */
+  public static synchronized SpeciesRegistry getInstance() {
+    if (instance == null) {
+      instance = new SpeciesRegistry(loadSpecies());
+      log.fine(instance.toString());
+    }
+    return instance;
+  }
+  
+  /**
+   * Reads the bundled species and appends the species of the UniProt species
+   * list, if the SysBio library contains it.
+   * 
+   * @return all known species, bundled ones first
+   */
+  static List<Species> loadSpecies() {
+    List<Species> species = new ArrayList<Species>();
+    try {
+      BufferedReader reader = OpenFile.openFile(SPECIES_FILE, SpeciesRegistry.class);
+      if (reader != null) {
+        try {
+          species.addAll(read(reader));
+        } finally {
+          reader.close();
+        }
+      } else {
+        log.warning("Could not find the species file '" + SPECIES_FILE + "'.");
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not read the species file '" + SPECIES_FILE + "'.", e);
+    }
+    
+    if (Resource.class.getResource("speclist.txt") != null) {
+      try {
+        species.addAll(Species.generateSpeciesDataStructure());
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Could not read the UniProt species list.", e);
+      }
+    }
+    return species;
+  }
+  
+  /**
+   * Parses the format of {@link #SPECIES_FILE}.
+   * 
+   * @param reader
+   * @return the species in the order of the file
+   * @throws IOException
+   */
+  static List<Species> read(BufferedReader reader) throws IOException {
+    List<Species> species = new ArrayList<Species>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.trim().length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      String[] columns = line.split("\t");
+      if (columns.length < 5 || !Utils.isNumber(columns[4].trim(), true)) {
+        log.warning("Skipping malformed species line '" + line + "'.");
+        continue;
+      }
+      species.add(new Species(emptyToNull(columns[0]), emptyToNull(columns[1]),
+          emptyToNull(columns[2]), emptyToNull(columns[3]), Integer.valueOf(columns[4].trim())));
+    }
+    return species;
+  }
+  
+  /**
+   * @param column
+   * @return the trimmed column or null, if it is empty
+   */
+  private static String emptyToNull(String column) {
+    column = column.trim();
+    return column.length() > 0 ? column : null;
+  }
+  
+  /**
+   * @return all species, in the order they were read
+   */
+  public List<Species> getSpecies() {
+    return species;
+  }
+  
+  /**
+   * @param taxonomyId NCBI taxonomy id
+   * @return the species or null
+   */
+  public Species get(Integer taxonomyId) {
+    return taxonomyId != null ? byTaxonomyId.get(taxonomyId) : null;
+  }
+  
+  /**
+   * @param keggAbbr e.g. "hsa", the case is ignored
+   * @return the species or null
+   */
+  public Species getByKeggAbbr(String keggAbbr) {
+    return keggAbbr != null ? byKeggAbbr.get(normalize(keggAbbr)) : null;
+  }
+  
+  /**
+   * @param scientificName e.g. "Homo sapiens", the case is ignored
+   * @return the species or null
+   */
+  public Species getByScientificName(String scientificName) {
+    return scientificName != null ? byScientificName.get(normalize(scientificName)) : null;
+  }
+  
+  /**
+   * @param commonName e.g. "Human", the case is ignored
+   * @return the species or null
+   */
+  public Species getByCommonName(String commonName) {
+    return commonName != null ? byCommonName.get(normalize(commonName)) : null;
+  }
+  
+  /**
+   * Searches the species with any of the indexed identifiers, like
+   * {@link Species#search(List, String, int)} does: a number is looked up as
+   * taxonomy id, any other identifier as KEGG abbreviation, scientific name
+   * or common name.
+   * 
+   * @param identifier
+   * @return the species or null
+   */
+  public Species search(String identifier) {
+    if (identifier == null) {
+      return null;
+    }
+    identifier = identifier.trim();
+    if (Utils.isNumber(identifier, true)) {
+      try {
+        return get(Integer.valueOf(identifier));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    Species s = getByKeggAbbr(identifier);
+    if (s == null) {
+      s = getByScientificName(identifier);
+    }
+    if (s == null) {
+      s = getByCommonName(identifier);
+    }
+    return s;
+  }
+  
+  /**
+   * @return number of known species
+   */
+  public int size() {
+    return species.size();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[species=" + species.size()
+        + ", taxonomyIds=" + byTaxonomyId.size() + ", keggAbbrs=" + byKeggAbbr.size() + "]";
+  }
+  
+}
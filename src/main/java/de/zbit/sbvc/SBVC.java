@@ -27,22 +27,39 @@ package de.zbit.sbvc;
 import static de.zbit.util.Utils.getMessage;
 
 import java.awt.Window;
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.sbml.jsbml.SBMLDocument;
+
 import de.zbit.AppConf;
 import de.zbit.Launcher;
 import de.zbit.biopax.BioPAX2KGML;
-import de.zbit.cache.InfoManagement;
+import de.zbit.biopax.BioPAXParser;
+import de.zbit.biopax.SpeciesRegistry;
 import de.zbit.gui.GUIOptions;
 import de.zbit.io.FileTools;
 import de.zbit.kegg.KEGGtranslatorOptions;
@@ -51,11 +68,13 @@ import de.zbit.kegg.KGMLWriter;
 import de.zbit.kegg.Translator;
 import de.zbit.kegg.api.cache.KeggInfoManagement;
 import de.zbit.kegg.gui.TranslatorUI;
-import de.zbit.kegg.io.AbstractKEGGtranslator;
 import de.zbit.kegg.io.KEGG2SBMLqual;
-import de.zbit.resources.Resource;
 import de.zbit.sbvc.gui.SBVCUI;
+import de.zbit.sbvc.io.JournaledKeggInfoManagement;
+import de.zbit.sbvc.io.SBGN2KGML;
 import de.zbit.sbvc.io.SBVCIOOptions;
+import de.zbit.sbvc.io.SynchronizedKeggInfoManagement;
+import de.zbit.sbvc.io.helper.SBGNConversionContext;
 import de.zbit.util.Species;
 import de.zbit.util.Utils;
 import de.zbit.util.logging.LogUtil;
@@ -79,6 +98,19 @@ public class SBVC extends Launcher{
 	 */
 	private static final transient Logger log = Logger.getLogger(Translator.class.getName());
 
+	/**
+	 * Journal of the KEGG infos retrieved by the command line conversions, see
+	 * {@link JournaledKeggInfoManagement}.
+	 */
+	public static final String KEGG_INFO_JOURNAL = Translator.cacheFileName + ".journal";
+
+	/**
+	 * Marks the end of the pathways in the queue of
+	 * {@link #convertInPipeline(String, String, Species, BioPAXParser, int, KeggInfoManagement)}.
+	 */
+	private static final de.zbit.kegg.parser.pathway.Pathway END_OF_PATHWAYS =
+			new de.zbit.kegg.parser.pathway.Pathway("", "", 0);
+
 	public SBVC() {
 		// this(new String[0]);
 	}
@@ -93,19 +125,11 @@ public class SBVC extends Launcher{
 		String folderName = SBVCIOOptions.OUTPUT.getValue(props).getPath();
 		String input = SBVCIOOptions.INPUT.getValue(props).getPath();
 		Integer speciesInput = SBVCIOOptions.SPECIES.getValue(props);
+		BioPAXParser parser = SBVCIOOptions.PARSER.getValue(props);
+		int threads = SBVCIOOptions.THREADS.getValue(props).intValue();
+		int fileThreads = SBVCIOOptions.FILE_THREADS.getValue(props).intValue();
 
-		Species species = null;
-		if (speciesInput != null) {
-			int tax = speciesInput.intValue();
-			if (tax == 9606) {
-				species = new Species("Homo sapiens", "_HUMAN", "human", "hsa",9606);
-			} else if (tax == 10090) {
-				species = new Species("Mus musculus", "_MOUSE", "mouse", "mmu", 10090);
-			} else {
-				species = Species.getSpeciesWithTaxonomyIDInList(speciesInput, new BufferedReader(
-						new InputStreamReader(Resource.class.getResourceAsStream("speclist.txt"))), false);
-			}
-		}
+		Species species = SpeciesRegistry.getInstance().get(speciesInput);
 
 		if(species == null){
 			log.warning("Taxonomy id '" + speciesInput + "' could not be assigned to a species.");
@@ -113,7 +137,342 @@ public class SBVC extends Launcher{
 			log.info("Entered species '" + species.getCommonName() + "' was identified.");
 		}
 
-		convertBioPAXToSBML(input, folderName, species);
+		if (!isBatchInput(input)) {
+			if (isSBGNFile(new File(input))) {
+				boolean success;
+				if (new File(folderName).isDirectory()) {
+					success = convertSBGNFilesToSBML(Collections.singletonList(new File(input)), folderName, fileThreads) == 0;
+				} else {
+					// single in and single out file, as for BioPAX
+					success = convertSBGNToSBML(input, folderName);
+				}
+				if (!success) {
+					System.exit(1);
+				}
+			} else {
+				convertBioPAXToSBML(input, folderName, species, parser, threads);
+			}
+			return;
+		}
+
+		// the format of each file is chosen by its extension
+		List<File> inputs = getInputFiles(input);
+		if (new File(input).isDirectory()) {
+			inputs.addAll(getInputFiles(input, ".sbgn"));
+		}
+		List<File> sbgnInputs = new ArrayList<File>();
+		List<File> biopaxInputs = new ArrayList<File>();
+		for (File file : inputs) {
+			if (isSBGNFile(file)) {
+				sbgnInputs.add(file);
+			} else {
+				biopaxInputs.add(file);
+			}
+		}
+		if (inputs.isEmpty()) {
+			log.severe("No BioPAX or SBGN files found for '" + input + "'.");
+			System.exit(1);
+		}
+		int failed = 0;
+		if (!biopaxInputs.isEmpty()) {
+			failed += convertBioPAXFilesToSBML(biopaxInputs, folderName, species, parser, threads, fileThreads);
+		}
+		if (!sbgnInputs.isEmpty()) {
+			failed += convertSBGNFilesToSBML(sbgnInputs, folderName, fileThreads);
+		}
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param file an input file
+	 * @return {@code true} if the file has the extension <code>.sbgn</code>,
+	 * optionally followed by <code>.gz</code> or <code>.zip</code>, and is
+	 * converted with {@link #convertSBGNFilesToSBML(List, String, int)}, all
+	 * other files are read as <code>BioPAX</code>.
+	 */
+	public static boolean isSBGNFile(File file) {
+		return getUncompressedName(file).toLowerCase().endsWith(".sbgn");
+	}
+
+	/**
+	 * @param file
+	 * @return the name of the file without a <code>.gz</code> or
+	 * <code>.zip</code> extension.
+	 */
+	private static String getUncompressedName(File file) {
+		String name = file.getName();
+		String lowerCaseName = name.toLowerCase();
+		if (lowerCaseName.endsWith(".gz")) {
+			return name.substring(0, name.length() - 3);
+		} else if (lowerCaseName.endsWith(".zip")) {
+			return name.substring(0, name.length() - 4);
+		}
+		return name;
+	}
+
+	/**
+	 * @param input value of {@link SBVCIOOptions#INPUT}
+	 * @return {@code true} if the input is a directory or contains wildcards
+	 */
+	public static boolean isBatchInput(String input) {
+		if (new File(input).isDirectory()) {
+			return true;
+		}
+		String name = new File(input).getName();
+		return name.indexOf('*') >= 0 || name.indexOf('?') >= 0 || name.indexOf('[') >= 0
+				|| name.indexOf('{') >= 0;
+	}
+
+	/**
+	 * Lists the files of a batch input. For a directory, all files with the
+	 * extension <code>.owl</code> (optionally gzipped or zipped) are returned.
+	 * Otherwise the last path element is a wildcard pattern (see
+	 * {@link FileSystem#getPathMatcher(String)}) and all matching files are
+	 * returned.
+	 * 
+	 * @param input a directory, a wildcard pattern or a file.
+	 * @return the matching files, sorted by name.
+	 */
+	public static List<File> getInputFiles(String input) {
+		return getInputFiles(input, ".owl");
+	}
+
+	/**
+	 * Lists the files of a batch input like {@link #getInputFiles(String)}, but
+	 * for a directory all files with the given extension are returned.
+	 * 
+	 * @param input a directory, a wildcard pattern or a file.
+	 * @param extension lower case extension of the files in a directory, e.g.
+	 * <code>.sbgn</code>.
+	 * @return the matching files, sorted by name.
+	 */
+	public static List<File> getInputFiles(String input, final String extension) {
+		File file = new File(input);
+		List<File> files = new ArrayList<File>();
+		if (file.isFile()) {
+			files.add(file);
+			return files;
+		}
+
+		File folder;
+		FileFilter filter;
+		if (file.isDirectory()) {
+			folder = file;
+			filter = new FileFilter() {
+				@Override
+				public boolean accept(File f) {
+					return f.isFile() && getUncompressedName(f).toLowerCase().endsWith(extension);
+				}
+			};
+		} else {
+			folder = file.getAbsoluteFile().getParentFile();
+			final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+			filter = new FileFilter() {
+				@Override
+				public boolean accept(File f) {
+					return f.isFile() && matcher.matches(f.toPath().getFileName());
+				}
+			};
+		}
+
+		File[] matches = folder != null ? folder.listFiles(filter) : null;
+		if (matches != null) {
+			Arrays.sort(matches);
+			files.addAll(Arrays.asList(matches));
+		}
+		return files;
+	}
+
+	/**
+	 * Converts several <code>BioPAX</code> files with a bounded pool of workers
+	 * in this JVM. The workers share the gene mappers and one
+	 * {@link KeggInfoManagement}, whose journal is closed at the end. The pathways of
+	 * each input file are written to a sub folder of the output folder, named
+	 * like the input file.
+	 * 
+	 * @param inputs <code>BioPAX</code> files.
+	 * @param outputFolderName Result folder.
+	 * @param species
+	 * @param parser backend used to read the <code>BioPAX</code> files.
+	 * @param threads number of pathways of one file converted in parallel.
+	 * @param fileThreads number of files converted in parallel.
+	 * @return the number of files, which could not be converted.
+	 */
+	public int convertBioPAXFilesToSBML(List<File> inputs, String outputFolderName,
+			final Species species, final BioPAXParser parser, final int threads, int fileThreads) {
+		File outputFolder = new File(outputFolderName);
+		if (!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
+			log.severe("Could not create the output folder '" + outputFolderName + "'.");
+			return inputs.size();
+		}
+
+		final KeggInfoManagement manager = loadKeggInfoManager();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(fileThreads, inputs.size())));
+		Map<File, Future<Boolean>> results = new LinkedHashMap<File, Future<Boolean>>();
+		for (final File input : inputs) {
+			final File output = new File(outputFolder, FileTools.removeFileExtension(input.getName()));
+			results.put(input, pool.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					if (!output.isDirectory() && !output.mkdirs()) {
+						log.severe("Could not create the output folder '" + output + "'.");
+						return Boolean.FALSE;
+					}
+					return Boolean.valueOf(convertBioPAXToSBML(input.getPath(), output.getPath(),
+							species, parser, threads, manager));
+				}
+			}));
+		}
+		pool.shutdown();
+
+		int failed = 0;
+		for (Map.Entry<File, Future<Boolean>> result : results.entrySet()) {
+			boolean success = false;
+			try {
+				success = result.getValue().get().booleanValue();
+			} catch (ExecutionException e) {
+				log.log(Level.SEVERE, "Could not convert '" + result.getKey() + "'.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result.getValue().cancel(true);
+			}
+			if (success) {
+				log.info("OK     " + result.getKey().getPath());
+			} else {
+				failed++;
+				log.warning("FAILED " + result.getKey().getPath());
+			}
+		}
+		log.info("Converted " + (inputs.size() - failed) + " of " + inputs.size() + " files, "
+				+ failed + " failed.");
+
+		saveKeggInfoManager(manager);
+		return failed;
+	}
+
+	/**
+	 * Converts several <code>SBGN</code> files with a bounded pool of workers.
+	 * Each worker takes a {@link SBGN2KGML} converter and a
+	 * {@link KEGG2SBMLqual} from a pool, so the mappings of the converters are
+	 * reset and reused for the next file instead of being created again (see
+	 * {@link SBGNConversionContext}). For each input file, a KGML file
+	 * (<code>.kgml.xml</code>) and an SBML file (<code>.sbml.xml</code>) named
+	 * like the input file are written to the output folder.
+	 * 
+	 * @param inputs <code>SBGN</code> files.
+	 * @param outputFolderName Result folder.
+	 * @param fileThreads number of files converted in parallel.
+	 * @return the number of files, which could not be converted.
+	 */
+	public int convertSBGNFilesToSBML(List<File> inputs, String outputFolderName, int fileThreads) {
+		final File outputFolder = new File(outputFolderName);
+		if (!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
+			log.severe("Could not create the output folder '" + outputFolderName + "'.");
+			return inputs.size();
+		}
+
+		final KeggInfoManagement manager = loadKeggInfoManager();
+		int threads = Math.max(1, Math.min(fileThreads, inputs.size()));
+		final BlockingQueue<SBGN2KGML> converters = new ArrayBlockingQueue<SBGN2KGML>(threads);
+		final BlockingQueue<KEGG2SBMLqual> translators = new ArrayBlockingQueue<KEGG2SBMLqual>(threads);
+		for (int i = 0; i < threads; i++) {
+			converters.add(new SBGN2KGML(new SBGNConversionContext()));
+			translators.add(createKEGG2SBMLqual(manager));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Map<File, Future<Boolean>> results = new LinkedHashMap<File, Future<Boolean>>();
+		for (final File input : inputs) {
+			results.put(input, pool.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws IOException, InterruptedException {
+					String name = FileTools.removeFileExtension(getUncompressedName(input));
+					de.zbit.kegg.parser.pathway.Pathway p;
+					SBGN2KGML converter = converters.take();
+					try {
+						p = converter.translateStream(input.getPath());
+					} finally {
+						converters.put(converter);
+					}
+					p.setTitle(name);
+					KGMLWriter.writeKGML(p, new File(outputFolder, name + ".kgml.xml").getPath(), false);
+					removeGlyphs(p);
+
+					KEGG2SBMLqual k2s = translators.take();
+					try {
+						return Boolean.valueOf(writeSBML(k2s, p, new File(outputFolder, name + ".sbml.xml").getPath()));
+					} finally {
+						translators.put(k2s);
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+
+		int failed = 0;
+		for (Map.Entry<File, Future<Boolean>> result : results.entrySet()) {
+			boolean success = false;
+			try {
+				success = result.getValue().get().booleanValue();
+			} catch (ExecutionException e) {
+				log.log(Level.SEVERE, "Could not convert '" + result.getKey() + "'.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result.getValue().cancel(true);
+			}
+			if (success) {
+				log.info("OK     " + result.getKey().getPath());
+			} else {
+				failed++;
+				log.warning("FAILED " + result.getKey().getPath());
+			}
+		}
+		log.info("Converted " + (inputs.size() - failed) + " of " + inputs.size() + " files, "
+				+ failed + " failed.");
+
+		saveKeggInfoManager(manager);
+		return failed;
+	}
+
+	/**
+	 * Converts a single <code>SBGN-ML</code> file to one SBML file. The title of
+	 * the model is taken from the name of the output file.
+	 * 
+	 * @param input <code>SBGN-ML</code> file, optionally gzipped or zipped.
+	 * @param outputFileName the SBML file.
+	 * @return {@code true} if the file was written.
+	 */
+	public boolean convertSBGNToSBML(String input, String outputFileName) {
+		KeggInfoManagement manager = loadKeggInfoManager();
+		boolean success = false;
+		try {
+			de.zbit.kegg.parser.pathway.Pathway p = new SBGN2KGML().translateStream(input);
+			String title = FileTools.removeFileExtension(new File(outputFileName).getName());
+			if (title.toLowerCase().endsWith(".sbml")) {
+				title = title.substring(0, title.length()-5);
+			}
+			p.setTitle(title);
+			removeGlyphs(p);
+			success = writeSBML(createKEGG2SBMLqual(manager), p, outputFileName);
+		} catch (IOException e) {
+			log.log(Level.SEVERE, "Could not convert '" + input + "'.", e);
+		}
+		saveKeggInfoManager(manager);
+		return success;
+	}
+
+	/**
+	 * The entries of a pathway created by {@link SBGN2KGML} keep their glyphs,
+	 * but the SBML translator stores its species there.
+	 * 
+	 * @param p
+	 */
+	private static void removeGlyphs(de.zbit.kegg.parser.pathway.Pathway p) {
+		for (de.zbit.kegg.parser.pathway.Entry e : p.getEntries()) {
+			e.setCustom(null);
+		}
 	}
 
 	/**
@@ -124,25 +483,211 @@ public class SBVC extends Launcher{
 	 * be created. {@code false} to create a single output file.
 	 */
 	public void convertBioPAXToSBML(String input, String outputFolderName, Species species) {
+		convertBioPAXToSBML(input, outputFolderName, species, BioPAXParser.SIMPLE);
+	}
+
+	/**
+	 * 
+	 * @param input <code>BioPAX</code> file.
+	 * @param outputFolderName Result folder in which the created file should be put.
+	 * @param species
+	 * @param parser backend used to read the <code>BioPAX</code> file.
+	 */
+	public void convertBioPAXToSBML(String input, String outputFolderName, Species species,
+			BioPAXParser parser) {
+		convertBioPAXToSBML(input, outputFolderName, species, parser, 1);
+	}
+
+	/**
+	 * 
+	 * @param input <code>BioPAX</code> file.
+	 * @param outputFolderName Result folder in which the created file should be put.
+	 * @param species
+	 * @param parser backend used to read the <code>BioPAX</code> file.
+	 * @param threads number of pathways converted in parallel.
+	 */
+	public void convertBioPAXToSBML(String input, String outputFolderName, Species species,
+			BioPAXParser parser, int threads) {
+		KeggInfoManagement manager = loadKeggInfoManager();
+		convertBioPAXToSBML(input, outputFolderName, species, parser, threads, manager);
+		saveKeggInfoManager(manager);
+	}
+
+	/**
+	 * Converts the file without loading or saving the cache of KEGG infos.
+	 * 
+	 * @param input <code>BioPAX</code> file.
+	 * @param outputFolderName Result folder in which the created file should be put.
+	 * @param species
+	 * @param parser backend used to read the <code>BioPAX</code> file.
+	 * @param threads number of pathways converted in parallel. If it is greater
+	 * than one and the output is a folder, the same number of workers writes the
+	 * SBML files, while the remaining pathways are still converted (see
+	 * {@link #convertInPipeline(String, String, Species, BioPAXParser, int, KeggInfoManagement)}).
+	 * @param manager cache of KEGG infos, which can be shared by translators
+	 * running in parallel (see {@link SynchronizedKeggInfoManagement}).
+	 * @return {@code true} if at least one pathway was found and all pathways
+	 * were written.
+	 */
+	public boolean convertBioPAXToSBML(String input, String outputFolderName, Species species,
+			BioPAXParser parser, int threads, KeggInfoManagement manager) {
+		if (threads > 1 && new File(outputFolderName).isDirectory()) {
+			return convertInPipeline(input, outputFolderName, species, parser, threads, manager);
+		}
+
 		// getting the KEGG Pathways of the model
 		Collection<de.zbit.kegg.parser.pathway.Pathway> keggPWs =
-				BioPAX2KGML.createPathwaysFromModel(input, species);
+				BioPAX2KGML.createPathwaysFromModel(input, species, parser, threads);
+		if (keggPWs.isEmpty()) {
+			log.warning("No pathways could be created from '" + input + "'.");
+			return false;
+		}
 
 		// translation to sbml
-		KEGG2SBMLqual k2s = null;
-		if (new File(Translator.cacheFileName).exists()
-				&& new File(Translator.cacheFileName).length() > 1) {
-			KeggInfoManagement manager = null;
-			try {
-				manager = (KeggInfoManagement) InfoManagement.loadFromFilesystem(Translator.cacheFileName);
-				k2s = new KEGG2SBMLqual(manager);
-			} catch (IOException e) {
-				k2s = new KEGG2SBMLqual();
+		KEGG2SBMLqual k2s = createKEGG2SBMLqual(manager);
+
+		// Translate and write output
+		if (keggPWs.size()==1 && !new File(outputFolderName).isDirectory()) {
+			// Single in and single out file, no split mode.
+			de.zbit.kegg.parser.pathway.Pathway p = keggPWs.iterator().next();
+			String title = FileTools.removeFileExtension(outputFolderName);
+			if (title.toLowerCase().endsWith(".sbml")) {
+				title = title.substring(0, title.length()-5);
 			}
+			p.setTitle(title);
+			return writeSBML(k2s, p, outputFolderName);
+
 		} else {
-			k2s = new KEGG2SBMLqual();
+			// We had multiple biopax pathway objects in input
+			// SBML does not permit multiple models => write one file per model
+			boolean success = true;
+			for (de.zbit.kegg.parser.pathway.Pathway p : keggPWs) {
+				success &= writeSBML(k2s, p, Utils.ensureSlash(outputFolderName) + KGMLWriter.createFileName(p));
+			}
+			return success;
+		}
+	}
+
+	/**
+	 * Converts the file in two stages: the KGML conversion puts each pathway
+	 * into a bounded queue, from which {@code threads} workers, each with its
+	 * own {@link KEGG2SBMLqual}, take the pathways and write them to the output
+	 * folder. Empty pathways are skipped, unless the file contains only one
+	 * pathway, as in the sequential conversion. The translators are created
+	 * before the KGML conversion starts, and a worker, which fails on a
+	 * pathway, even with an {@link Error}, continues to take pathways until
+	 * the end of the queue, so the conversion never blocks on a full queue.
+	 * 
+	 * @param input <code>BioPAX</code> file.
+	 * @param outputFolderName existing result folder.
+	 * @param species
+	 * @param parser backend used to read the <code>BioPAX</code> file.
+	 * @param threads number of pathways converted and written in parallel.
+	 * @param manager cache of KEGG infos.
+	 * @return {@code true} if at least one pathway was found and all pathways
+	 * were written.
+	 */
+	private boolean convertInPipeline(String input, final String outputFolderName, Species species,
+			BioPAXParser parser, int threads, final KeggInfoManagement manager) {
+		final BlockingQueue<de.zbit.kegg.parser.pathway.Pathway> queue =
+				new ArrayBlockingQueue<de.zbit.kegg.parser.pathway.Pathway>(2 * threads);
+		final AtomicInteger pathways = new AtomicInteger();
+		final List<de.zbit.kegg.parser.pathway.Pathway> emptyPathways =
+				Collections.synchronizedList(new ArrayList<de.zbit.kegg.parser.pathway.Pathway>());
+
+		// a worker without translator would not drain the queue
+		List<KEGG2SBMLqual> translators = new ArrayList<KEGG2SBMLqual>(threads);
+		for (int i = 0; i < threads; i++) {
+			translators.add(createKEGG2SBMLqual(manager));
 		}
 
+		ExecutorService writers = Executors.newFixedThreadPool(threads);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(threads);
+		for (final KEGG2SBMLqual k2s : translators) {
+			results.add(writers.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws InterruptedException {
+					boolean success = true;
+					de.zbit.kegg.parser.pathway.Pathway p;
+					while ((p = queue.take()) != END_OF_PATHWAYS) {
+						pathways.incrementAndGet();
+						if (!p.isSetEntries() && !p.isSetReactions() && !p.isSetRelations()) {
+							emptyPathways.add(p);
+							continue;
+						}
+						try {
+							success &= writeSBML(k2s, p, Utils.ensureSlash(outputFolderName) + KGMLWriter.createFileName(p));
+						} catch (Throwable e) {
+							// e.g. an OutOfMemoryError: keep draining the queue, else the conversion blocks
+							log.log(Level.SEVERE, "Could not write pathway '" + p.getName() + "'.", e);
+							success = false;
+						}
+					}
+					return Boolean.valueOf(success);
+				}
+			}));
+		}
+		writers.shutdown();
+
+		boolean success = true;
+		try {
+			try {
+				BioPAX2KGML.createPathwaysFromModel(input, species, parser, threads, queue);
+			} finally {
+				for (int i = 0; i < threads; i++) {
+					queue.put(END_OF_PATHWAYS);
+				}
+			}
+			for (Future<Boolean> result : results) {
+				try {
+					success &= result.get().booleanValue();
+				} catch (ExecutionException e) {
+					log.log(Level.SEVERE, "Could not write pathways.", e.getCause());
+					success = false;
+				}
+			}
+		} catch (InterruptedException e) {
+			log.log(Level.SEVERE, "Conversion of '" + input + "' was interrupted.", e);
+			Thread.currentThread().interrupt();
+			writers.shutdownNow();
+			return false;
+		}
+
+		if (pathways.get() == 0) {
+			log.warning("No pathways could be created from '" + input + "'.");
+			return false;
+		} else if (pathways.get() == 1 && emptyPathways.size() == 1) {
+			de.zbit.kegg.parser.pathway.Pathway p = emptyPathways.get(0);
+			success &= writeSBML(createKEGG2SBMLqual(manager), p,
+					Utils.ensureSlash(outputFolderName) + KGMLWriter.createFileName(p));
+		}
+		return success;
+	}
+
+	/**
+	 * Translates the pathway and writes the SBML file. Translations of
+	 * different translators run in parallel, only their lookups in the cache of
+	 * KEGG infos are serialized (see {@link SynchronizedKeggInfoManagement}).
+	 * 
+	 * @param k2s translator, which is not used by other threads at the same time.
+	 * @param p
+	 * @param fileName
+	 * @return {@code true} if the file was written.
+	 */
+	private static boolean writeSBML(KEGG2SBMLqual k2s, de.zbit.kegg.parser.pathway.Pathway p,
+			String fileName) {
+		SBMLDocument doc = k2s.translate(p);
+		return doc != null && k2s.writeToFile(doc, fileName);
+	}
+
+	/**
+	 * @param manager cache of KEGG infos, which can be shared by translators
+	 * running in parallel (see {@link #loadKeggInfoManager()}).
+	 * @return a translator with the settings of the BioPAX2SBML converter.
+	 */
+	private static KEGG2SBMLqual createKEGG2SBMLqual(KeggInfoManagement manager) {
+		KEGG2SBMLqual k2s = new KEGG2SBMLqual(manager);
+
 		//    // original version
 		//    // necessary that both reactions and relations are written to the file
 		//    k2s.setConsiderReactions(true);
@@ -168,30 +713,46 @@ public class SBVC extends Launcher{
 		k2s.setAddLayoutExtension(false);
 		k2s.setUseGroupsExtension(false);
 		k2s.setCheckAtomBalance(false);
+		return k2s;
+	}
 
-		// Translate and write output
-		if (keggPWs.size()==1 && !new File(outputFolderName).isDirectory()) {
-			// Single in and single out file, no split mode.
-			de.zbit.kegg.parser.pathway.Pathway p = keggPWs.iterator().next();
-			String title = FileTools.removeFileExtension(outputFolderName);
-			if (title.toLowerCase().endsWith(".sbml")) {
-				title = title.substring(0, title.length()-5);
-			}
-			p.setTitle(title);
-			k2s.translate(p, outputFolderName);
-
-		} else {
-			// We had multiple biopax pathway objects in input
-			// SBML does not permit multiple models => write one file per model
-			for (de.zbit.kegg.parser.pathway.Pathway p : keggPWs) {
-				k2s.translate(p, Utils.ensureSlash(outputFolderName) + KGMLWriter.createFileName(p));
-			}
-
+	/**
+	 * @return the cache of KEGG infos, which is journaled in
+	 * {@link #KEGG_INFO_JOURNAL} and reads the ids, which are not journaled yet,
+	 * from the cache in {@link Translator#cacheFileName}. If the journal cannot
+	 * be opened, the new infos are only kept in memory. The cache can be shared
+	 * by translators running in parallel.
+	 */
+	private static KeggInfoManagement loadKeggInfoManager() {
+		File legacyCache = new File(Translator.cacheFileName);
+		try {
+			return new JournaledKeggInfoManagement(new File(KEGG_INFO_JOURNAL), legacyCache);
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Could not open '" + KEGG_INFO_JOURNAL + "'.", e);
 		}
+		return new SynchronizedKeggInfoManagement(legacyCache);
+	}
 
-		// Remember already queried objects (save cache)
-		if (AbstractKEGGtranslator.getKeggInfoManager().hasChanged()) {
-			KeggInfoManagement.saveToFilesystem(Translator.cacheFileName, AbstractKEGGtranslator.getKeggInfoManager());
+	/**
+	 * Remember already queried objects: close the journal and add the infos,
+	 * which were retrieved from KEGG, to the legacy cache
+	 * {@link Translator#cacheFileName}, which is shared with the KEGGtranslator.
+	 * 
+	 * @param manager
+	 */
+	private static void saveKeggInfoManager(KeggInfoManagement manager) {
+		if (manager instanceof JournaledKeggInfoManagement) {
+			try {
+				((JournaledKeggInfoManagement) manager).close();
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Could not close '" + KEGG_INFO_JOURNAL + "'.", e);
+			}
+		} else if (manager instanceof SynchronizedKeggInfoManagement) {
+			try {
+				((SynchronizedKeggInfoManagement) manager).saveLegacyCache();
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Could not write '" + Translator.cacheFileName + "'.", e);
+			}
 		}
 	}
 
@@ -26,7 +26,6 @@ package de.zbit.sbvc.io;
 
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -34,6 +33,7 @@ import javax.swing.JOptionPane;
 import javax.swing.SwingWorker;
 
 import de.zbit.biopax.BioPAXpathway;
+import de.zbit.biopax.SpeciesRegistry;
 import de.zbit.gui.GUITools;
 import de.zbit.gui.JLabeledComponent;
 import de.zbit.kegg.Translator;
@@ -205,12 +205,7 @@ public class BioPAXImporter extends NotifyingWorker<Object> {
 	 * @return a list of all organisms that are available within your application.
 	 */
 	protected List<Species> availableOrganisms() {
-		try {
-			return Species.generateSpeciesDataStructure();
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
-		}
+		return SpeciesRegistry.getInstance().getSpecies();
 	}
 
 }
@@ -0,0 +1,528 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.cache.InfoManagement;
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * {@link KeggInfoManagement}, which keeps every retrieved {@link KeggInfos}
+ * in an append-only journal file. Opening the journal only reads the KEGG ids
+ * and the positions of the records, a record is deserialized when its id is
+ * requested for the first time. Records are written as soon as they were
+ * retrieved from KEGG and are synced to disk every
+ * {@link #CHECKPOINT_RECORDS} records or {@link #CHECKPOINT_INTERVAL}
+ * milliseconds, so a crash loses at most the records since the last
+ * checkpoint. An incomplete record at the end of the journal is dropped when
+ * it is opened.
+ * <p>
+ * Ids, which are not in the journal, are looked up in a legacy serialized
+ * cache (see {@link InfoManagement#saveToFilesystem(String, InfoManagement)}),
+ * which is deserialized on the first miss, before they are retrieved from
+ * KEGG. Hits in the legacy cache are appended to the journal and infos
+ * retrieved from KEGG are added to the legacy cache, when the journal is
+ * closed. As a {@link SynchronizedKeggInfoManagement}, the journal can be
+ * shared by translators running in parallel.
+ * <p>
+ * Only one process can write the journal: it is locked with the file
+ * <code>&lt;journal&gt;.lock</code>. If the lock is held by another process,
+ * the journal is opened read-only and new infos are only kept in memory.
+ * <p>
+ * If an id was written more than once, {@link #close()} rewrites the journal
+ * to a temporary file, which atomically replaces the journal.
+ * 
+ * @version $Rev$
+ */
+public class JournaledKeggInfoManagement extends SynchronizedKeggInfoManagement {
+  
+  private static final long serialVersionUID = -3350941627370335208L;
+  
+  public static final transient Logger log = Logger.getLogger(JournaledKeggInfoManagement.class.getName());
+  
+  /**
+   * number of new records, after which the journal is synced to disk
+   */
+  public static final int CHECKPOINT_RECORDS = 100;
+  
+  /**
+   * milliseconds, after which new records are synced to disk
+   */
+  public static final long CHECKPOINT_INTERVAL = 30000;
+  
+  /**
+   * first bytes of a journal ("KIJ1")
+   */
+  private static final int MAGIC = 0x4B494A31;
+  
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  private final transient File file;
+  
+  private transient RandomAccessFile lockFile;
+  private transient FileLock lock;
+  
+  /**
+   * KEGG id to the position of the length of its last record
+   */
+  private transient Map<String, Long> positions;
+  
+  /**
+   * number of records in the journal, including overwritten ones
+   */
+  private transient int records;
+  
+  private transient FileOutputStream out;
+  private transient DataOutputStream writer;
+  private transient RandomAccessFile reader;
+  
+  /**
+   * length of the journal including buffered records and the part of it, which
+   * is written to the file
+   */
+  private transient long length, flushedLength;
+  
+  private transient int uncheckpointedRecords;
+  private transient long lastCheckpoint;
+  
+  private transient long readRecords, writtenRecords;
+  
+  /**
+   * Opens the journal or creates it, if it does not exist.
+   * 
+   * @param file
+   * @throws IOException if the file is no journal or cannot be opened
+   */
+  public JournaledKeggInfoManagement(File file) throws IOException {
+    this(file, null);
+  }
+  
+  /**
+   * Opens the journal or creates it, if it does not exist.
+   * 
+   * @param file
+   * @param legacyCache serialized {@link KeggInfoManagement}, which is read if
+   *        an id is not in the journal. May be null or not exist.
+   * @throws IOException if the file is no journal or cannot be opened
+   */
+  public JournaledKeggInfoManagement(File file, File legacyCache) throws IOException {
+    super(legacyCache);
+    this.file = file;
+    lock();
+    try {
+      open();
+    } catch (IOException e) {
+      unlock();
+      throw e;
+    }
+  }
+  
+  /**
+   * Takes the lock of the journal, if no other process or journal in this
+   * process holds it.
+   * 
+   * @throws IOException
+   */
+  private void lock() throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.isDirectory()) {
+      dir.mkdirs();
+    }
+    lockFile = new RandomAccessFile(file.getPath() + ".lock", "rw");
+    try {
+      lock = lockFile.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      lockFile.close();
+      lockFile = null;
+      log.warning("'" + file + "' is used by another process, it is opened read-only.");
+    }
+  }
+  
+  /**
+   * Releases the lock of the journal.
+   * 
+   * @throws IOException
+   */
+  private void unlock() throws IOException {
+    if (lockFile != null) {
+      try {
+        lock.release();
+      } finally {
+        lockFile.close();
+        lockFile = null;
+        lock = null;
+      }
+    }
+  }
+  
+  /**
+   * @return true, if the journal could not be locked and new infos are not
+   *         written to it
+   */
+  public boolean isReadOnly() {
+    return lock == null;
+  }
+  
+  /**
+   * Reads the ids and positions of all records. An incomplete record at the
+   * end is dropped, unless the journal is read-only, because then it may
+   * still be written by the other process.
+   * 
+   * @throws IOException
+   */
+  private void open() throws IOException {
+    positions = new HashMap<String, Long>();
+    long valid = 0;
+    if (file.length() > 0) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (in.readInt() != MAGIC) {
+          throw new IOException("'" + file + "' is no KEGG info journal.");
+        }
+        valid = 4;
+        while (true) {
+          long position;
+          String id;
+          int size;
+          try {
+            byte[] idBytes = new byte[in.readUnsignedShort()];
+            in.readFully(idBytes);
+            id = new String(idBytes, UTF8);
+            position = valid + 2 + idBytes.length;
+            size = in.readInt();
+            if (in.skipBytes(size) < size) {
+              break;
+            }
+          } catch (EOFException e) {
+            break;
+          }
+          positions.put(id, Long.valueOf(position));
+          records++;
+          valid = position + 4 + size;
+        }
+      } catch (EOFException e) {
+        valid = 0;
+      } finally {
+        in.close();
+      }
+      
+      if (valid < file.length() && !isReadOnly()) {
+        log.warning("Dropping incomplete record at the end of '" + file + "'.");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+          raf.setLength(valid);
+        } finally {
+          raf.close();
+        }
+      }
+    }
+    
+    if (isReadOnly()) {
+      length = flushedLength = valid;
+      if (valid > 0) {
+        reader = new RandomAccessFile(file, "r");
+      }
+      lastCheckpoint = System.currentTimeMillis();
+      return;
+    }
+    
+    out = new FileOutputStream(file, true);
+    writer = new DataOutputStream(new BufferedOutputStream(out));
+    if (valid == 0) {
+      writer.writeInt(MAGIC);
+      writer.flush();
+      valid = 4;
+    }
+    length = flushedLength = valid;
+    reader = new RandomAccessFile(file, "r");
+    lastCheckpoint = System.currentTimeMillis();
+    log.fine("Opened '" + file + "' with " + positions.size() + " KEGG ids.");
+  }
+  
+  /**
+   * @param id
+   * @return the journaled info of the id or null
+   */
+  private synchronized KeggInfos read(String id) {
+    if (reader == null) {
+      return null;
+    }
+    Long position = positions.get(id);
+    if (position == null) {
+      return null;
+    }
+    try {
+      if (position.longValue() >= flushedLength) {
+        flush();
+      }
+      reader.seek(position.longValue());
+      byte[] record = new byte[reader.readInt()];
+      reader.readFully(record);
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record));
+      try {
+        readRecords++;
+        return (KeggInfos) in.readObject();
+      } finally {
+        in.close();
+      }
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Could not read '" + id + "' from '" + file + "'.", e);
+      return null;
+    }
+  }
+  
+  /**
+   * Appends the info to the journal.
+   * 
+   * @param id
+   * @param info is not written, if it is null
+   */
+  private synchronized void append(String id, KeggInfos info) {
+    if (id == null || info == null || writer == null) {
+      return;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream objects = new ObjectOutputStream(bytes);
+      objects.writeObject(info);
+      objects.close();
+      byte[] idBytes = id.getBytes(UTF8);
+      
+      writer.writeShort(idBytes.length);
+      writer.write(idBytes);
+      writer.writeInt(bytes.size());
+      bytes.writeTo(writer);
+      positions.put(id, Long.valueOf(length + 2 + idBytes.length));
+      length += 2 + idBytes.length + 4 + bytes.size();
+      records++;
+      writtenRecords++;
+      
+      uncheckpointedRecords++;
+      if (uncheckpointedRecords >= CHECKPOINT_RECORDS
+          || System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL) {
+        checkpoint();
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not write '" + id + "' to '" + file + "'.", e);
+    }
+  }
+  
+  /**
+   * @throws IOException
+   */
+  private void flush() throws IOException {
+    writer.flush();
+    flushedLength = length;
+  }
+  
+  /**
+   * Writes all buffered records and syncs the journal to disk.
+   * 
+   * @throws IOException
+   */
+  public synchronized void checkpoint() throws IOException {
+    if (writer == null) {
+      return;
+    }
+    flush();
+    out.getFD().sync();
+    uncheckpointedRecords = 0;
+    lastCheckpoint = System.currentTimeMillis();
+  }
+  
+  /**
+   * Checkpoints and closes the journal. If more than half of the records are
+   * overwritten, the journal is compacted. Then the infos, which were retrieved
+   * from KEGG, are added to the legacy cache (see {@link #saveLegacyCache()}).
+   * The infos, which were already read, stay available in memory.
+   * 
+   * @throws IOException
+   */
+  public synchronized void close() throws IOException {
+    try {
+      if (writer != null) {
+        checkpoint();
+        if (records > 2 * positions.size()) {
+          compact();
+        }
+      }
+      saveLegacyCache();
+    } finally {
+      try {
+        if (writer != null) {
+          writer.close();
+        }
+        if (reader != null) {
+          reader.close();
+        }
+      } finally {
+        writer = null;
+        reader = null;
+        unlock();
+      }
+    }
+    log.fine(toString());
+  }
+  
+  /**
+   * Copies the last record of each id to a temporary file and replaces the
+   * journal with it.
+   * 
+   * @throws IOException
+   */
+  private void compact() throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(positions.entrySet());
+    FileOutputStream tmpOut = new FileOutputStream(tmp);
+    try {
+      DataOutputStream tmpWriter = new DataOutputStream(new BufferedOutputStream(tmpOut));
+      tmpWriter.writeInt(MAGIC);
+      for (Map.Entry<String, Long> entry : entries) {
+        reader.seek(entry.getValue().longValue());
+        byte[] record = new byte[reader.readInt()];
+        reader.readFully(record);
+        byte[] idBytes = entry.getKey().getBytes(UTF8);
+        tmpWriter.writeShort(idBytes.length);
+        tmpWriter.write(idBytes);
+        tmpWriter.writeInt(record.length);
+        tmpWriter.write(record);
+      }
+      tmpWriter.flush();
+      tmpOut.getFD().sync();
+    } finally {
+      tmpOut.close();
+    }
+    
+    try {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    log.fine("Compacted '" + file + "' from " + records + " to " + entries.size() + " records.");
+    records = entries.size();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchInformation(java.lang.String)
+   */
+  @Override
+  protected KeggInfos fetchInformation(String id) throws TimeoutException,
+      UnsuccessfulRetrieveException {
+    KeggInfos info = read(id);
+    if (info == null) {
+      info = super.fetchInformation(id);
+      append(id, info);
+    }
+    return info;
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchMultipleInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  protected KeggInfos[] fetchMultipleInformations(String[] ids, AbstractProgressBar progress)
+      throws TimeoutException, UnsuccessfulRetrieveException {
+    KeggInfos[] infos = new KeggInfos[ids.length];
+    List<Integer> missing = new ArrayList<Integer>();
+    for (int i = 0; i < ids.length; i++) {
+      infos[i] = read(ids[i]);
+      if (infos[i] == null) {
+        missing.add(Integer.valueOf(i));
+      }
+    }
+    if (missing.isEmpty()) {
+      return infos;
+    }
+    
+    String[] missingIDs = new String[missing.size()];
+    for (int i = 0; i < missingIDs.length; i++) {
+      missingIDs[i] = ids[missing.get(i).intValue()];
+    }
+    KeggInfos[] fetched = super.fetchMultipleInformations(missingIDs, progress);
+    for (int i = 0; fetched != null && i < fetched.length; i++) {
+      infos[missing.get(i).intValue()] = fetched[i];
+      append(missingIDs[i], fetched[i]);
+    }
+    return infos;
+  }
+  
+  /**
+   * @return the journal file
+   */
+  public File getFile() {
+    return file;
+  }
+  
+  /**
+   * @return number of KEGG ids in the journal
+   */
+  public synchronized int getNumberOfJournaledIDs() {
+    return positions != null ? positions.size() : 0;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName() + "[file=" + file + ", ids=" + (positions != null ? positions.size() : 0)
+        + ", records=" + records + ", read=" + readRecords + ", legacy=" + getNumberOfLegacyRecords()
+        + ", written=" + writtenRecords + (isReadOnly() ? ", read-only" : "") + "]";
+  }
+  
+}
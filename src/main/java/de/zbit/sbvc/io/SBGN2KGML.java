@@ -27,14 +27,13 @@ package de.zbit.sbvc.io;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 
-import org.sbgn.SbgnUtil;
 import org.sbgn.bindings.Arc;
 import org.sbgn.bindings.Glyph;
 import org.sbgn.bindings.Port;
@@ -55,7 +54,12 @@ import de.zbit.kegg.parser.pathway.Relation;
 import de.zbit.kegg.parser.pathway.RelationType;
 import de.zbit.kegg.parser.pathway.SubType;
 import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.sbvc.io.helper.PathwayHelper;
 import de.zbit.sbvc.io.helper.SBGN2KGMLHelper;
+import de.zbit.sbvc.io.helper.SBGNBindings;
+import de.zbit.sbvc.io.helper.SBGNConversionContext;
+import de.zbit.sbvc.io.helper.SBGNConversionContext.IntList;
+import de.zbit.sbvc.io.helper.SBGNStreamReader;
 
 /**
  * Class for converting {@link Sbgn} into a {@link Pathway}
@@ -73,25 +77,42 @@ public class SBGN2KGML {
 	public SBGN2KGMLHelper helper = new SBGN2KGMLHelper();												// helper class to get the proper EntryType and ArcType
 	
 	
-	HashMap<String, Entry> entryLookup = new HashMap<String, Entry>();									// mapping from the glyph id onto the entries
-	HashMap<String, String> clonemarkerLookup = new HashMap<String, String>();							// mapping from the clonemarker id onto the kegg id
-	HashMap<String, Glyph> processGlyphLookup = new HashMap<String, Glyph>();							// mapping from the process glyph id onto the glyph itself
+	/**
+	 * the mappings and counters of the current conversion
+	 */
+	protected final SBGNConversionContext context;
 	
-	HashMap<String, ArrayList<String>> portSubstrates = new HashMap<String, ArrayList<String>>();		// mapping from the port id onto the corresponding substrate ids
-	HashMap<String, ArrayList<String>> portProducts = new HashMap<String, ArrayList<String>>();			// mapping from the port id onto the corresponding product ids
-	HashMap<String, ArrayList<String>> reactionModifiers = new HashMap<String, ArrayList<String>>();	// mapping from the process glyph id onto the reactionmodifiers
+	private boolean considerGlyphs = true;																
+	private boolean considerArcs = true;
 	
-	ArrayList<Arc> arcsWithoutPorts = new ArrayList<Arc>();												// storage of all arcs without ports (relations)
+	/**
+	 * Creates a converter with its own {@link SBGNConversionContext}.
+	 */
+	public SBGN2KGML() {
+		this(new SBGNConversionContext());
+	}
 	
-	private int entryID = 0;																			// incremental number for all entries
-	private int reactionID = 0;																			// incremental number for all reactions
-	private int skipCount = 0;																			// counts the clonemarker occurences to guarantee ongoing names
+	/**
+	 * Creates a converter, which uses the given context. The context is reset
+	 * at the start of each translation, so the converter can be reused for
+	 * many files, but the context must not be used by another converter at the
+	 * same time.
+	 * @param context	{@link SBGNConversionContext}
+	 */
+	public SBGN2KGML(SBGNConversionContext context) {
+		this.context = context;
+	}
 	
-	private boolean considerGlyphs = true;																
-	private boolean considerArcs = true;
+	/**
+	 * @return the {@link SBGNConversionContext} of this converter
+	 */
+	public SBGNConversionContext getContext() {
+		return context;
+	}
 
 	/**
-	 * Method for reading a {@link Sbgn}-file
+	 * Method for reading a {@link Sbgn}-file. The JAXB context is shared by all
+	 * calls (see {@link SBGNBindings}).
 	 * @param filename		the name of the file as {@link String}
 	 * @return {@link Sbgn}	returns a {@link Sbgn}-object
 	 * @exception JAXBException
@@ -104,7 +125,7 @@ public class SBGN2KGML {
 		
 		// try reading the file
 		try {
-			sbgn = SbgnUtil.readFromFile(f);
+			sbgn = SBGNBindings.read(f);
 			
 		} catch (JAXBException e) {
 			log.log(Level.SEVERE, String.format("Couldn't read in the the file: %s", f.getAbsoluteFile()), e);
@@ -114,7 +135,8 @@ public class SBGN2KGML {
 	}
 
 	/**
-	 * Method for validating a {@link Sbgn}-file
+	 * Method for validating a {@link Sbgn}-file. The compiled schema is shared
+	 * by all calls (see {@link SBGNBindings}).
 	 * @param filename	the name of the file as {@link String}
 	 * @return {@link boolean}	<ul>
 	 * 								<li> {@code true} if the file is valid</li>
@@ -132,7 +154,7 @@ public class SBGN2KGML {
 		
 		// try validating the file
 		try {
-			isValid = SbgnUtil.isValid(f);
+			isValid = SBGNBindings.isValid(f);
 		} catch (JAXBException e) {
 			log.log(Level.SEVERE, String.format("Couldn't read in the the file: %s", f.getAbsoluteFile()), e);
 		} catch (SAXException e) {
@@ -151,6 +173,9 @@ public class SBGN2KGML {
 	 */
 	protected Pathway translate(Sbgn sbgn) {
 
+		// clear the mappings of the last translation
+		context.reset();
+		
 		// create a new pathway
 		Pathway p = new Pathway("unknown", "unknown", 10000, "unknown_title");
 
@@ -170,19 +195,68 @@ public class SBGN2KGML {
 	}
 	
 	/**
-	 * Method for adding all {@link Entry}'s to the {@link Pathway}
+	 * Method for translating a {@link Sbgn}-file into a {@link Pathway} without
+	 * reading the whole file into a {@link Sbgn} object. The glyphs and arcs are
+	 * translated, while they are read (see {@link SBGNStreamReader}).
+	 * @param filename	the name of the file as {@link String}
+	 * @return {@link Pathway}	(see {@link KGMLWriter})
+	 * @throws IOException if the file could not be read or parsed
+	 */
+	public Pathway translateStream(String filename) throws IOException {
+		
+		// clear the mappings of the last translation
+		context.reset();
+		
+		// create a new pathway
+		final Pathway p = new Pathway("unknown", "unknown", 10000, "unknown_title");
+		
+		// translate the glyphs and arcs
+		try {
+			SBGNStreamReader.read(new File(filename), new SBGNStreamReader.Handler() {
+				@Override
+				public void glyphRead(Glyph glyph) {
+					if(considerGlyphs)
+						handleGlyph(glyph, p);
+				}
+				@Override
+				public void arcRead(String clazz, String source, String target) {
+					if(considerArcs)
+						handleArc(clazz, source, target, p);
+				}
+			});
+		} catch (XMLStreamException e) {
+			throw new IOException(String.format("Couldn't parse the file: %s", filename), e);
+		} catch (JAXBException e) {
+			throw new IOException(String.format("Couldn't read in the the file: %s", filename), e);
+		}
+		
+		// create the reactions of the process glyphs
+		if(considerArcs)
+			handleAllReactions(p);
+		
+		// add entries to pathway
+		addAllEntriesToPathway(p);
+		
+		return p;
+	}
+	
+	/**
+	 * Method for adding all {@link Entry}'s to the {@link Pathway} in the order
+	 * of their glyphs, see {@link PathwayHelper#addEntries(Pathway, java.util.Collection)}.
 	 * @param p	{@link Pathway}
 	 */
 	private void addAllEntriesToPathway(Pathway p) {
-
-		// create an iterator
-		Iterator<Entry> entryIterator = entryLookup.values().iterator();
 		
-		// add the entries to the pathway
-		while(entryIterator.hasNext()){
-			Entry e = entryIterator.next();
-			p.addEntry(e);
+		List<Entry> entries = context.getEntries();
+		for (int i = 0; i < entries.size(); i++) {
+			Entry e = entries.get(i);
+			
+			// set the reactions, which are modified by the entry
+			String reactions = context.getReactions(i);
+			if(reactions != null)
+				e.setReaction(reactions);
 		}
+		PathwayHelper.addEntries(p, entries);
 		
 	}
 
@@ -194,61 +268,72 @@ public class SBGN2KGML {
 	protected void handleAllGlyphs(Sbgn sbgn, Pathway p){
 		
 		for (Glyph g : sbgn.getMap().getGlyph()) {
+			handleGlyph(g, p);
+		}
+		
+	}
+	
+	/**
+	 * Method to convert a {@link Glyph} into an {@link Entry}
+	 * @param g	{@link Glyph}
+	 * @param p	{@link Pathway}
+	 */
+	protected void handleGlyph(Glyph g, Pathway p){
+		
+		// create a mapping for the gylpsh and store the informations in the hashmaps
+		createMappingForProcessGlyphsOnly(g);
+		
+		// no label means process glyph
+		if(g.getLabel() != null){
 			
-			// create a mapping for the gylpsh and store the informations in the hashmaps
-			createMappingForProcessGlyphsOnly(g);
-			
-			// no label means process glyph
-			if(g.getLabel() != null){
-				
-				// create a new entry with an ongoing id
-				Entry e = new EntryExtended(p, ++entryID, "unknown_entry:"+(entryID-skipCount));
+			// create a new entry with an ongoing id
+			int entryID = context.nextEntryID();
+			Entry e = new EntryExtended(p, entryID, "unknown_entry:"+(entryID-context.getSkipCount()));
 
-				// convert the GlyphType into an EntryType
-				e.setType(helper.getEntryTypeFromGlyphType(GlyphType.valueOfString(g.getClazz())));
-				
-				// create the graphics
-				Graphics gr = null;
-				
-				// determine the graphic type of the entry
-				if (e.getType().compareTo(EntryType.compound) == 0)
-					gr = Graphics.createGraphicsForCompound(g.getLabel().getText());
-				else if (e.getType().compareTo(EntryType.map) == 0)
-					gr = Graphics.createGraphicsForPathwayReference(g.getLabel().getText());
-				else if (e.getType().compareTo(EntryType.group) == 0)
-				  gr = Graphics.createGraphicsForGroupOrComplex(g.getLabel().getText());
-				else if (e.getType().compareTo(EntryType.gene) == 0)
-				  gr = Graphics.createGraphicsForProtein(g.getLabel().getText());
-				else
-				  gr = new Graphics(g.getLabel().getText());
-				
-				if(gr != null){
-					gr.setDefaults(e.getType());
-					gr.setX((int) g.getBbox().getX());
-					gr.setY((int) g.getBbox().getY());
-					gr.setHeight((int) g.getBbox().getH());
-					gr.setWidth((int) g.getBbox().getW());
-				}
+			// convert the GlyphType into an EntryType
+			e.setType(helper.getEntryTypeFromGlyphType(GlyphType.valueOfString(g.getClazz())));
+			
+			// create the graphics
+			Graphics gr = null;
+			
+			// determine the graphic type of the entry
+			if (e.getType().compareTo(EntryType.compound) == 0)
+				gr = Graphics.createGraphicsForCompound(g.getLabel().getText());
+			else if (e.getType().compareTo(EntryType.map) == 0)
+				gr = Graphics.createGraphicsForPathwayReference(g.getLabel().getText());
+			else if (e.getType().compareTo(EntryType.group) == 0)
+			  gr = Graphics.createGraphicsForGroupOrComplex(g.getLabel().getText());
+			else if (e.getType().compareTo(EntryType.gene) == 0)
+			  gr = Graphics.createGraphicsForProtein(g.getLabel().getText());
+			else
+			  gr = new Graphics(g.getLabel().getText());
+			
+			if(gr != null){
+				gr.setDefaults(e.getType());
+				gr.setX((int) g.getBbox().getX());
+				gr.setY((int) g.getBbox().getY());
+				gr.setHeight((int) g.getBbox().getH());
+				gr.setWidth((int) g.getBbox().getW());
+			}
 	
-				// add the graphics to the entry
-				e.addGraphics(gr);
-				
-				// map the glyph onto the entries and the glyphs
-				e.setCustom(g);
-				entryLookup.put(g.getId(), e);
-				
-				// same entries have the same name
-				// TODO: maybe decrease the number if a clone is found to get ongoing numbering!
-				if(g.getClone() != null) {
-					if(clonemarkerLookup.containsKey(g.getLabel().getText())) {
-						e.setName(clonemarkerLookup.get(g.getLabel().getText()));
-						skipCount++;
-					} else {
-						clonemarkerLookup.put(g.getLabel().getText(), e.getName());
-					}
+			// add the graphics to the entry
+			e.addGraphics(gr);
+			
+			// map the glyph onto the entries and the glyphs
+			e.setCustom(g);
+			context.addEntry(g.getId(), e);
+			
+			// same entries have the same name
+			// TODO: maybe decrease the number if a clone is found to get ongoing numbering!
+			if(g.getClone() != null) {
+				if(context.getClonemarkerLookup().containsKey(g.getLabel().getText())) {
+					e.setName(context.getClonemarkerLookup().get(g.getLabel().getText()));
+					context.incrementSkipCount();
 				} else {
-					clonemarkerLookup.put(g.getLabel().getText(), e.getName());
+					context.getClonemarkerLookup().put(g.getLabel().getText(), e.getName());
 				}
+			} else {
+				context.getClonemarkerLookup().put(g.getLabel().getText(), e.getName());
 			}
 		}
 		
@@ -261,62 +346,150 @@ public class SBGN2KGML {
 	 */
 	protected void handleAllArcs(Sbgn sbgn, Pathway p){
 		
-		// create a mapping a the arcs and ports and store the informations in the hashmaps
-		createMappingForAllPortsAndArcs(sbgn);
+		// map the arcs onto the ports and create the relations
+		for (Arc arc : sbgn.getMap().getArc()) {
+			handleArc(arc.getClazz(), getId(arc.getSource()), getId(arc.getTarget()), p);
+		}
 		
-		/////////////////////////////////////
-		// create edges for the relations //
-		///////////////////////////////////
-		for(Arc awp : arcsWithoutPorts) {
-			
-			// get source and target glyphs
-			Glyph sourceGlyph = (Glyph) awp.getSource();
-			Glyph targetGlyph = (Glyph) awp.getTarget();
-			
-			// get the corresponding entries
-			int sourceEntryID = entryLookup.get(sourceGlyph.getId()).getId();
-			int targetEntryID = entryLookup.get(targetGlyph.getId()).getId();
-			
-			// create a relation
-			// TODO: maybe change the relation type accordingly
-			Relation relation = new Relation(sourceEntryID, targetEntryID, RelationType.other);
-			
-			// get the arctype
-			ArcType atype = ArcType.valueOfString(awp.getClazz());
-			
-			// look up the subtype
-			SubType subtype = helper.getSubTypeFromArcType(atype);
-			
-			// set the subtype only if there is a subtype
-			if(subtype != null){
-				relation.addSubtype(subtype);
+		// create the reactions of the process glyphs
+		handleAllReactions(p);
+		
+	}
+	
+	/**
+	 * @param glyphOrPort	source or target of an {@link Arc}
+	 * @return the id of the {@link Glyph} or {@link Port}
+	 */
+	private static String getId(Object glyphOrPort) {
+		if(glyphOrPort instanceof Port)
+			return ((Port) glyphOrPort).getId();
+		else if(glyphOrPort instanceof Glyph)
+			return ((Glyph) glyphOrPort).getId();
+		return null;
+	}
+	
+	/**
+	 * Method to map an {@link Arc} onto the {@link Port} of a process glyph,
+	 * which it is linked to, or to convert it into a {@link Relation}, if it
+	 * links two glyphs without ports. The glyphs have to be handled before
+	 * (see {@link #handleGlyph(Glyph, Pathway)}).
+	 * @param clazz	the class of the arc
+	 * @param sourceID	id of the source glyph or port
+	 * @param targetID	id of the target glyph or port
+	 * @param p		{@link Pathway}
+	 */
+	protected void handleArc(String clazz, String sourceID, String targetID, Pathway p){
+		
+		int sourcePort = context.getPortIndex(sourceID);
+		int targetPort = context.getPortIndex(targetID);
+		
+		// the target of an arc from a port is a product of the port
+		if(sourcePort >= 0)
+			addReactant(sourcePort, targetID, false);
+		
+		// the source of an arc to a port is a substrate of the port
+		if(targetPort >= 0)
+			addReactant(targetPort, sourceID, true);
+		
+		// glyphs without ports are relations
+		if(sourcePort < 0 && targetPort < 0){
+			int targetProcess = context.getProcessIndex(targetID);
+			if(targetProcess < 0 && context.getProcessIndex(sourceID) < 0){
+				addRelation(clazz, sourceID, targetID, p);
+			} else if(targetProcess >= 0){
+				int entry = context.getEntryIndex(sourceID);
+				if(entry >= 0)
+					context.addModifier(targetProcess, entry);
+				else
+					log.fine(String.format("Ignoring the modifier '%s' of '%s', which is no entry.", sourceID, targetID));
 			}
-			
-			// add the relation to the pathway
-			p.addRelation(relation);
-			
 		}
-
+		
+	}
+	
+	/**
+	 * @param port		index of the port
+	 * @param glyphID	id of the reactant
+	 * @param substrate	{@code true} for a substrate, {@code false} for a product
+	 */
+	private void addReactant(int port, String glyphID, boolean substrate) {
+		int entry = context.getEntryIndex(glyphID);
+		if(entry < 0)
+			log.fine(String.format("Ignoring the reactant '%s', which is no entry.", glyphID));
+		else if(substrate)
+			context.addSubstrate(port, entry);
+		else
+			context.addProduct(port, entry);
+	}
+	
+	/**
+	 * Method to convert an {@link Arc} between two glyphs without ports into a
+	 * {@link Relation}
+	 * @param clazz	the class of the arc
+	 * @param sourceID	id of the source glyph
+	 * @param targetID	id of the target glyph
+	 * @param p		{@link Pathway}
+	 */
+	private void addRelation(String clazz, String sourceID, String targetID, Pathway p) {
+		
+		// get the corresponding entries
+		int sourceEntry = context.getEntryIndex(sourceID);
+		int targetEntry = context.getEntryIndex(targetID);
+		if(sourceEntry < 0 || targetEntry < 0){
+			log.fine(String.format("Ignoring the arc from '%s' to '%s', which doesn't link two entries.", sourceID, targetID));
+			return;
+		}
+		int sourceEntryID = context.getEntry(sourceEntry).getId();
+		int targetEntryID = context.getEntry(targetEntry).getId();
+		
+		// create a relation
+		// TODO: maybe change the relation type accordingly
+		Relation relation = new Relation(sourceEntryID, targetEntryID, RelationType.other);
+		
+		// get the arctype
+		ArcType atype = ArcType.valueOfString(clazz);
+		
+		// look up the subtype
+		SubType subtype = helper.getSubTypeFromArcType(atype);
+		
+		// set the subtype only if there is a subtype
+		if(subtype != null){
+			relation.addSubtype(subtype);
+		}
+		
+		// add the relation to the pathway
+		p.addRelation(relation);
+		
+	}
+	
+	/**
+	 * Method to convert all process glyphs into {@link Pathway#getReactions()}
+	 * after all arcs have been mapped (see {@link #handleArc(String, String, String, Pathway)}).
+	 * The process glyphs are converted in the order of the file and the
+	 * reactants are taken from the indexed ports, so this is linear in the
+	 * number of arcs.
+	 * @param p		{@link Pathway}
+	 */
+	protected void handleAllReactions(Pathway p){
+		
 		/////////////////////////////////////
 		// create edges for the reactions //
 		///////////////////////////////////
 		
-		// create an iterator for all process glyphs
-		Iterator<Glyph> processGlyphIterator = processGlyphLookup.values().iterator();
+		List<Reaction> reactions = new ArrayList<Reaction>(context.getProcessCount());
+		IntList substrates = new IntList();
+		IntList products = new IntList();
 		
-		while(processGlyphIterator.hasNext()){
+		for(int process = 0; process < context.getProcessCount(); process++){
 			
-			// initialize
-			Glyph processGlyph = processGlyphIterator.next();
-			ArrayList<String> substrates = new ArrayList<String>();
-			ArrayList<String> products = new ArrayList<String>();
-			
-			// collect the ids for the ports of the process glyph and determine if the reactants are substrates or products
-			for(Port port : processGlyph.getPort()){
-				if(portSubstrates.containsKey(port.getId()))
-					substrates.add(port.getId());
-				if(portProducts.containsKey(port.getId()))
-					products.add(port.getId());
+			// collect the ports of the process glyph and determine if the reactants are substrates or products
+			substrates.clear();
+			products.clear();
+			for(int port = context.getFirstPort(process); port < context.getEndPort(process); port++){
+				if(context.getSubstrates(port) != null)
+					substrates.add(port);
+				if(context.getProducts(port) != null)
+					products.add(port);
 			}
 			
 			// create a new reaction
@@ -324,118 +497,52 @@ public class SBGN2KGML {
 			
 			// if there are no substrates or products  it is a reversible reaction
 			if(substrates.isEmpty() || products.isEmpty()){
-				r = new Reaction(p, "unknown_reaction:"+(++reactionID), ReactionType.reversible);
+				r = new Reaction(p, "unknown_reaction:"+context.nextReactionID(), ReactionType.reversible);
 				
 				// we need to set the substrates and products even if there are none of one
-				if(!products.isEmpty()){
-					for(int i = 0; i < products.size(); i++){
-						for(String s : portProducts.get(products.get(i))){
-							if(i == 0)
-								r.addSubstrate(new ReactionComponent(entryLookup.get(s)));
-							else
-								r.addProduct(new ReactionComponent(entryLookup.get(s)));
-						}
-					}
-				}
-				if(!substrates.isEmpty()){
-					for(int i = 0; i < substrates.size(); i++){
-						for(String s : portSubstrates.get(substrates.get(i))){
-							if(i == 0)
-								r.addSubstrate(new ReactionComponent(entryLookup.get(s)));
-							else
-								r.addProduct(new ReactionComponent(entryLookup.get(s)));
-						}
-					}
-				}
+				for(int i = 0; i < products.size(); i++)
+					addReactionComponents(r, context.getProducts(products.get(i)), i == 0);
+				for(int i = 0; i < substrates.size(); i++)
+					addReactionComponents(r, context.getSubstrates(substrates.get(i)), i == 0);
 			}
 			// otherwise it is an irreversible reaction
 			else{
-				r = new Reaction(p, "unknown_reaction:"+(++reactionID), ReactionType.irreversible);
+				r = new Reaction(p, "unknown_reaction:"+context.nextReactionID(), ReactionType.irreversible);
 			
 				// add the products and substrates to the reaction
-				for(int i = 0; i < products.size(); i++){
-					for(String s : portProducts.get(products.get(i))){
-						r.addProduct(new ReactionComponent(entryLookup.get(s)));
-					}
-				}
-				
-				for(int i = 0; i < substrates.size(); i++){
-					for(String s : portSubstrates.get(substrates.get(i))){
-						r.addSubstrate(new ReactionComponent(entryLookup.get(s)));
-					}
-				}
+				for(int i = 0; i < products.size(); i++)
+					addReactionComponents(r, context.getProducts(products.get(i)), false);
+				for(int i = 0; i < substrates.size(); i++)
+					addReactionComponents(r, context.getSubstrates(substrates.get(i)), true);
 			}
 			
 			// if there are reaction modifiers i.e. enzymes update the reaction where they are involved
-			if(reactionModifiers.containsKey(processGlyph.getId())){
-				ArrayList<String> rmIDs = reactionModifiers.get(processGlyph.getId());
-				for(String rm : rmIDs){
-					Entry e = entryLookup.get(rm);
-					if(e.isSetReaction())
-						e.setReaction(e.getReactionString() + " " + r.getName());
-					else
-						entryLookup.get(rm).setReaction(r.getName());
-				}
+			IntList modifiers = context.getModifiers(process);
+			if(modifiers != null){
+				for(int i = 0; i < modifiers.size(); i++)
+					context.addReaction(modifiers.get(i), r.getName());
 			}
 			
-			// add the reaction to the pathway
-			p.addReaction(r);
+			reactions.add(r);
 		}
+		// the reactions are distinct, so they are added without comparing them
+		p.getReactions().addAll(reactions);
 			
 	}
 	
 	/**
-	 * Method to create a mapping for all {@link Port}'s onto their linked {@link Glyph}'s
-	 * and gather all {@link Arc}'s without any {@link Port}'s
-	 * @param sbgn	{@link Sbgn}
+	 * @param r			{@link Reaction}
+	 * @param entries	indices of the entries
+	 * @param substrate	{@code true} to add the entries as substrates,
+	 * 					{@code false} to add them as products
 	 */
-	protected void createMappingForAllPortsAndArcs(Sbgn sbgn) {
-		
-		for (Arc arc : sbgn.getMap().getArc()) {
-		
-			// initialize
-			ArrayList<String> collectedGlyphNamesForOnePort = new ArrayList<String>();
-			ArrayList<String> collectedReactionModifiers = new ArrayList<String>();
-			Port port = null;
-			boolean isProduct = false;
-			boolean isSubstrate = false;
-			
-			// check if source or target is a port and if its already gathered
-			// update the glyphname list
-			if(arc.getSource().getClass().equals(Port.class)) {
-				port = (Port) arc.getSource();
-				isProduct = true;
-				if(portProducts.containsKey(port.getId()))
-						collectedGlyphNamesForOnePort = portProducts.get(port.getId());
-				collectedGlyphNamesForOnePort.add(((Glyph) arc.getTarget()).getId());
-			}
-			
-			if(arc.getTarget().getClass().equals(Port.class)) {
-				port = (Port) arc.getTarget();
-				isSubstrate = true;
-				if(portSubstrates.containsKey(port.getId()))
-						collectedGlyphNamesForOnePort = portSubstrates.get(port.getId());
-				collectedGlyphNamesForOnePort.add(((Glyph) arc.getSource()).getId());
-			}
-			
-			if(isProduct)
-				portProducts.put(port.getId(), collectedGlyphNamesForOnePort);
-			
-			if(isSubstrate)
-				portSubstrates.put(port.getId(), collectedGlyphNamesForOnePort);
-			
-			// glyphs without ports are relations and stored in arcsWithoutPorts
-			if(port == null){
-				if(((Glyph) arc.getTarget()).getPort().isEmpty() && ((Glyph) arc.getSource()).getPort().isEmpty()){
-					arcsWithoutPorts.add(arc);
-				} else if(!((Glyph) arc.getTarget()).getPort().isEmpty()){
-					if(reactionModifiers.containsKey(((Glyph) arc.getTarget()).getId()))
-							collectedReactionModifiers = reactionModifiers.get(((Glyph) arc.getTarget()).getId());
-					collectedReactionModifiers.add(((Glyph) arc.getSource()).getId());
-					reactionModifiers.put(((Glyph) arc.getTarget()).getId(), collectedReactionModifiers);
-				}
-			}
-				
+	private void addReactionComponents(Reaction r, IntList entries, boolean substrate) {
+		for(int i = 0; i < entries.size(); i++){
+			ReactionComponent rc = new ReactionComponent(context.getEntry(entries.get(i)));
+			if(substrate)
+				r.addSubstrate(rc);
+			else
+				r.addProduct(rc);
 		}
 	}
 	
@@ -455,7 +562,7 @@ public class SBGN2KGML {
 	protected void createMappingForProcessGlyphsOnly(Glyph g){
 		// glyphs with portlists are process glyphs
 		if(!g.getPort().isEmpty())
-			processGlyphLookup.put(g.getId(), g);		
+			context.addProcess(g.getId(), g.getPort());
 	}
 	
 	
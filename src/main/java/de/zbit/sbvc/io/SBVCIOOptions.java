@@ -26,6 +26,7 @@ package de.zbit.sbvc.io;
 
 import java.io.File;
 
+import de.zbit.biopax.BioPAXParser;
 import de.zbit.io.filefilter.SBFileFilter;
 import de.zbit.kegg.io.KEGGtranslatorIOOptions.Format;
 import de.zbit.util.prefs.KeyProvider;
@@ -48,11 +49,15 @@ public interface SBVCIOOptions  extends KeyProvider{
    */
   
   /**
-   * Path and name of the source, KGML formatted, XML-file.
+   * Path and name of the source, KGML formatted, XML-file, a directory or a
+   * wildcard pattern.
    */
   public static final Option<File> INPUT = new Option<File>("INPUT",
       File.class,
-      "Path and name of the source, OWL formatted, XML-file.",
+      "Path and name of the source, OWL formatted, XML-file. If a directory or a " +
+      "wildcard pattern like 'dumps/*.owl' is given, all matching files are converted " +
+      "and the output is treated as folder. Files with the extension '.sbgn' (also " +
+      "'.sbgn.gz' or '.sbgn.zip') are read as SBGN-ML, all others as BioPAX.",
 //      TODO: Create range that accepts multiple file filter
 //      KGML, SBML, PID XML, BioPAX      
       new Range<File>(File.class, SBFileFilter.createAllFileFilter()), (short) 2, "-i" );
@@ -93,6 +98,36 @@ public interface SBVCIOOptions  extends KeyProvider{
 //      		"in one ZIP file.",
 //      (short) 2, "-s", false);
 
+  /**
+   * Backend, which is used to read BioPAX files.
+   */
+  public static final Option<BioPAXParser> PARSER = new Option<BioPAXParser>("PARSER",
+      BioPAXParser.class, "Backend used to read the BioPAX file. SIMPLE is a fast " +
+      "streaming parser, JENA builds a complete RDF graph first and is only needed " +
+      "for unusual RDF/XML files. If SIMPLE fails, JENA is used automatically.",
+      new Range<BioPAXParser>(BioPAXParser.class, Range.toRangeString(BioPAXParser.class)),
+      (short) 2, "-p", BioPAXParser.SIMPLE);
+
+  /**
+   * Number of pathways, which are converted in parallel.
+   */
+  public static final Option<Integer> THREADS = new Option<Integer>("THREADS",
+      Integer.class, "Number of pathways of the input file, which are converted in " +
+      "parallel. The resulting pathways, their order and their ids do not depend on " +
+      "this value, because the entry and reaction ids restart for each pathway. " +
+      "If the output is a folder, the same number of workers writes the SBML files.",
+      new Range<Integer>(Integer.class, "{[1, 1024]}"),
+      (short) 2, "-t", Integer.valueOf(1));
+
+  /**
+   * Number of input files, which are converted in parallel.
+   */
+  public static final Option<Integer> FILE_THREADS = new Option<Integer>("FILE_THREADS",
+      Integer.class, "Number of input files, which are converted in parallel, if the " +
+      "input is a directory or a wildcard pattern. Each file needs its own memory.",
+      new Range<Integer>(Integer.class, "{[1, 1024]}"),
+      (short) 2, "-ft", Integer.valueOf(1));
+
   /**
    * Define the default input/ output files and the default output format.
    */
@@ -102,4 +137,13 @@ public interface SBVCIOOptions  extends KeyProvider{
       "Define the default input/ output files and the conversion option.",
       INPUT, OUTPUT, FORMAT, SPECIES);
   
+  /**
+   * Options, which only affect the speed of the conversion, not its result.
+   */
+  @SuppressWarnings("unchecked")
+  public static final OptionGroup<Object> PERFORMANCE_OPTIONS = new OptionGroup<Object>(
+      "Performance options",
+      "Define how the input files are read and processed.",
+      PARSER, THREADS, FILE_THREADS);
+  
 }
@@ -24,12 +24,24 @@
  */
 package de.zbit.sbvc.io;
 
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Scanner;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,9 +56,11 @@ import de.zbit.kegg.parser.pathway.ReactionType;
 import de.zbit.kegg.parser.pathway.Relation;
 import de.zbit.kegg.parser.pathway.SubType;
 import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.sbvc.io.helper.PathwayHelper;
+import de.zbit.sbvc.io.helper.SIFNode;
 import de.zbit.sbvc.io.helper.SIFPathway;
 import de.zbit.sbvc.io.helper.SIFProperties;
-import de.zbit.sbvc.io.helper.SIFProperties.InteractionType;
+import de.zbit.sbvc.io.helper.SIFReader;
 import de.zbit.sbvc.io.helper.SIFRelation;
 
 /**
@@ -65,82 +79,277 @@ public class SIF2KGML {
 	private int entryID = 0;																		// incremental number for all entries
 	private int reactionID = 0;																		// incremental number for all reactions
 	
+	/**
+	 * Files are split into at most one chunk per megabyte
+	 */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+	
+	/**
+	 * Files are split into at least one chunk per 16 megabytes, which bounds
+	 * the relations kept in memory by a parsed chunk
+	 */
+	private static final long MAX_CHUNK_SIZE = 1 << 24;
+	
 	/**
 	 * Method for reading in a Simple Interaction File
 	 * This Method tries to determine if the SIF-File is tab- or space-separated
+	 * (see {@link SIFReader}). To convert large files, use
+	 * {@link #translate(SIFReader)}, which does not keep all relations in memory
+	 * and also reads the node section of extended SIF files.
 	 * @param filename	{@link String}
-	 * @return {@Link ArrayList<SifRelation>)
-	 * @throws IOException 
+	 * @return {@Link ArrayList<SifRelation>)
+	 * @throws IOException 
 	 */
 	public static SIFPathway readSIF(String filename) throws IOException {
 		
 		if(!filename.endsWith(".sif"))
 			log.log(Level.SEVERE, String.format("The file %s doesn't end with .sif", filename));
 		
-		Scanner scanner = null;
-		
 		// take the filename and set it as Pathwayname
-		SIFPathway sif = new SIFPathway(filename.replaceAll("\\.sif", "").replaceAll(".*/", "").replaceAll(".*\\\\", ""));
+		SIFPathway sif = new SIFPathway(SIFReader.getPathwayName(filename));
 		
 		// manage the SIFRelations in an arraylist
 		ArrayList<SIFRelation> relations = new ArrayList<SIFRelation>();
 
 		// try reading in the sif file line by line
+		SIFReader reader = null;
 		try {
-			scanner = new Scanner(new FileReader(filename)).useDelimiter("\n");
-			
-			// initialize
-			String line;
-			int counter = 0;
-			
-			while(scanner.hasNext()) {
-				
-				// create objects to store the information
-				String[] tabsplitted;
-				String[] spacesplitted;
-				String substrate = null;
-				String product = null;
-				InteractionType iType = null;
-				
-				// read
-				line = scanner.nextLine();
-				counter++;
-				tabsplitted = line.split("\t");
-				spacesplitted = line.split(" ");
-				
-				// check if the file fulfills the SIF patterns
-				if(tabsplitted.length == 3) {
-					substrate = tabsplitted[0];
-					product = tabsplitted[2];
-					iType = InteractionType.valueOf(tabsplitted[1]);
-				} else if (spacesplitted.length == 3) {
-					substrate = spacesplitted[0];
-					product = spacesplitted[2];
-					iType = InteractionType.valueOf(spacesplitted[1]);
-				}
-				
-				// store the information in the relation objects
-				if(substrate != null && product != null && iType != null ) {
-					SIFRelation relation = new SIFRelation(substrate, iType, product);
-					relations.add(relation);
-				} else {
-					log.log(Level.WARNING, String.format("The line %s in the file %s doesn't have the proper Simple Interaction Format", new Object[]{counter, filename}));
-				}
-				
+			reader = SIFReader.open(filename);
+			SIFRelation relation;
+			while ((relation = reader.read()) != null) {
+				relations.add(relation);
 			}
+			log.fine(reader.toString());
 		} catch (FileNotFoundException e) {
 			log.log(Level.SEVERE, String.format("Couldn't find the file " + filename));
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
 		}
 		
 		// add the relations to the sif pathway
 		sif.setRelations(relations);
 		
-		// close the scanner
-		scanner.close();
-		
 		return sif;
 	}
 	
+	/**
+	 * Reads and translates the Simple Interaction File relation by relation.
+	 * @param filename	{@link String}
+	 * @return {@link Pathway}	(see {@link KGMLWriter})
+	 * @throws IOException
+	 */
+	public Pathway translateSIF(String filename) throws IOException {
+		if(!filename.endsWith(".sif"))
+			log.log(Level.SEVERE, String.format("The file %s doesn't end with .sif", filename));
+		
+		SIFReader reader = SIFReader.open(filename);
+		try {
+			return translate(reader);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Method for translating the relations of a {@link SIFReader} into a
+	 * {@link Pathway}, while they are read. The identifiers of the node section
+	 * of an extended SIF file are added to the entries of the relations.
+	 * @param reader	{@link SIFReader}
+	 * @return {@link Pathway}	(see {@link KGMLWriter})
+	 * @throws IOException
+	 */
+	public Pathway translate(SIFReader reader) throws IOException {
+		Translation translation = new Translation(new Pathway("unknown", "unknown", 10000, reader.getName()));
+		reader.setNodeHandler(translation);
+		
+		SIFRelation relation;
+		while ((relation = reader.read()) != null) {
+			translation.addRelation(relation);
+		}
+		
+		translation.logSkipped(reader.getMalformedLineCount(), reader.getUnknownTypeLineCount());
+		log.fine(reader.toString());
+		return translation.finish();
+	}
+	
+	/**
+	 * Reads and translates a Simple Interaction File with several threads. The
+	 * relations are split into byte ranges at line boundaries (see
+	 * {@link SIFReader#split(String, long, int)}) of at most
+	 * {@link #MAX_CHUNK_SIZE} bytes, which are parsed in parallel, while the
+	 * node names are interned in one concurrent map. The relations of the
+	 * ranges are translated in the order of the file, so the entry ids and the
+	 * {@link Pathway} are the same as with {@link #translateSIF(String)}.
+	 * <p>
+	 * At most <code>2 * threads</code> ranges are parsed, but not yet
+	 * translated, so the memory for the parsed relations does not depend on
+	 * the size of the file. The node section of an extended SIF file is found
+	 * without parsing (see {@link SIFReader#findNodeSection(String)}) and read
+	 * once after the relations.
+	 * @param filename	{@link String}
+	 * @param threads	number of threads, which parse the file
+	 * @return {@link Pathway}	(see {@link KGMLWriter})
+	 * @throws IOException
+	 */
+	public Pathway translateSIF(final String filename, int threads) throws IOException {
+		long length = new File(filename).length();
+		if (threads <= 1 || length / MIN_CHUNK_SIZE <= 1) {
+			return translateSIF(filename);
+		}
+		if(!filename.endsWith(".sif"))
+			log.log(Level.SEVERE, String.format("The file %s doesn't end with .sif", filename));
+		
+		final boolean extended = SIFReader.isExtendedSIF(filename);
+		long nodeSectionStart = extended ? SIFReader.findNodeSection(filename) : -1;
+		long relationsEnd = nodeSectionStart >= 0 ? nodeSectionStart : length;
+		int chunks = (int) Math.min(Math.max(threads, relationsEnd / MAX_CHUNK_SIZE + 1),
+			Math.max(1, relationsEnd / MIN_CHUNK_SIZE));
+		final long[] boundaries = SIFReader.split(filename, relationsEnd, chunks);
+		final Map<String, String> nodeNames = new ConcurrentHashMap<String, String>();
+		
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, boundaries.length - 1));
+		try {
+			Queue<Future<ParsedChunk>> parsedChunks = new ArrayDeque<Future<ParsedChunk>>();
+			int submitted = 0;
+			
+			Translation translation = new Translation(new Pathway("unknown", "unknown", 10000, SIFReader.getPathwayName(filename)));
+			long malformedLines = 0;
+			long unknownTypeLines = 0;
+			boolean nodeSection = false;
+			for (int i = 0; i < boundaries.length - 1; i++) {
+				while (!nodeSection && (submitted < boundaries.length - 1) && (parsedChunks.size() < 2 * threads)) {
+					final int chunk = submitted++;
+					parsedChunks.add(pool.submit(new Callable<ParsedChunk>() {
+						@Override
+						public ParsedChunk call() throws IOException {
+							SIFReader reader = SIFReader.open(filename, boundaries[chunk], boundaries[chunk + 1], nodeNames, extended, false);
+							try {
+								return new ParsedChunk(reader);
+							} finally {
+								reader.close();
+							}
+						}
+					}));
+				}
+				if (nodeSection) {
+					// only if a range before the last node section header contains another one
+					SIFReader reader = SIFReader.open(filename, boundaries[i], boundaries[i + 1], nodeNames, extended, true);
+					try {
+						readNodes(reader, translation);
+						malformedLines += reader.getMalformedLineCount();
+						unknownTypeLines += reader.getUnknownTypeLineCount();
+					} finally {
+						reader.close();
+					}
+					continue;
+				}
+				ParsedChunk parsedChunk = getParsedChunk(parsedChunks.poll());
+				for (SIFRelation relation : parsedChunk.relations) {
+					translation.addRelation(relation);
+				}
+				for (SIFNode node : parsedChunk.nodes) {
+					translation.nodeRead(node);
+				}
+				malformedLines += parsedChunk.malformedLines;
+				unknownTypeLines += parsedChunk.unknownTypeLines;
+				nodeSection = parsedChunk.nodeSection;
+				if (nodeSection) {
+					// the following ranges are read as node section
+					for (Future<ParsedChunk> future : parsedChunks) {
+						future.cancel(true);
+					}
+					parsedChunks.clear();
+				}
+			}
+			
+			if (nodeSectionStart >= 0) {
+				SIFReader reader = SIFReader.open(filename, nodeSectionStart, length, nodeNames, extended, false);
+				try {
+					readNodes(reader, translation);
+					malformedLines += reader.getMalformedLineCount();
+					unknownTypeLines += reader.getUnknownTypeLineCount();
+				} finally {
+					reader.close();
+				}
+			}
+			
+			translation.logSkipped(malformedLines, unknownTypeLines);
+			return translation.finish();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Passes the nodes of the reader to the translation.
+	 * @param reader	{@link SIFReader} of a range of the node section
+	 * @param translation	{@link Translation}
+	 * @throws IOException
+	 */
+	private static void readNodes(SIFReader reader, Translation translation) throws IOException {
+		reader.setNodeHandler(translation);
+		while (reader.read() != null) {
+		}
+	}
+	
+	/**
+	 * @param future
+	 * @return the result of the future
+	 * @throws IOException if the range could not be read
+	 */
+	private static ParsedChunk getParsedChunk(Future<ParsedChunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new IOException(exc);
+		} catch (ExecutionException exc) {
+			if (exc.getCause() instanceof IOException) {
+				throw (IOException) exc.getCause();
+			}
+			throw new IOException(exc.getCause());
+		}
+	}
+	
+	/**
+	 * The relations and nodes of a byte range of a Simple Interaction File
+	 */
+	private static class ParsedChunk implements SIFReader.NodeHandler {
+		
+		private final List<SIFRelation> relations = new ArrayList<SIFRelation>();
+		private final List<SIFNode> nodes = new ArrayList<SIFNode>();
+		private final long malformedLines;
+		private final long unknownTypeLines;
+		private final boolean nodeSection;					// true, if the range ends in the node section
+		
+		/**
+		 * Reads all relations and nodes of the reader.
+		 * @param reader	{@link SIFReader}
+		 * @throws IOException
+		 */
+		public ParsedChunk(SIFReader reader) throws IOException {
+			reader.setNodeHandler(this);
+			SIFRelation relation;
+			while ((relation = reader.read()) != null) {
+				relations.add(relation);
+			}
+			malformedLines = reader.getMalformedLineCount();
+			unknownTypeLines = reader.getUnknownTypeLineCount();
+			nodeSection = reader.isNodeSection();
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.zbit.sbvc.io.helper.SIFReader.NodeHandler#nodeRead(de.zbit.sbvc.io.helper.SIFNode)
+		 */
+		@Override
+		public void nodeRead(SIFNode node) {
+			nodes.add(node);
+		}
+		
+	}
+	
 	/**
 	 * Method for translating a {@link SIFPathway} into a {@link Pathway}
 	 * @param {@link SIFPathway}	(see {@link SIF2KGML#readSIF(String)})
@@ -149,42 +358,135 @@ public class SIF2KGML {
 	protected Pathway translate(SIFPathway sif) {
 
 		// create a new pathway
-		Pathway p = new Pathway("unknown", "unknown", 10000, sif.getName());
-		
-		// Entry lookup
-		HashMap<String, Entry> entryLookup = new HashMap<String, Entry>();
+		Translation translation = new Translation(new Pathway("unknown", "unknown", 10000, sif.getName()));
 		
 		for(SIFRelation relation : sif.getRelations()) {
-						
-			// initialize entries
-			Entry source = null;
-			Entry target = null;
-			
-			// check if entries already exists
-			if(entryLookup.containsKey(relation.getSource()))
-				source = entryLookup.get(relation.getSource());
-			
-			if(entryLookup.containsKey(relation.getTarget()))
-				target = entryLookup.get(relation.getTarget());
-			
-			// if not create them
-			if(source == null) {
-				source = new EntryExtended(p, ++entryID, relation.getSource());
-				entryLookup.put(relation.getSource(), source);
+			translation.addRelation(relation);
+		}
+		
+		return translation.finish();
+	}
+	
+	/**
+	 * The kind of {@link Graphics}, which is created for an entry
+	 */
+	private static enum Shape {
+		PROTEIN,
+		COMPOUND,
+		PATHWAY_REFERENCE,
+		DEFAULT;
+		
+		/**
+		 * @param name	name of the entry
+		 * @return a new {@link Graphics} of this kind
+		 */
+		public Graphics createGraphics(String name) {
+			switch(this) {
+				case PROTEIN:
+					return Graphics.createGraphicsForProtein(name);
+				case COMPOUND:
+					return Graphics.createGraphicsForCompound(name);
+				case PATHWAY_REFERENCE:
+					return Graphics.createGraphicsForPathwayReference(name);
+				default:
+					return new Graphics(name);
 			}
+		}
+	}
+	
+	/**
+	 * Wraps a {@link Relation} for hash based collections.
+	 * {@link Relation#hashCode()} multiplies the ids of the entries, so many
+	 * different relations have the same hash code.
+	 */
+	private static class RelationKey {
+		
+		private final Relation relation;
+		private final int hash;
+		
+		public RelationKey(Relation relation) {
+			this.relation = relation;
+			int hash = 31 * relation.getEntry1() + relation.getEntry2();
+			this.hash = 31 * hash + (relation.getType() != null ? relation.getType().ordinal() : 0);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof RelationKey) && relation.equals(((RelationKey) obj).relation);
+		}
+		
+	}
+	
+	/**
+	 * Collects the entries, relations and reactions of one translation. Each
+	 * entry gets one {@link Graphics} object and is added to the pathway only
+	 * once in {@link #finish()}, where also the relations and reactions are
+	 * added in bulk. Hence, the translation takes linear time in the number
+	 * of relations, even if single nodes have many relations.
+	 */
+	private class Translation implements SIFReader.NodeHandler {
+		
+		private final Pathway p;
+		private final Map<String, Entry> entryLookup = new LinkedHashMap<String, Entry>();	// entries by name in order of creation
+		private final Map<String, Shape> shapes = new HashMap<String, Shape>();				// the shape of the first relation of an entry
+		private final Set<RelationKey> relations = new LinkedHashSet<RelationKey>();		// without duplicates, like Pathway#addRelation(Relation)
+		private final List<Reaction> reactions = new ArrayList<Reaction>();
+		private int unknownNodes = 0;														// nodes of the node section without relations
 		
-			if(target == null) {
-				target = new EntryExtended(p, ++entryID, relation.getTarget());
-				entryLookup.put(relation.getTarget(), target);
+		public Translation(Pathway p) {
+			this.p = p;
+		}
+		
+		/**
+		 * @param name	name of a node
+		 * @return the entry of the node, which is created, if it doesn't exist
+		 */
+		private Entry getEntry(String name) {
+			Entry entry = entryLookup.get(name);
+			if(entry == null) {
+				entry = new EntryExtended(p, ++entryID, name);
+				entryLookup.put(name, entry);
 			}
+			return entry;
+		}
+		
+		/**
+		 * @param entry
+		 * @param shape	only used, if the entry has no shape yet
+		 */
+		private void setShape(Entry entry, Shape shape) {
+			if(!shapes.containsKey(entry.getName()))
+				shapes.put(entry.getName(), shape);
+		}
+		
+		/**
+		 * Adds the entries and the relation or reaction of a {@link SIFRelation}.
+		 * @param relation	{@link SIFRelation}
+		 */
+		public void addRelation(SIFRelation relation) {
+			
+			// get or create the entries
+			Entry source = getEntry(relation.getSource());
+			Entry target = getEntry(relation.getTarget());
 			
 			// set EntryTypes
 			source.setType(SIFProperties.getEntryTypeFromInteractionType(relation.getInteractionType(), true));
 			target.setType(SIFProperties.getEntryTypeFromInteractionType(relation.getInteractionType(), false));
 			
-			// create Graphics
-			Graphics sourceGraphic = null;
-			Graphics targetGraphic = null;
+			// shapes of the graphics
+			Shape sourceShape = Shape.DEFAULT;
+			Shape targetShape = Shape.DEFAULT;
 			
 			// create reaction and relation
 			Reaction rea = null;
@@ -193,137 +495,175 @@ public class SIF2KGML {
 			if(relation.getInteractionType() != null){
 				switch(relation.getInteractionType()){
 					case pp:
-						sourceGraphic = Graphics.createGraphicsForProtein(source.getName());
-						targetGraphic = Graphics.createGraphicsForProtein(target.getName());
+						sourceShape = Shape.PROTEIN;
+						targetShape = Shape.PROTEIN;
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.BINDING_ASSOCIATION));
 						break;
 					case pd:
-						sourceGraphic = Graphics.createGraphicsForProtein(source.getName());
-						targetGraphic = new Graphics(target.getName());
+						sourceShape = Shape.PROTEIN;
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.EXPRESSION));
 						break;
 					case pr:
-						sourceGraphic = Graphics.createGraphicsForProtein(source.getName());
-						targetGraphic = Graphics.createGraphicsForPathwayReference(source.getName());
+						sourceShape = Shape.PROTEIN;
+						targetShape = Shape.PATHWAY_REFERENCE;
 						rea = new Reaction(p, "unknown_reaction:"+(++reactionID), ReactionType.irreversible);
 						rea.addSubstrate(new ReactionComponent(source));
 						rea.addProduct(new ReactionComponent(target));
 						break;
 					case rc:
-						sourceGraphic = Graphics.createGraphicsForPathwayReference(source.getName());
-						targetGraphic = Graphics.createGraphicsForCompound(target.getName());
+						sourceShape = Shape.PATHWAY_REFERENCE;
+						targetShape = Shape.COMPOUND;
 						rea = new Reaction(p, "unknown_reaction:"+(++reactionID), ReactionType.irreversible);
 						rea.addSubstrate(new ReactionComponent(source));
 						rea.addProduct(new ReactionComponent(target));
 						break;
 					case cr:
-						sourceGraphic = Graphics.createGraphicsForCompound(source.getName());
-						targetGraphic = Graphics.createGraphicsForPathwayReference(target.getName());
+						sourceShape = Shape.COMPOUND;
+						targetShape = Shape.PATHWAY_REFERENCE;
 						rea = new Reaction(p, "unknown_reaction:"+(++reactionID), ReactionType.irreversible);
 						rea.addSubstrate(new ReactionComponent(source));
 						rea.addProduct(new ReactionComponent(target));
 						break;
 					case gl:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.MISSING_INTERACTION));
 						break;
 					case pm:
-						sourceGraphic = Graphics.createGraphicsForProtein(source.getName());
-						targetGraphic = Graphics.createGraphicsForCompound(target.getName());
+						sourceShape = Shape.PROTEIN;
+						targetShape = Shape.COMPOUND;
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.MISSING_INTERACTION));
 						break;
 					case mp:
-						sourceGraphic = Graphics.createGraphicsForCompound(source.getName());
-						targetGraphic = Graphics.createGraphicsForProtein(target.getName());
+						sourceShape = Shape.COMPOUND;
+						targetShape = Shape.PROTEIN;
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.MISSING_INTERACTION));
 						break;
 					case CO_CONTROL:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.ASSOCIATION));
 						break;
 					case COMPONENT_OF:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						target.addComponent(source.getId());
 						target.setType(EntryType.reaction); // not sure if this is correct
 						break;
 					case IN_SAME_COMPONENT:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.BINDING_ASSOCIATION));
 						break;
 					case METABOLIC_CATALYSIS:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.MISSING_INTERACTION));
 						break;
 					case REACTS_WITH:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rea = new Reaction(p, "unknown_reaction:"+(++reactionID), ReactionType.irreversible);
 						rea.addSubstrate(new ReactionComponent(source));
 						rea.addProduct(new ReactionComponent(target));
 						break;
 					case SEQUENTIAL_CATALYSIS:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.INDIRECT_EFFECT));
 						break;
 					case STATE_CHANGE:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.STATE_CHANGE));
 						break;
 					case INTERACTS_WITH:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 						rel.addSubtype(new SubType(SubType.MISSING_INTERACTION));
 						break;
 					default:
-						sourceGraphic = new Graphics(source.getName());
-						targetGraphic = new Graphics(target.getName());
 						rel = new Relation(source.getId(), target.getId(), SIFProperties.getRelationTypeFromInteractionType(relation.getInteractionType()));
 				}
 				
-				// set the graphic defaults
-				sourceGraphic.setDefaults(source.getType());
-				targetGraphic.setDefaults(target.getType());
-				
-				// add graphics to the entries
-				source.addGraphics(sourceGraphic);
-				target.addGraphics(targetGraphic);
+				// the first relation of an entry determines its graphics
+				setShape(source, sourceShape);
+				setShape(target, targetShape);
 				
 				// check if all went well
 				if(rea != null)
-					p.addReaction(rea);
-				if(rel != null){
-					rel.setEntry1(source.getId());
-					rel.setEntry2(target.getId());
-					p.addRelation(rel);
-				}
-				
-				// add the entries to the pathway
-				p.addEntry(source);
-				p.addEntry(target);
+					reactions.add(rea);
+				if(rel != null)
+					relations.add(new RelationKey(rel));
 				
 			}
 			
 		}
 		
-		return p;
+		/**
+		 * Adds the identifiers of a node of the node section of an extended SIF
+		 * file to its entry.
+		 * @param node	{@link SIFNode}
+		 * @return false, if there is no entry for the node
+		 */
+		public boolean addNode(SIFNode node) {
+			Entry entry = entryLookup.get(node.getName());
+			if (entry == null) {
+				return false;
+			}
+			if ((entry instanceof EntryExtended) && !node.getIdentifiers().isEmpty()) {
+				((EntryExtended) entry).addDatabaseIdentifiers(node.getIdentifiers());
+			}
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.zbit.sbvc.io.helper.SIFReader.NodeHandler#nodeRead(de.zbit.sbvc.io.helper.SIFNode)
+		 */
+		@Override
+		public void nodeRead(SIFNode node) {
+			if (!addNode(node)) {
+				unknownNodes++;
+			}
+		}
+		
+		/**
+		 * Logs the number of skipped lines and nodes.
+		 * @param malformedLines
+		 * @param unknownTypeLines
+		 */
+		public void logSkipped(long malformedLines, long unknownTypeLines) {
+			if (unknownNodes > 0) {
+				log.fine(String.format("Skipped %d nodes without relations in %s.", unknownNodes, p.getTitle()));
+			}
+			if (malformedLines + unknownTypeLines > 0) {
+				log.warning(String.format("Skipped %d malformed lines and %d lines with unknown interaction types in %s.",
+					malformedLines, unknownTypeLines, p.getTitle()));
+			}
+		}
+		
+		/**
+		 * Creates the graphics of the entries and adds the entries, reactions
+		 * and relations to the pathway.
+		 * @return the {@link Pathway}
+		 */
+		public Pathway finish() {
+			// the entries are distinct, so they are added without comparing them
+			List<Entry> entries = new ArrayList<Entry>(entryLookup.size());
+			for (Map.Entry<String, Entry> e : entryLookup.entrySet()) {
+				Shape shape = shapes.get(e.getKey());
+				if (shape == null) {
+					// entries of relations without interaction type
+					continue;
+				}
+				Entry entry = e.getValue();
+				Graphics graphics = shape.createGraphics(entry.getName());
+				graphics.setDefaults(entry.getType());
+				entry.addGraphics(graphics);
+				entries.add(entry);
+			}
+			PathwayHelper.addEntries(p, entries);
+			p.getReactions().addAll(reactions);
+			p.getRelations().ensureCapacity(relations.size());
+			for (RelationKey key : relations) {
+				p.getRelations().add(key.relation);
+			}
+			return p;
+		}
+		
 	}
 	
 	/**
@@ -343,11 +683,7 @@ public class SIF2KGML {
 		String filename = "hsa00010.sif";
 //		String filename = "hsa04010.sif";
 		SIF2KGML sif2kgml = new SIF2KGML();
-		SIFPathway sifpathway = SIF2KGML.readSIF(filename);
-		// debug
-//		for(SIFRelation sif : sifpathway.getRelations())
-//			System.out.println(sif.getSource() + " " + sif.getInteractionType() + " " + sif.getTarget());
-		Pathway p = sif2kgml.translate(sifpathway);
+		Pathway p = sif2kgml.translateSIF(filename);
 		sif2kgml.saveToFile(p, "SIFPathwayTest.xml");
 	}
 }
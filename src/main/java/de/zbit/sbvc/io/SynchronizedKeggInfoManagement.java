@@ -0,0 +1,403 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.cache.InfoManagement;
+import de.zbit.exception.UnsuccessfulRetrieveException;
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+import de.zbit.util.progressbar.AbstractProgressBar;
+
+/**
+ * {@link KeggInfoManagement}, which can be shared by several translators
+ * running in parallel: all methods, which read or change the cache, are
+ * synchronized on this object. So only the lookups and retrievals of KEGG
+ * infos are serialized, not the translations, which use them.
+ * <p>
+ * Ids, which are not cached, are looked up in a legacy serialized cache (see
+ * {@link InfoManagement#saveToFilesystem(String, InfoManagement)}), which is
+ * deserialized on the first miss, before they are retrieved from KEGG. The
+ * infos, which were retrieved from KEGG, are added to the legacy cache by
+ * {@link #saveLegacyCache()}, so other users of this cache, e.g. the
+ * KEGGtranslator, see them, too.
+ * 
+ * @version $Rev$
+ */
+public class SynchronizedKeggInfoManagement extends KeggInfoManagement {
+  
+  private static final long serialVersionUID = 6157839419268290421L;
+  
+  public static final transient Logger log = Logger.getLogger(SynchronizedKeggInfoManagement.class.getName());
+  
+  /**
+   * size of a newly created legacy cache, as in the KEGGtranslator
+   */
+  public static final int LEGACY_CACHE_SIZE = 10000;
+  
+  /**
+   * serialized cache, which is written by {@link #saveLegacyCache()}, or null
+   */
+  private transient File legacyFile;
+  
+  /**
+   * serialized cache, which is read if an id is not cached, or null
+   */
+  private transient File legacyCache;
+  
+  /**
+   * the deserialized {@link #legacyCache}
+   */
+  private transient KeggInfoManagement legacy;
+  
+  private transient long legacyRecords;
+  
+  /**
+   * infos retrieved from KEGG, which are not yet in the {@link #legacyFile}
+   */
+  private transient Map<String, KeggInfos> retrieved;
+  
+  public SynchronizedKeggInfoManagement() {
+    this(null);
+  }
+  
+  /**
+   * @param legacyCache serialized {@link KeggInfoManagement}, which is read if
+   *        an id is not cached and written by {@link #saveLegacyCache()}. May
+   *        be null or not exist.
+   */
+  public SynchronizedKeggInfoManagement(File legacyCache) {
+    super();
+    this.legacyFile = legacyCache;
+    this.retrieved = new LinkedHashMap<String, KeggInfos>();
+    if (legacyCache != null && legacyCache.length() > 1) {
+      this.legacyCache = legacyCache;
+    }
+  }
+  
+  /**
+   * @param id
+   * @return the info of the id in the legacy cache or null
+   */
+  protected synchronized KeggInfos readLegacy(String id) {
+    if (loadLegacy() == null) {
+      return null;
+    }
+    KeggInfos info = legacy.getInformation(id);
+    if (info != null) {
+      legacyRecords++;
+    } else {
+      // the miss is marked as unretrievable, which must not be saved
+      legacy.removeInformation(id);
+    }
+    return info;
+  }
+  
+  /**
+   * @return the deserialized legacy cache or null, if there is none or it
+   *         could not be read
+   */
+  private KeggInfoManagement loadLegacy() {
+    if (legacy == null && legacyCache != null) {
+      try {
+        legacy = (KeggInfoManagement) InfoManagement.loadFromFilesystem(legacyCache);
+      } catch (Exception e) {
+        log.log(Level.WARNING, "Could not read '" + legacyCache + "'.", e);
+        legacyCache = null;
+        return null;
+      }
+      // a miss must not be retrieved from KEGG by the legacy cache
+      legacy.setKeggAdaptor(new OfflineKeggAdaptor());
+      log.fine("Read " + legacy.getNumberOfCachedIDs() + " KEGG ids from '" + legacyCache + "'.");
+    }
+    return legacy;
+  }
+  
+  /**
+   * @param id
+   * @param info retrieved from KEGG, is added to the legacy cache by
+   *        {@link #saveLegacyCache()}
+   */
+  private synchronized void retrieved(String id, KeggInfos info) {
+    if (legacyFile != null && id != null && info != null) {
+      retrieved.put(id, info);
+    }
+  }
+  
+  /**
+   * Adds the infos, which were retrieved from KEGG since the last call, to the
+   * legacy cache and writes it. The cache is written to a temporary file,
+   * which atomically replaces the legacy cache, so other processes never read
+   * a partial cache. If two processes save the cache at the same time, the
+   * last one wins. Nothing happens, if no legacy cache was given or no info
+   * was retrieved.
+   * 
+   * @throws IOException if the legacy cache could not be written
+   */
+  public synchronized void saveLegacyCache() throws IOException {
+    if (legacyFile == null || retrieved.isEmpty()) {
+      return;
+    }
+    KeggInfoManagement cache = loadLegacy();
+    if (cache == null) {
+      cache = legacy = new KeggInfoManagement(LEGACY_CACHE_SIZE, new OfflineKeggAdaptor());
+    }
+    for (Map.Entry<String, KeggInfos> entry : retrieved.entrySet()) {
+      cache.addInformation(entry.getKey(), entry.getValue());
+    }
+    
+    File tmp = new File(legacyFile.getPath() + ".tmp");
+    if (!KeggInfoManagement.saveToFilesystem(tmp.getPath(), cache)) {
+      tmp.delete();
+      throw new IOException("Could not write '" + tmp + "'.");
+    }
+    try {
+      Files.move(tmp.toPath(), legacyFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), legacyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    legacyCache = legacyFile;
+    log.fine("Added " + retrieved.size() + " KEGG ids to '" + legacyFile + "'.");
+    retrieved.clear();
+  }
+  
+  /**
+   * @return the number of infos, which were read from the legacy cache
+   */
+  public synchronized long getNumberOfLegacyRecords() {
+    return legacyRecords;
+  }
+  
+  /**
+   * {@link KeggAdaptor}, which retrieves nothing.
+   */
+  private static class OfflineKeggAdaptor extends KeggAdaptor {
+    
+    /* (non-Javadoc)
+     * @see de.zbit.kegg.api.KeggAdaptor#getWithReturnInformation(java.lang.String)
+     */
+    @Override
+    public String getWithReturnInformation(String id) {
+      return null;
+    }
+    
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchInformation(java.lang.String)
+   */
+  @Override
+  protected KeggInfos fetchInformation(String id) throws TimeoutException,
+      UnsuccessfulRetrieveException {
+    KeggInfos info = readLegacy(id);
+    if (info == null) {
+      info = super.fetchInformation(id);
+      retrieved(id, info);
+    }
+    return info;
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#fetchMultipleInformations(java.lang.String[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  protected KeggInfos[] fetchMultipleInformations(String[] ids, AbstractProgressBar progress)
+      throws TimeoutException, UnsuccessfulRetrieveException {
+    KeggInfos[] infos = new KeggInfos[ids.length];
+    int missing = 0;
+    for (int i = 0; i < ids.length; i++) {
+      infos[i] = readLegacy(ids[i]);
+      if (infos[i] == null) {
+        missing++;
+      }
+    }
+    if (missing == 0) {
+      return infos;
+    }
+    
+    String[] missingIDs = new String[missing];
+    for (int i = 0, j = 0; i < ids.length; i++) {
+      if (infos[i] == null) {
+        missingIDs[j++] = ids[i];
+      }
+    }
+    KeggInfos[] fetched = super.fetchMultipleInformations(missingIDs, progress);
+    for (int i = 0, j = 0; fetched != null && i < ids.length; i++) {
+      if (infos[i] == null && j < fetched.length) {
+        infos[i] = fetched[j++];
+        retrieved(ids[i], infos[i]);
+      }
+    }
+    return infos;
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformation(java.lang.Comparable)
+   */
+  @Override
+  public synchronized KeggInfos getInformation(String id) {
+    return super.getInformation(id);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformations(java.lang.Comparable[])
+   */
+  @Override
+  public synchronized KeggInfos[] getInformations(String[] ids) {
+    return super.getInformations(ids);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getInformations(java.lang.Comparable[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public synchronized KeggInfos[] getInformations(String[] ids, AbstractProgressBar progress) {
+    return super.getInformations(ids, progress);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#precacheIDs(java.lang.Comparable[])
+   */
+  @Override
+  public synchronized void precacheIDs(String[] ids) {
+    super.precacheIDs(ids);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#precacheIDs(java.lang.Comparable[], de.zbit.util.progressbar.AbstractProgressBar)
+   */
+  @Override
+  public synchronized void precacheIDs(String[] ids, AbstractProgressBar progress) {
+    super.precacheIDs(ids, progress);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#addInformation(java.lang.Comparable, java.io.Serializable)
+   */
+  @Override
+  public synchronized void addInformation(String id, KeggInfos info) {
+    super.addInformation(id, info);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#removeInformation(java.lang.Comparable)
+   */
+  @Override
+  public synchronized boolean removeInformation(String id) {
+    return super.removeInformation(id);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#clearCache()
+   */
+  @Override
+  public synchronized void clearCache() {
+    super.clearCache();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#clearFailCache()
+   */
+  @Override
+  public synchronized void clearFailCache() {
+    super.clearFailCache();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#isCacheFull()
+   */
+  @Override
+  public synchronized boolean isCacheFull() {
+    return super.isCacheFull();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getNumberOfCachedIDs()
+   */
+  @Override
+  public synchronized int getNumberOfCachedIDs() {
+    return super.getNumberOfCachedIDs();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#getNumberOfCachedInfos()
+   */
+  @Override
+  public synchronized int getNumberOfCachedInfos() {
+    return super.getNumberOfCachedInfos();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#setCacheSize(int)
+   */
+  @Override
+  public synchronized void setCacheSize(int size) {
+    super.setCacheSize(size);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.cache.InfoManagement#isCacheChangedSinceLastLoading()
+   */
+  @Override
+  public synchronized boolean isCacheChangedSinceLastLoading() {
+    return super.isCacheChangedSinceLastLoading();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#getKeggAdaptor()
+   */
+  @Override
+  public synchronized KeggAdaptor getKeggAdaptor() {
+    return super.getKeggAdaptor();
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#setKeggAdaptor(de.zbit.kegg.api.KeggAdaptor)
+   */
+  @Override
+  public synchronized void setKeggAdaptor(KeggAdaptor adap) {
+    super.setKeggAdaptor(adap);
+  }
+  
+  /* (non-Javadoc)
+   * @see de.zbit.kegg.api.cache.KeggInfoManagement#hasChanged()
+   */
+  @Override
+  public synchronized boolean hasChanged() {
+    return super.hasChanged();
+  }
+  
+}
@@ -0,0 +1,91 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io.helper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.sbvc.io.SBGN2KGML;
+import de.zbit.sbvc.io.SIF2KGML;
+
+/**
+ * Helper methods to fill a {@link Pathway}, which are shared by
+ * {@link SIF2KGML} and {@link SBGN2KGML}.
+ * 
+ * @version $Rev$
+ */
+public final class PathwayHelper {
+	
+	/**
+	 * Utility class
+	 */
+	private PathwayHelper() {
+	}
+	
+	/**
+	 * Adds distinct entries to a pathway in linear time.
+	 * <p>
+	 * {@link Pathway#addEntry(Entry)} checks with
+	 * {@link List#contains(Object)} if the entry is already part of the
+	 * pathway, so adding <i>n</i> entries one by one is quadratic. This method
+	 * calls {@link Pathway#addEntry(Entry)} for each entry while the list
+	 * returned by {@link Pathway#getEntries()} is empty, which relies on the
+	 * following:
+	 * <ul>
+	 * <li>{@link Pathway#getEntries()} returns the list of the pathway itself,
+	 * not a copy, so the pathway keeps the list as it is restored here.</li>
+	 * <li>Apart from appending to that list,
+	 * {@link Pathway#addEntry(Entry)} only registers the entry in the id map,
+	 * the name map, the maximal id and the reaction modifiers (from
+	 * {@link Entry#getReactionString()}). These side effects are kept, so
+	 * {@link Pathway#getEntryForId(int)}, {@link Pathway#getEntriesForName(String)}
+	 * and {@link Pathway#getReactionModifiers(String)} work as if the entries
+	 * had been added one by one.</li>
+	 * </ul>
+	 * Because the entries are never compared, they must be distinct and must not
+	 * be part of the pathway yet. The reaction string of each entry must be set
+	 * before it is added. The entries, which the pathway already has, are kept
+	 * in front of the new ones.
+	 * 
+	 * @param p the {@link Pathway}
+	 * @param entries distinct entries, which are not part of <code>p</code>, in
+	 * the order in which they are added
+	 */
+	public static void addEntries(Pathway p, Collection<? extends Entry> entries) {
+		List<Entry> list = p.getEntries();
+		List<Entry> existing = new ArrayList<Entry>(list);
+		list.clear();
+		for (Entry entry : entries) {
+			p.addEntry(entry);
+			list.clear();
+		}
+		list.addAll(existing);
+		list.addAll(entries);
+	}
+	
+}
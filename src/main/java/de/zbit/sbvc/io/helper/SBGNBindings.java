@@ -0,0 +1,129 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.logging.Logger;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.sbgn.SbgnUtil;
+import org.sbgn.bindings.Sbgn;
+import org.xml.sax.SAXException;
+
+/**
+ * Replacement for {@link SbgnUtil#readFromFile(File)} and
+ * {@link SbgnUtil#isValid(File)}, which create a new {@link JAXBContext} and
+ * compile the SBGN-ML schema on every call. Here, the context and the
+ * {@link Schema} are created once and shared by all threads; only the
+ * {@link Unmarshaller}s, which are not thread-safe, are created per file.
+ * 
+ * @version $Rev$
+ */
+public class SBGNBindings {
+	
+	public static final Logger log = Logger.getLogger(SBGNBindings.class.getName());
+	
+	/**
+	 * the SBGN-ML schema in the jar of libSBGN
+	 */
+	public static final String SCHEMA_FILE = "/SBGN.xsd";
+	
+	private static JAXBContext context = null;
+	private static Schema schema = null;
+	
+	/**
+	 * @return the shared {@link JAXBContext} of the SBGN-ML bindings
+	 * @throws JAXBException
+	 */
+	public static synchronized JAXBContext getContext() throws JAXBException {
+		if (context == null) {
+			context = JAXBContext.newInstance(Sbgn.class.getPackage().getName(), Sbgn.class.getClassLoader());
+		}
+		return context;
+	}
+	
+	/**
+	 * @return the shared, compiled SBGN-ML {@link Schema}
+	 * @throws SAXException
+	 * @throws IOException if the schema is not in the classpath
+	 */
+	public static synchronized Schema getSchema() throws SAXException, IOException {
+		if (schema == null) {
+			URL url = SbgnUtil.class.getResource(SCHEMA_FILE);
+			if (url == null) {
+				throw new IOException("Could not find resource '" + SCHEMA_FILE + "' in classpath");
+			}
+			schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(url);
+		}
+		return schema;
+	}
+	
+	/**
+	 * @return a new {@link Unmarshaller} of the shared context
+	 * @throws JAXBException
+	 */
+	public static Unmarshaller createUnmarshaller() throws JAXBException {
+		return getContext().createUnmarshaller();
+	}
+	
+	/**
+	 * @param f
+	 * @return the content of the SBGN-ML file
+	 * @throws JAXBException
+	 */
+	public static Sbgn read(File f) throws JAXBException {
+		return (Sbgn) createUnmarshaller().unmarshal(f);
+	}
+	
+	/**
+	 * @param f
+	 * @return true, if the file is valid with respect to the SBGN-ML schema
+	 * @throws JAXBException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static boolean isValid(File f) throws JAXBException, SAXException, IOException {
+		Unmarshaller unmarshaller = createUnmarshaller();
+		unmarshaller.setSchema(getSchema());
+		try {
+			unmarshaller.unmarshal(f);
+			return true;
+		} catch (UnmarshalException e) {
+			Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+			log.warning(String.format("%s is not valid: %s", f.getName(), cause.getMessage()));
+			return false;
+		}
+	}
+	
+}
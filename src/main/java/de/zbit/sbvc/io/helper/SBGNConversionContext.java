@@ -0,0 +1,351 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.sbgn.bindings.Port;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.sbvc.io.SBGN2KGML;
+
+/**
+ * Holds the state of one SBGN to KGML conversion: the mappings from the ids
+ * of the glyphs and ports onto the entries and reactants and the counters,
+ * which are used to create unique ids and names.
+ * <p>
+ * The ids of the entries, process glyphs and ports are mapped onto dense
+ * indices in the order in which they are added. The reactants of each port
+ * and the modifiers of each process glyph are stored as lists of entry
+ * indices, so the reactions can be assembled without looking up ids again.
+ * <p>
+ * A context must only be used by one converter at a time. {@link #reset()}
+ * clears it for the next conversion, but keeps the allocated maps, so a
+ * context can be pooled and reused for many files (see
+ * {@link SBGN2KGML#SBGN2KGML(SBGNConversionContext)}).
+ * 
+ * @version $Rev$
+ */
+public class SBGNConversionContext {
+	
+	/**
+	 * A growable list of indices.
+	 */
+	public static final class IntList {
+		
+		private int[] values = new int[4];
+		private int size = 0;
+		
+		public void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+		
+		public int get(int i) {
+			return values[i];
+		}
+		
+		public int size() {
+			return size;
+		}
+		
+		public boolean isEmpty() {
+			return size == 0;
+		}
+		
+		public void clear() {
+			size = 0;
+		}
+		
+	}
+	
+	private final HashMap<String, Integer> entryIndex = new HashMap<String, Integer>();							// mapping from the glyph id onto the index of its entry
+	private final HashMap<String, Integer> processIndex = new HashMap<String, Integer>();						// mapping from the process glyph id onto its index
+	private final HashMap<String, Integer> portIndex = new HashMap<String, Integer>();							// mapping from the port id onto its index
+	private final HashMap<String, String> clonemarkerLookup = new HashMap<String, String>();						// mapping from the clonemarker id onto the kegg id
+	
+	private final ArrayList<Entry> entries = new ArrayList<Entry>();												// entries by index
+	private final ArrayList<StringBuilder> entryReactions = new ArrayList<StringBuilder>();						// names of the reactions, which are modified by an entry
+	
+	private final IntList processPorts = new IntList();															// index of the first port of each process glyph and the end of the last
+	private final ArrayList<IntList> processModifiers = new ArrayList<IntList>();								// entry indices of the reactionmodifiers of each process glyph
+	private final ArrayList<IntList> portSubstrates = new ArrayList<IntList>();									// entry indices of the substrates of each port
+	private final ArrayList<IntList> portProducts = new ArrayList<IntList>();									// entry indices of the products of each port
+	
+	private int entryID = 0;																						// incremental number for all entries
+	private int reactionID = 0;																						// incremental number for all reactions
+	private int skipCount = 0;																						// counts the clonemarker occurences to guarantee ongoing names
+	
+	/**
+	 * number of conversions since this context was created
+	 */
+	private int conversions = 0;
+	
+	public SBGNConversionContext() {
+		processPorts.add(0);
+	}
+	
+	/**
+	 * Clears all mappings and counters for the next conversion.
+	 */
+	public void reset() {
+		entryIndex.clear();
+		processIndex.clear();
+		portIndex.clear();
+		clonemarkerLookup.clear();
+		entries.clear();
+		entryReactions.clear();
+		processPorts.clear();
+		processPorts.add(0);
+		processModifiers.clear();
+		portSubstrates.clear();
+		portProducts.clear();
+		entryID = 0;
+		reactionID = 0;
+		skipCount = 0;
+		conversions++;
+	}
+	
+	/**
+	 * @param glyphID	id of the glyph of the entry
+	 * @param e			{@link Entry}
+	 * @return the index of the entry
+	 */
+	public int addEntry(String glyphID, Entry e) {
+		int index = entries.size();
+		entryIndex.put(glyphID, Integer.valueOf(index));
+		entries.add(e);
+		entryReactions.add(null);
+		return index;
+	}
+	
+	/**
+	 * @param glyphID
+	 * @return the index of the entry of the glyph or -1, if the glyph is not
+	 * an entry
+	 */
+	public int getEntryIndex(String glyphID) {
+		return indexOf(entryIndex, glyphID);
+	}
+	
+	public Entry getEntry(int index) {
+		return entries.get(index);
+	}
+	
+	/**
+	 * @return all entries in the order, in which they were added
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+	
+	/**
+	 * Adds a process glyph and indexes its ports.
+	 * @param glyphID	id of the process glyph
+	 * @param ports		the ports of the process glyph
+	 * @return the index of the process glyph
+	 */
+	public int addProcess(String glyphID, List<Port> ports) {
+		int index = processIndex.size();
+		processIndex.put(glyphID, Integer.valueOf(index));
+		processModifiers.add(null);
+		for (Port port : ports) {
+			portIndex.put(port.getId(), Integer.valueOf(portSubstrates.size()));
+			portSubstrates.add(null);
+			portProducts.add(null);
+		}
+		processPorts.add(portSubstrates.size());
+		return index;
+	}
+	
+	/**
+	 * @param glyphID
+	 * @return the index of the process glyph or -1, if the glyph is not a
+	 * process glyph
+	 */
+	public int getProcessIndex(String glyphID) {
+		return indexOf(processIndex, glyphID);
+	}
+	
+	public int getProcessCount() {
+		return processIndex.size();
+	}
+	
+	/**
+	 * @param process	index of the process glyph
+	 * @return the index of its first port
+	 */
+	public int getFirstPort(int process) {
+		return processPorts.get(process);
+	}
+	
+	/**
+	 * @param process	index of the process glyph
+	 * @return the index after its last port
+	 */
+	public int getEndPort(int process) {
+		return processPorts.get(process + 1);
+	}
+	
+	/**
+	 * @param portID
+	 * @return the index of the port or -1, if there is no such port
+	 */
+	public int getPortIndex(String portID) {
+		return indexOf(portIndex, portID);
+	}
+	
+	public void addSubstrate(int port, int entry) {
+		add(portSubstrates, port, entry);
+	}
+	
+	public void addProduct(int port, int entry) {
+		add(portProducts, port, entry);
+	}
+	
+	public void addModifier(int process, int entry) {
+		add(processModifiers, process, entry);
+	}
+	
+	/**
+	 * @param port
+	 * @return the entry indices of the substrates of the port or {@code null}
+	 */
+	public IntList getSubstrates(int port) {
+		return portSubstrates.get(port);
+	}
+	
+	/**
+	 * @param port
+	 * @return the entry indices of the products of the port or {@code null}
+	 */
+	public IntList getProducts(int port) {
+		return portProducts.get(port);
+	}
+	
+	/**
+	 * @param process
+	 * @return the entry indices of the reactionmodifiers of the process glyph
+	 * or {@code null}
+	 */
+	public IntList getModifiers(int process) {
+		return processModifiers.get(process);
+	}
+	
+	/**
+	 * Appends the name of a reaction to the reactions of an entry (see
+	 * {@link #getReactions(int)}).
+	 * @param entry	index of the entry
+	 * @param reactionName
+	 */
+	public void addReaction(int entry, String reactionName) {
+		StringBuilder reactions = entryReactions.get(entry);
+		if (reactions == null) {
+			entryReactions.set(entry, new StringBuilder(reactionName));
+		} else {
+			reactions.append(' ').append(reactionName);
+		}
+	}
+	
+	/**
+	 * @param entry	index of the entry
+	 * @return the space separated names of the reactions of the entry or
+	 * {@code null}, if it does not modify any reaction
+	 */
+	public String getReactions(int entry) {
+		StringBuilder reactions = entryReactions.get(entry);
+		return reactions != null ? reactions.toString() : null;
+	}
+	
+	public HashMap<String, String> getClonemarkerLookup() {
+		return clonemarkerLookup;
+	}
+	
+	public int nextEntryID() {
+		return ++entryID;
+	}
+	
+	public int nextReactionID() {
+		return ++reactionID;
+	}
+	
+	/**
+	 * @return the number of entries, which got the name of an earlier clone
+	 */
+	public int getSkipCount() {
+		return skipCount;
+	}
+	
+	public void incrementSkipCount() {
+		skipCount++;
+	}
+	
+	/**
+	 * @return the number of times, this context was reset
+	 */
+	public int getConversionCount() {
+		return conversions;
+	}
+	
+	/**
+	 * @param map
+	 * @param id
+	 * @return the index of the id or -1
+	 */
+	private static int indexOf(HashMap<String, Integer> map, String id) {
+		Integer index = map.get(id);
+		return index != null ? index.intValue() : -1;
+	}
+	
+	/**
+	 * @param lists
+	 * @param index
+	 * @param value	is added to the list at the index
+	 */
+	private static void add(ArrayList<IntList> lists, int index, int value) {
+		IntList list = lists.get(index);
+		if (list == null) {
+			list = new IntList();
+			lists.set(index, list);
+		}
+		list.add(value);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[entries=" + entries.size() + ", processGlyphs="
+				+ processIndex.size() + ", ports=" + portIndex.size() + ", reactions=" + reactionID
+				+ ", conversions=" + conversions + "]";
+	}
+	
+}
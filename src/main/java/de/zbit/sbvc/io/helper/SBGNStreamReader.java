@@ -0,0 +1,189 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Logger;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.sbgn.bindings.Arc;
+import org.sbgn.bindings.Glyph;
+import org.sbgn.bindings.Sbgn;
+
+import de.zbit.biopax.BioPAX2KGML;
+
+/**
+ * Streaming reader for SBGN-ML files. Instead of unmarshalling the whole
+ * {@link Sbgn} document, the {@link Glyph}s of the map are unmarshalled one by
+ * one from a StAX stream and only the class, source and target of the
+ * {@link Arc}s are read. Both are passed to a {@link Handler} in the order of
+ * the file, so the arcs are never kept in memory.
+ * <p>
+ * References of a glyph to other elements, e.g., its compartment, cannot be
+ * resolved this way and are left unset.
+ * 
+ * @version $Rev$
+ */
+public class SBGNStreamReader {
+	
+	public static final Logger log = Logger.getLogger(SBGNStreamReader.class.getName());
+	
+	/**
+	 * Receives the glyphs and arcs of the map of an SBGN-ML file.
+	 */
+	public static interface Handler {
+		
+		/**
+		 * @param glyph a glyph of the map including its ports and child glyphs
+		 */
+		public void glyphRead(Glyph glyph);
+		
+		/**
+		 * @param clazz the class of the arc
+		 * @param source the id of the source glyph or port
+		 * @param target the id of the target glyph or port
+		 */
+		public void arcRead(String clazz, String source, String target);
+		
+	}
+	
+	/**
+	 * depth of the glyphs and arcs of the map, i.e., sbgn/map/glyph
+	 */
+	private static final int MAP_CHILD_DEPTH = 2;
+	
+	private static XMLInputFactory factory = null;
+	
+	/**
+	 * @return the shared factory, which neither supports DTDs nor external
+	 *         entities
+	 */
+	private static synchronized XMLInputFactory getFactory() {
+		if (factory == null) {
+			factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		}
+		return factory;
+	}
+	
+	/**
+	 * Reads the file, which may be gzipped or zipped (see
+	 * {@link BioPAX2KGML#openModelStream(String)}).
+	 * @param f
+	 * @param handler
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws JAXBException
+	 */
+	public static void read(File f, Handler handler) throws IOException, XMLStreamException, JAXBException {
+		InputStream in = BioPAX2KGML.openModelStream(f.getPath());
+		try {
+			XMLStreamReader reader;
+			synchronized (SBGNStreamReader.class) {
+				reader = getFactory().createXMLStreamReader(in);
+			}
+			try {
+				read(reader, handler);
+			} finally {
+				reader.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * @param reader
+	 * @param handler
+	 * @throws XMLStreamException
+	 * @throws JAXBException
+	 */
+	private static void read(XMLStreamReader reader, Handler handler) throws XMLStreamException, JAXBException {
+		Unmarshaller unmarshaller = SBGNBindings.createUnmarshaller();
+		unmarshaller.setEventHandler(new ValidationEventHandler() {
+			@Override
+			public boolean handleEvent(ValidationEvent event) {
+				// unresolved references to elements outside of the glyph
+				return event.getSeverity() != ValidationEvent.FATAL_ERROR;
+			}
+		});
+		
+		int depth = 0;
+		int event = reader.getEventType();
+		while (true) {
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if ((depth == MAP_CHILD_DEPTH) && name.equals("glyph")) {
+					// the reader is positioned after the end of the glyph afterwards
+					handler.glyphRead(unmarshaller.unmarshal(reader, Glyph.class).getValue());
+					event = reader.getEventType();
+					continue;
+				} else if ((depth == MAP_CHILD_DEPTH) && name.equals("arc")) {
+					handler.arcRead(reader.getAttributeValue(null, "class"),
+						reader.getAttributeValue(null, "source"), reader.getAttributeValue(null, "target"));
+					skipElement(reader);
+				} else {
+					depth++;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+			if (!reader.hasNext()) {
+				break;
+			}
+			event = reader.next();
+		}
+	}
+	
+	/**
+	 * Moves the reader from the start to the end of the current element.
+	 * 
+	 * @param reader
+	 * @throws XMLStreamException
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int level = 1;
+		while (level > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				level++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				level--;
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,97 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io.helper;
+
+import java.util.Collection;
+import java.util.Map;
+
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * Class for storing a node of the node section of an extended SIF file
+ * 
+ * @version $Rev$
+ */
+public class SIFNode {
+	
+	private String name;													// the name, which is used in the relations
+	private String participantType;											// e.g. ProteinReference or SmallMoleculeReference
+	private String displayName;												// the human readable name
+	private Map<IdentifierDatabases, Collection<String>> identifiers;		// the unification and relationship xrefs
+	
+	public SIFNode(String name, String participantType, String displayName,
+		Map<IdentifierDatabases, Collection<String>> identifiers) {
+		this.name = name;
+		this.participantType = participantType;
+		this.displayName = displayName;
+		this.identifiers = identifiers;
+	}
+	
+	//////////////////////////
+	// Getters and Setters //
+	////////////////////////
+	
+	/**
+	 * Method for getting the {@link SIFNode#name} element
+	 * @return name {@link String}
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Method for getting the {@link SIFNode#participantType} element
+	 * @return participantType {@link String} or null
+	 */
+	public String getParticipantType() {
+		return participantType;
+	}
+	
+	/**
+	 * Method for getting the {@link SIFNode#displayName} element
+	 * @return displayName {@link String} or null
+	 */
+	public String getDisplayName() {
+		return displayName;
+	}
+	
+	/**
+	 * Method for getting the {@link SIFNode#identifiers} element
+	 * @return identifiers {@link Map}, which might be empty
+	 */
+	public Map<IdentifierDatabases, Collection<String>> getIdentifiers() {
+		return identifiers;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[name=" + name + ", type=" + participantType
+				+ ", displayName=" + displayName + ", identifiers=" + identifiers + "]";
+	}
+	
+}
@@ -24,6 +24,9 @@
  */
 package de.zbit.sbvc.io.helper;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import de.zbit.kegg.parser.pathway.EntryType;
 import de.zbit.kegg.parser.pathway.Pathway;
 import de.zbit.kegg.parser.pathway.RelationType;
@@ -111,6 +114,41 @@ public class SIFProperties {
 		}
 	}
 	
+	/**
+	 * Names and aliases of the {@link InteractionType}s. The aliases are the
+	 * interaction types of the Pathway Commons (extended) SIF, which are mapped
+	 * to the closest {@link InteractionType}.
+	 */
+	private static final Map<String, InteractionType> interactionTypes = new HashMap<String, InteractionType>();
+	static {
+		for (InteractionType iType : InteractionType.values()) {
+			interactionTypes.put(iType.name(), iType);
+		}
+		interactionTypes.put("controls-state-change-of", InteractionType.STATE_CHANGE);
+		interactionTypes.put("controls-phosphorylation-of", InteractionType.STATE_CHANGE);
+		interactionTypes.put("controls-transport-of", InteractionType.STATE_CHANGE);
+		interactionTypes.put("controls-expression-of", InteractionType.pd);
+		interactionTypes.put("catalysis-precedes", InteractionType.SEQUENTIAL_CATALYSIS);
+		interactionTypes.put("in-complex-with", InteractionType.IN_SAME_COMPONENT);
+		interactionTypes.put("interacts-with", InteractionType.INTERACTS_WITH);
+		interactionTypes.put("neighbor-of", InteractionType.INTERACTS_WITH);
+		interactionTypes.put("chemical-affects", InteractionType.mp);
+		interactionTypes.put("consumption-controlled-by", InteractionType.mp);
+		interactionTypes.put("controls-production-of", InteractionType.pm);
+		interactionTypes.put("controls-transport-of-chemical", InteractionType.pm);
+		interactionTypes.put("reacts-with", InteractionType.REACTS_WITH);
+		interactionTypes.put("used-to-produce", InteractionType.REACTS_WITH);
+	}
+	
+	/**
+	 * Method to get the {@link InteractionType} of a name in a SIF file
+	 * @param name	name of an {@link InteractionType} or a Pathway Commons interaction type
+	 * @return		{@link InteractionType} or null, if the name is unknown
+	 */
+	public static InteractionType getInteractionType(String name) {
+		return interactionTypes.get(name);
+	}
+	
 	/**
 	 * Method to get the corresponding {@link EntryType} from the {@link InteractionType} for the first or second component
 	 * @param iType {@link InteractionType}
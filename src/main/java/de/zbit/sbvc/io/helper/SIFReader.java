@@ -0,0 +1,727 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io.helper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.zbit.sbvc.io.helper.SIFProperties.InteractionType;
+import de.zbit.util.DatabaseIdentifiers;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+import de.zbit.util.Utils;
+
+/**
+ * Streaming reader for Simple Interaction Files. Each call of {@link #read()}
+ * returns the next valid {@link SIFRelation}, so a file does not have to be
+ * kept in memory. A line consists of tab separated or, if it has less than
+ * three tab separated columns, space separated columns: the source, the
+ * {@link InteractionType} and one or more targets, e.g. {@code A pp B C D}
+ * is read as three relations.
+ * <p>
+ * The extended SIF of Pathway Commons is recognized by its header line
+ * {@code PARTICIPANT_A}. Its relation lines only have one target, the further
+ * edge attribute columns are ignored. The node section, which starts with the
+ * header line {@code PARTICIPANT}, is passed node by node to the
+ * {@link NodeHandler}, if one is set.
+ * <p>
+ * Lines, which do not have this format or contain an unknown
+ * {@link InteractionType}, are skipped and counted. Node names are interned
+ * per reader, so each name is stored only once. Blank lines are ignored.
+ * <p>
+ * Large files can be split with {@link #split(String, int)} into byte ranges,
+ * which start at line boundaries. Each range is read by its own reader (see
+ * {@link #open(String, long, long, Map, boolean, boolean)}), which may share
+ * a concurrent map for the interning of the node names. Line numbers in
+ * warnings of such a reader are relative to the start of its range.
+ * 
+ * @version $Rev$
+ */
+public class SIFReader implements Closeable {
+	
+	public static final Logger log = Logger.getLogger(SIFReader.class.getName());
+	
+	/**
+	 * Receives the nodes of the node section of an extended SIF file.
+	 */
+	public static interface NodeHandler {
+		
+		/**
+		 * @param node
+		 */
+		public void nodeRead(SIFNode node);
+		
+	}
+	
+	/**
+	 * first column of the header of the relations of an extended SIF file
+	 */
+	public static final String EDGE_HEADER = "PARTICIPANT_A";
+	
+	/**
+	 * first column of the header of the node section of an extended SIF file
+	 */
+	public static final String NODE_HEADER = "PARTICIPANT";
+	
+	/**
+	 * number of skipped lines, which are reported as warning
+	 */
+	private static final int MAX_WARNINGS = 10;
+	
+	/**
+	 * database names of Pathway Commons, which {@link DatabaseIdentifiers}
+	 * doesn't know
+	 */
+	private static final Map<String, IdentifierDatabases> databaseAliases = new HashMap<String, IdentifierDatabases>();
+	static {
+		databaseAliases.put("uniprot knowledgebase", IdentifierDatabases.UniProt_AC);
+		databaseAliases.put("uniprot", IdentifierDatabases.UniProt_AC);
+		databaseAliases.put("ncbi gene", IdentifierDatabases.EntrezGene);
+		databaseAliases.put("hgnc symbol", IdentifierDatabases.GeneSymbol);
+	}
+	
+	private final BufferedReader reader;
+	private final String name;
+	
+	/**
+	 * interned node names, may be shared by the readers of one file
+	 */
+	private final Map<String, String> nodeNames;
+	
+	/**
+	 * resolved database names of the node section, unknown names map to null
+	 */
+	private final Map<String, IdentifierDatabases> databases = new HashMap<String, IdentifierDatabases>();
+	
+	private NodeHandler nodeHandler = null;
+	
+	/**
+	 * number of skipped lines, which are reported as warning
+	 */
+	private int maxWarnings = MAX_WARNINGS;
+	
+	/**
+	 * the current line and the positions of its tabs and spaces
+	 */
+	private String line;
+	private int lineEnd;
+	private int[] tabs = new int[8];
+	private int[] spaces = new int[8];
+	
+	/**
+	 * the separators of the columns of the current line
+	 */
+	private int[] separators;
+	private int columnCount;
+	
+	/**
+	 * source and type of the current line and the columns of its targets,
+	 * which are not returned yet
+	 */
+	private String source;
+	private InteractionType interactionType;
+	private int nextTarget = 0;
+	private int lastTarget = 0;
+	
+	private boolean extended = false;
+	private boolean nodeSection = false;
+	
+	private long lines = 0;
+	private long relations = 0;
+	private long nodeLines = 0;
+	private long malformedLines = 0;
+	private long unknownTypeLines = 0;
+	
+	/**
+	 * @param reader
+	 * @param name name of the pathway, see {@link #getName()}
+	 */
+	public SIFReader(BufferedReader reader, String name) {
+		this(reader, name, new HashMap<String, String>());
+	}
+	
+	/**
+	 * @param reader
+	 * @param name name of the pathway, see {@link #getName()}
+	 * @param nodeNames map for the interning of the node names, has to be a
+	 *        concurrent map, if it is shared by readers in different threads
+	 */
+	public SIFReader(BufferedReader reader, String name, Map<String, String> nodeNames) {
+		this.reader = reader;
+		this.name = name;
+		this.nodeNames = nodeNames;
+	}
+	
+	/**
+	 * @param filename
+	 * @return a reader for the file, the pathway is named like the file
+	 * @throws IOException
+	 */
+	public static SIFReader open(String filename) throws IOException {
+		return new SIFReader(new BufferedReader(new FileReader(filename), 1 << 16), getPathwayName(filename));
+	}
+	
+	/**
+	 * Opens a reader for the bytes from start to end of a file. Both positions
+	 * have to be line boundaries, see {@link #split(String, int)}.
+	 * 
+	 * @param filename
+	 * @param start first byte
+	 * @param end byte after the last byte
+	 * @param nodeNames map for the interning of the node names
+	 * @param extended true, if the file is an extended SIF file, see
+	 *        {@link #isExtendedSIF(String)}
+	 * @param nodeSection true, if the range belongs to the node section of an
+	 *        extended SIF file
+	 * @return a reader for the range, the pathway is named like the file
+	 * @throws IOException
+	 */
+	public static SIFReader open(String filename, long start, long end, Map<String, String> nodeNames,
+		boolean extended, boolean nodeSection) throws IOException {
+		FileInputStream in = new FileInputStream(filename);
+		try {
+			in.getChannel().position(start);
+		} catch (IOException exc) {
+			in.close();
+			throw exc;
+		}
+		SIFReader reader = new SIFReader(new BufferedReader(new InputStreamReader(
+			new RangeInputStream(in, end - start)), 1 << 16), getPathwayName(filename), nodeNames);
+		reader.extended = extended;
+		reader.nodeSection = nodeSection;
+		return reader;
+	}
+	
+	/**
+	 * Splits a file into byte ranges of about the same size, which start at
+	 * line boundaries.
+	 * 
+	 * @param filename
+	 * @param chunks the maximal number of ranges
+	 * @return the boundaries of the ranges, i.e., the start of the first range,
+	 *         the starts of the following ranges and the length of the file
+	 * @throws IOException
+	 */
+	public static long[] split(String filename, int chunks) throws IOException {
+		return split(filename, new File(filename).length(), chunks);
+	}
+	
+	/**
+	 * Splits the first bytes of a file into byte ranges of about the same size,
+	 * which start at line boundaries.
+	 * 
+	 * @param filename
+	 * @param length the number of bytes to split, has to be a line boundary
+	 * @param chunks the maximal number of ranges
+	 * @return the boundaries of the ranges, i.e., the start of the first range,
+	 *         the starts of the following ranges and the entered length
+	 * @throws IOException
+	 */
+	public static long[] split(String filename, long length, int chunks) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			long[] boundaries = new long[Math.max(chunks, 1) + 1];
+			int count = 1;
+			for (int i = 1; i < chunks; i++) {
+				long position = Math.max(length * i / chunks, boundaries[count - 1]);
+				if (position >= length) {
+					break;
+				}
+				file.seek(position);
+				int b;
+				while (((b = file.read()) >= 0) && (b != '\n')) {
+					position++;
+				}
+				// position of the line feed, the next range starts after it
+				position++;
+				if ((position > boundaries[count - 1]) && (position < length)) {
+					boundaries[count++] = position;
+				}
+			}
+			boundaries[count++] = length;
+			return Arrays.copyOf(boundaries, count);
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * Searches the header of the node section of an extended SIF file from the
+	 * end of the file, where the node section is, without parsing any line.
+	 * 
+	 * @param filename
+	 * @return the position of the last line, which starts with
+	 *         {@link #NODE_HEADER} and a tab, or -1
+	 * @throws IOException
+	 */
+	public static long findNodeSection(String filename) throws IOException {
+		byte[] pattern = ('\n' + NODE_HEADER + '\t').getBytes("UTF-8");
+		byte[] buffer = new byte[1 << 16];
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			long end = file.length();
+			while (end >= pattern.length) {
+				long start = Math.max(0, end - buffer.length);
+				int length = (int) (end - start);
+				file.seek(start);
+				file.readFully(buffer, 0, length);
+				for (int i = length - pattern.length; i >= 0; i--) {
+					int j = 0;
+					while ((j < pattern.length) && (buffer[i + j] == pattern[j])) {
+						j++;
+					}
+					if (j == pattern.length) {
+						return start + i + 1;
+					}
+				}
+				if (start == 0) {
+					break;
+				}
+				// the blocks overlap, so a header across their border is found
+				end = start + pattern.length - 1;
+			}
+			return -1;
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * @param filename
+	 * @return true, if the file starts with the header of a Pathway Commons
+	 *         extended SIF file
+	 * @throws IOException
+	 */
+	public static boolean isExtendedSIF(String filename) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			String line = in.readLine();
+			return (line != null) && line.startsWith(EDGE_HEADER + '\t');
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * @param filename
+	 * @return the filename without folders and the extension .sif
+	 */
+	public static String getPathwayName(String filename) {
+		return filename.replaceAll("\\.sif", "").replaceAll(".*/", "").replaceAll(".*\\\\", "");
+	}
+	
+	/**
+	 * @param nodeHandler receives the nodes of the node section, if null, the
+	 *        node section is skipped
+	 */
+	public void setNodeHandler(NodeHandler nodeHandler) {
+		this.nodeHandler = nodeHandler;
+	}
+	
+	/**
+	 * @param maxWarnings number of skipped lines, which are reported as
+	 *        warning, all skipped lines are counted anyway
+	 */
+	public void setMaxWarnings(int maxWarnings) {
+		this.maxWarnings = maxWarnings;
+	}
+	
+	/**
+	 * @return the next valid relation or null at the end of the file
+	 * @throws IOException
+	 */
+	public SIFRelation read() throws IOException {
+		while (true) {
+			while (nextTarget < lastTarget) {
+				String target = column(nextTarget++);
+				if (target.length() > 0) {
+					relations++;
+					return new SIFRelation(source, interactionType, intern(target));
+				}
+			}
+			String line = reader.readLine();
+			if (line == null) {
+				return null;
+			}
+			lines++;
+			parse(line);
+		}
+	}
+	
+	/**
+	 * Splits the line in one pass over its characters and either sets the
+	 * targets, which are returned by {@link #read()}, or passes the node to
+	 * the {@link NodeHandler}.
+	 * 
+	 * @param line
+	 */
+	private void parse(String line) {
+		nextTarget = 0;
+		lastTarget = 0;
+		int end = line.length();
+		while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+			end--;
+		}
+		if (end == 0) {
+			return;
+		}
+		
+		int tabCount = 0;
+		int spaceCount = 0;
+		for (int i = 0; i < end; i++) {
+			char c = line.charAt(i);
+			if (c == '\t') {
+				if (tabCount == tabs.length) {
+					tabs = grow(tabs);
+				}
+				tabs[tabCount++] = i;
+			} else if (c == ' ') {
+				if (spaceCount == spaces.length) {
+					spaces = grow(spaces);
+				}
+				spaces[spaceCount++] = i;
+			}
+		}
+		this.line = line;
+		lineEnd = end;
+		
+		if ((tabCount >= 2) || nodeSection) {
+			separators = tabs;
+			columnCount = tabCount + 1;
+		} else if (spaceCount >= 2) {
+			separators = spaces;
+			columnCount = spaceCount + 1;
+		} else {
+			skip("doesn't have the proper Simple Interaction Format");
+			malformedLines++;
+			return;
+		}
+		
+		String first = column(0);
+		if (first.equals(EDGE_HEADER)) {
+			extended = true;
+			nodeSection = false;
+			return;
+		} else if (first.equals(NODE_HEADER)) {
+			extended = true;
+			nodeSection = true;
+			return;
+		} else if (nodeSection) {
+			parseNode(first);
+			return;
+		}
+		
+		InteractionType iType = SIFProperties.getInteractionType(column(1));
+		if (iType == null) {
+			skip("has an unknown interaction type");
+			unknownTypeLines++;
+			return;
+		} else if (first.length() == 0) {
+			skip("doesn't have a source");
+			malformedLines++;
+			return;
+		}
+		source = intern(first);
+		interactionType = iType;
+		nextTarget = 2;
+		lastTarget = extended ? 3 : columnCount;
+	}
+	
+	/**
+	 * Passes a line of the node section to the {@link NodeHandler}. The columns
+	 * are the name, the participant type, the display name and any number of
+	 * columns with {@code database:identifier} pairs separated by ';'.
+	 * 
+	 * @param nodeName the first column of the current line
+	 */
+	private void parseNode(String nodeName) {
+		nodeLines++;
+		if ((nodeHandler == null) || (nodeName.length() == 0)) {
+			return;
+		}
+		Map<IdentifierDatabases, Collection<String>> identifiers = new HashMap<IdentifierDatabases, Collection<String>>();
+		for (int i = 3; i < columnCount; i++) {
+			addIdentifiers(identifiers, column(i));
+		}
+		String interned = nodeNames.get(nodeName);
+		nodeHandler.nodeRead(new SIFNode(interned != null ? interned : nodeName,
+			optionalColumn(1), optionalColumn(2), identifiers));
+	}
+	
+	/**
+	 * @param identifiers
+	 * @param xrefs {@code database:identifier} pairs separated by ';'
+	 */
+	private void addIdentifiers(Map<IdentifierDatabases, Collection<String>> identifiers, String xrefs) {
+		int start = 0;
+		while (start < xrefs.length()) {
+			int end = xrefs.indexOf(';', start);
+			if (end < 0) {
+				end = xrefs.length();
+			}
+			int colon = xrefs.indexOf(':', start);
+			if ((colon > start) && (colon < end - 1)) {
+				IdentifierDatabases db = getDatabase(xrefs.substring(start, colon).trim());
+				if (db != null) {
+					Utils.addToMapOfSets(identifiers, db, xrefs.substring(colon + 1, end).trim());
+				}
+			}
+			start = end + 1;
+		}
+	}
+	
+	/**
+	 * @param dbName
+	 * @return the database or null, if the name is unknown
+	 */
+	private IdentifierDatabases getDatabase(String dbName) {
+		String key = dbName.toLowerCase();
+		if (databases.containsKey(key)) {
+			return databases.get(key);
+		}
+		IdentifierDatabases db = databaseAliases.get(key);
+		if (db == null) {
+			db = DatabaseIdentifiers.getDatabase(dbName);
+		}
+		databases.put(key, db);
+		return db;
+	}
+	
+	/**
+	 * @param index
+	 * @return the column of the current line
+	 */
+	private String column(int index) {
+		int start = (index == 0) ? 0 : separators[index - 1] + 1;
+		int end = (index == columnCount - 1) ? lineEnd : separators[index];
+		return line.substring(start, end);
+	}
+	
+	/**
+	 * @param index
+	 * @return the column of the current line or null, if it is missing or
+	 *         empty
+	 */
+	private String optionalColumn(int index) {
+		if (index >= columnCount) {
+			return null;
+		}
+		String value = column(index).trim();
+		return (value.length() > 0) ? value : null;
+	}
+	
+	/**
+	 * @param positions
+	 * @return a copy of the array with twice its length
+	 */
+	private static int[] grow(int[] positions) {
+		int[] grown = new int[positions.length * 2];
+		System.arraycopy(positions, 0, grown, 0, positions.length);
+		return grown;
+	}
+	
+	/**
+	 * @param reason
+	 */
+	private void skip(String reason) {
+		if (malformedLines + unknownTypeLines < maxWarnings) {
+			log.log(Level.WARNING, String.format("The line %d in %s %s: '%s'", lines, name, reason, line));
+		}
+	}
+	
+	/**
+	 * @param nodeName
+	 * @return the first instance of the name, which was read by this reader
+	 */
+	private String intern(String nodeName) {
+		String interned = nodeNames.putIfAbsent(nodeName, nodeName);
+		return (interned != null) ? interned : nodeName;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	/**
+	 * @return the name of the pathway
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return true, if the header of a Pathway Commons extended SIF was read
+	 */
+	public boolean isExtended() {
+		return extended;
+	}
+	
+	/**
+	 * @return true, if the reader is in the node section of an extended SIF
+	 *         file
+	 */
+	public boolean isNodeSection() {
+		return nodeSection;
+	}
+	
+	/**
+	 * @return number of lines read so far
+	 */
+	public long getLineCount() {
+		return lines;
+	}
+	
+	/**
+	 * @return number of relations read so far
+	 */
+	public long getRelationCount() {
+		return relations;
+	}
+	
+	/**
+	 * @return number of lines of the node section read so far
+	 */
+	public long getNodeLineCount() {
+		return nodeLines;
+	}
+	
+	/**
+	 * @return number of lines, which were skipped, because they don't have
+	 *         three columns
+	 */
+	public long getMalformedLineCount() {
+		return malformedLines;
+	}
+	
+	/**
+	 * @return number of lines, which were skipped, because of an unknown
+	 *         interaction type
+	 */
+	public long getUnknownTypeLineCount() {
+		return unknownTypeLines;
+	}
+	
+	/**
+	 * @return number of distinct node names read so far, including the names
+	 *         read by other readers, which share the interned names
+	 */
+	public int getNodeCount() {
+		return nodeNames.size();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[name=" + name + ", lines=" + lines + ", relations="
+				+ relations + ", nodes=" + nodeNames.size() + ", nodeLines=" + nodeLines
+				+ ", malformed=" + malformedLines + ", unknownTypes=" + unknownTypeLines + "]";
+	}
+	
+	/**
+	 * Reads at most a given number of bytes of a stream.
+	 */
+	private static class RangeInputStream extends FilterInputStream {
+		
+		private long remaining;
+		
+		/**
+		 * @param in
+		 * @param length number of bytes, which can be read
+		 */
+		public RangeInputStream(InputStream in, long length) {
+			super(in);
+			remaining = length;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int b = super.read();
+			if (b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int n = super.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) {
+				remaining -= n;
+			}
+			return n;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#skip(long)
+		 */
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#available()
+		 */
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(super.available(), remaining);
+		}
+		
+	}
+	
+}
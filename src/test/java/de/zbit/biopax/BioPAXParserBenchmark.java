@@ -0,0 +1,197 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.biopax.paxtools.io.BioPAXIOHandler;
+import org.biopax.paxtools.model.Model;
+
+/**
+ * Compares parse time and peak memory of the {@link BioPAXParser} backends.
+ * <p>
+ * Usage: <code>BioPAXParserBenchmark [-p SIMPLE|JENA] [-r runs] file.owl ...</code>
+ * <p>
+ * The heap peak is measured per run. The resident set size (VmHWM) is a high
+ * water mark of the whole process, so run the benchmark once per parser with
+ * the <code>-p</code> option to get a meaningful value for it.
+ * <p>
+ * Each backend reads the file itself, there is no fallback to another
+ * parser like in {@link BioPAX2KGML#getModel(String, BioPAXParser)}. A file,
+ * which a backend cannot read, is reported as failed for this backend.
+ * 
+ * @version $Rev$
+ */
+public class BioPAXParserBenchmark {
+  
+  /**
+   * @return the sum of the peak usages of all heap pools since the last
+   * {@link #resetPeakUsage()} in bytes
+   */
+  private static long getPeakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+  
+  private static void resetPeakUsage() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+  }
+  
+  /**
+   * @return the peak resident set size of this process in kB or -1, if it is
+   * not available on this platform
+   */
+  private static long getPeakRSS() {
+    File status = new File("/proc/self/status");
+    if (!status.exists()) {
+      return -1;
+    }
+    BufferedReader in = null;
+    try {
+      in = new BufferedReader(new FileReader(status));
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith("VmHWM:")) {
+          return Long.parseLong(line.substring(6).replace("kB", "").trim());
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+    return -1;
+  }
+  
+  /**
+   * Reads the file with the IO handler of the parser only.
+   * 
+   * @param file
+   * @param parser
+   * @return the model
+   * @throws IOException if the file could not be opened
+   * @throws RuntimeException if the backend could not parse the file
+   */
+  private static Model readModel(String file, BioPAXParser parser) throws IOException {
+    BioPAXIOHandler handler = parser.createIOHandler();
+    InputStream in = BioPAX2KGML.openModelStream(file);
+    try {
+      return handler.convertFromOWL(in);
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * @param args
+   */
+  public static void main(String[] args) {
+    List<BioPAXParser> parsers = new ArrayList<BioPAXParser>();
+    List<String> files = new ArrayList<String>();
+    int runs = 3;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-p") && i + 1 < args.length) {
+        parsers.add(BioPAXParser.valueOf(args[++i].toUpperCase()));
+      } else if (args[i].equals("-r") && i + 1 < args.length) {
+        runs = Integer.parseInt(args[++i]);
+      } else {
+        files.add(args[i]);
+      }
+    }
+    if (files.isEmpty()) {
+      System.err.println("Usage: BioPAXParserBenchmark [-p SIMPLE|JENA] [-r runs] file.owl ...");
+      System.exit(1);
+    }
+    if (parsers.isEmpty()) {
+      for (BioPAXParser parser : BioPAXParser.values()) {
+        parsers.add(parser);
+      }
+    }
+    
+    System.out.println("file\tparser\tobjects\tbest ms\tpeak heap MB");
+    boolean failed = false;
+    for (String file : files) {
+      for (BioPAXParser parser : parsers) {
+        long best = Long.MAX_VALUE;
+        long peakHeap = 0;
+        int objects = -1;
+        String failure = null;
+        for (int run = 0; (run < runs) && (failure == null); run++) {
+          resetPeakUsage();
+          long start = System.nanoTime();
+          try {
+            Model m = readModel(file, parser);
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            peakHeap = Math.max(peakHeap, getPeakHeapUsage());
+            objects = m.getObjects().size();
+          } catch (Exception e) {
+            // IOException, BioPAXIOException and the like
+            failure = e.toString();
+          }
+        }
+        if (failure != null) {
+          failed = true;
+          System.out.println(new File(file).getName() + "\t" + parser + "\tfailed: " + failure);
+        } else {
+          System.out.println(new File(file).getName() + "\t" + parser + "\t" + objects + "\t" 
+              + (best / 1000000) + "\t" + (peakHeap / (1024 * 1024)));
+        }
+      }
+    }
+    
+    long rss = getPeakRSS();
+    if (rss >= 0) {
+      System.out.println("peak RSS of the process: " + (rss / 1024) + " MB");
+    }
+    if (failed) {
+      System.exit(1);
+    }
+  }
+  
+}
@@ -0,0 +1,128 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import java.io.File;
+import java.util.Map;
+
+import de.zbit.mapper.GeneID2KeggIDMapper;
+import de.zbit.util.Species;
+
+/**
+ * Compares the start time, the retained heap and the lookup time of the
+ * {@link GeneID2KeggIDMapper} and the memory-mapped {@link GeneIDKeggIndex}.
+ * <p>
+ * Usage: <code>GeneIDKeggIndexBenchmark [-m mapper|index] [keggAbbr]</code>
+ * <p>
+ * For a cold start run the benchmark once per mode. The index mode removes
+ * an existing index file first and reports the time to generate it and the
+ * time to map the generated file.
+ * 
+ * @version $Rev$
+ */
+public class GeneIDKeggIndexBenchmark {
+  
+  /**
+   * @return the used heap after a garbage collection in bytes
+   */
+  private static long getUsedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+  
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    String mode = null;
+    String keggAbbr = "hsa";
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-m") && i + 1 < args.length) {
+        mode = args[++i];
+      } else {
+        keggAbbr = args[i];
+      }
+    }
+    Species species = SpeciesRegistry.getInstance().getByKeggAbbr(keggAbbr);
+    if (species == null) {
+      System.err.println("Usage: GeneIDKeggIndexBenchmark [-m mapper|index] [hsa|mmu|rno]");
+      System.exit(1);
+    }
+    
+    // the reference mapping is needed in both modes to compare the results
+    long heap = getUsedHeap();
+    long start = System.nanoTime();
+    GeneID2KeggIDMapper mapper = new GeneID2KeggIDMapper(species);
+    long mapperStart = System.nanoTime() - start;
+    long mapperHeap = getUsedHeap() - heap;
+    Map<Integer, String> mapping = mapper.getMapping();
+    int[] ids = new int[mapping.size()];
+    int n = 0;
+    for (Integer id : mapping.keySet()) {
+      ids[n++] = id;
+    }
+    
+    if (mode == null || mode.equals("mapper")) {
+      start = System.nanoTime();
+      for (int id : ids) {
+        mapper.map(id);
+      }
+      System.out.println("mapper: start " + (mapperStart / 1000000) + " ms, heap " 
+          + (mapperHeap / 1024) + " kB, " + ids.length + " lookups " 
+          + ((System.nanoTime() - start) / 1000000) + " ms");
+    }
+    
+    if (mode == null || mode.equals("index")) {
+      File file = new File(GeneIDKeggIndex.getIndexDirectory(), keggAbbr + "_ncbi-geneid.idx");
+      file.delete();
+      start = System.nanoTime();
+      GeneIDKeggIndex.getInstance(species);
+      long generate = System.nanoTime() - start;
+      
+      heap = getUsedHeap();
+      start = System.nanoTime();
+      GeneIDKeggIndex index = GeneIDKeggIndex.getInstance(species);
+      long indexStart = System.nanoTime() - start;
+      long indexHeap = getUsedHeap() - heap;
+      
+      start = System.nanoTime();
+      int errors = 0;
+      for (int id : ids) {
+        if (!mapping.get(id).equals(index.map(id))) {
+          errors++;
+        }
+      }
+      System.out.println("index: generate " + (generate / 1000000) + " ms, start " 
+          + (indexStart / 1000000) + " ms, heap " + (indexHeap / 1024) + " kB, " + ids.length 
+          + " lookups " + ((System.nanoTime() - start) / 1000000) + " ms, " + errors 
+          + " differences to the mapper");
+    }
+  }
+  
+}
@@ -0,0 +1,99 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of the SysBio API library.
+ *
+ * Copyright (C) 2009-2014 by the University of Tuebingen, Germany.
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.biopax;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.EntryType;
+import de.zbit.kegg.parser.pathway.Graphics;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+
+/**
+ * Compares the entry deduplication of the BioPAX converters with a linear
+ * scan over all entries and with the {@link PathwayIndex} on a synthetic
+ * pathway. Every second entity is a duplicate of an earlier one.
+ * <p>
+ * Usage: <code>PathwayIndexBenchmark [entities]</code>, default 10000
+ * 
+ * @version $Rev$
+ */
+public class PathwayIndexBenchmark {
+  
+  private static EntryExtended createEntry(Pathway keggPW, int id, int i) {
+    EntryType type = i % 3 == 0 ? EntryType.compound : EntryType.gene;
+    Graphics graphics = type == EntryType.compound ? Graphics.createGraphicsForCompound("C" + i)
+        : Graphics.createGraphicsForProtein("P" + i);
+    return new EntryExtended(keggPW, id, "unknown" + id, type, graphics);
+  }
+  
+  /**
+   * @param entities
+   * @param indexed
+   * @return the number of added entries
+   */
+  private static int dedup(int entities, boolean indexed) {
+    Pathway keggPW = new Pathway("path:hsa00001", "hsa", 1, "benchmark");
+    BioPAXConversionContext context = new BioPAXConversionContext();
+    for (int i = 0; i < entities; i++) {
+      // every second entity repeats an earlier one
+      int n = i % 2 == 0 ? i : i / 2;
+      EntryExtended keggEntry = createEntry(keggPW, i + 1, n);
+      Iterable<Entry> candidates = indexed ? context.getPathwayIndex(keggPW).getEntryCandidates(keggEntry)
+          : keggPW.getEntries();
+      boolean found = false;
+      for (Entry entry : candidates) {
+        if (((EntryExtended) entry).equalsWithoutIDNameReactionComparison(keggEntry)) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        keggPW.addEntry(keggEntry);
+      }
+    }
+    return keggPW.getEntries().size();
+  }
+  
+  /**
+   * @param args
+   */
+  public static void main(String[] args) {
+    int entities = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    
+    // warm up
+    dedup(1000, false);
+    dedup(1000, true);
+    
+    long start = System.nanoTime();
+    int linear = dedup(entities, false);
+    long linearTime = System.nanoTime() - start;
+    
+    start = System.nanoTime();
+    int index = dedup(entities, true);
+    long indexTime = System.nanoTime() - start;
+    
+    System.out.println(entities + " entities, " + linear + " entries (linear scan), " + index
+        + " entries (index)");
+    System.out.println("linear scan: " + (linearTime / 1000000) + " ms");
+    System.out.println("index:       " + (indexTime / 1000000) + " ms");
+    if (linear != index) {
+      System.err.println("Different number of entries!");
+      System.exit(1);
+    }
+  }
+  
+}
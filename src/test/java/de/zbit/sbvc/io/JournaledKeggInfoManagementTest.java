@@ -0,0 +1,231 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.cache.InfoManagement;
+import de.zbit.kegg.api.KeggAdaptor;
+import de.zbit.kegg.api.KeggInfos;
+import de.zbit.kegg.api.cache.KeggInfoManagement;
+
+/**
+ * Tests the crash recovery, the format check, the compaction and the locking
+ * of the {@link JournaledKeggInfoManagement} and the update of the legacy
+ * cache. No KEGG infos are retrieved online: they are taken from a legacy
+ * cache, written into the journal or returned by a stub adaptor.
+ * 
+ * @version $Rev$
+ */
+public class JournaledKeggInfoManagementTest {
+  
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+  
+  private File journal;
+  private File legacyCache;
+  
+  private boolean offlineMode;
+  
+  @Before
+  public void setUp() throws IOException {
+    // a miss must fail instead of querying KEGG
+    offlineMode = KeggInfoManagement.offlineMode;
+    KeggInfoManagement.offlineMode = true;
+    
+    journal = new File(folder.getRoot(), "keggdb.dat.journal");
+    legacyCache = new File(folder.getRoot(), "keggdb.dat");
+    KeggInfoManagement legacy = new KeggInfoManagement();
+    legacy.addInformation("hsa:1", createInfo("hsa:1", "A1BG"));
+    legacy.addInformation("hsa:2", createInfo("hsa:2", "A2M"));
+    assertTrue(InfoManagement.saveToFilesystem(legacyCache.getPath(), legacy));
+  }
+  
+  @After
+  public void tearDown() {
+    KeggInfoManagement.offlineMode = offlineMode;
+  }
+  
+  /**
+   * @param id
+   * @param name
+   * @return an info with the entered name
+   */
+  private static KeggInfos createInfo(String id, String name) {
+    return new KeggInfos(id, "ENTRY       " + id + "\nNAME        " + name + "\n///\n");
+  }
+  
+  @Test
+  public void testLegacyHitsAreJournaled() throws IOException {
+    JournaledKeggInfoManagement manager = new JournaledKeggInfoManagement(journal, legacyCache);
+    assertNotNull(manager.getInformation("hsa:1"));
+    manager.close();
+    
+    legacyCache.delete();
+    manager = new JournaledKeggInfoManagement(journal, legacyCache);
+    assertEquals(1, manager.getNumberOfJournaledIDs());
+    assertNotNull(manager.getInformation("hsa:1"));
+    manager.close();
+  }
+  
+  @Test
+  public void testIncompleteRecordIsDropped() throws IOException {
+    JournaledKeggInfoManagement manager = new JournaledKeggInfoManagement(journal, legacyCache);
+    manager.getInformation("hsa:1");
+    manager.close();
+    long complete = journal.length();
+    
+    manager = new JournaledKeggInfoManagement(journal, legacyCache);
+    manager.getInformation("hsa:2");
+    manager.close();
+    assertTrue(journal.length() > complete + 10);
+    
+    // cut the second record in the middle, as a crash while writing it would do
+    RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+    raf.setLength(complete + 10);
+    raf.close();
+    
+    manager = new JournaledKeggInfoManagement(journal);
+    assertEquals(1, manager.getNumberOfJournaledIDs());
+    assertEquals(complete, journal.length());
+    assertNotNull(manager.getInformation("hsa:1"));
+    manager.close();
+  }
+  
+  @Test
+  public void testRetrievedInfosAreAddedToLegacyCache() throws IOException {
+    KeggInfoManagement.offlineMode = false;
+    JournaledKeggInfoManagement manager = new JournaledKeggInfoManagement(journal, legacyCache);
+    manager.setKeggAdaptor(new KeggAdaptor() {
+      @Override
+      public String getWithReturnInformation(String id) {
+        return "hsa:3".equals(id) ? "ENTRY       hsa:3\nNAME        A2MP1\n///\n" : null;
+      }
+    });
+    assertNotNull(manager.getInformation("hsa:1"));
+    assertNotNull(manager.getInformation("hsa:3"));
+    assertNull(manager.getInformation("hsa:4"));
+    manager.close();
+    
+    KeggInfoManagement.offlineMode = true;
+    KeggInfoManagement legacy = (KeggInfoManagement) InfoManagement.loadFromFilesystem(legacyCache);
+    assertFalse(new File(legacyCache.getPath() + ".tmp").exists());
+    // the misses of the journal must not be saved as unretrievable
+    assertEquals(3, legacy.getNumberOfCachedIDs());
+    assertEquals(3, legacy.getNumberOfCachedInfos());
+    assertNotNull(legacy.getInformation("hsa:2"));
+    assertNotNull(legacy.getInformation("hsa:3"));
+  }
+  
+  @Test(expected = IOException.class)
+  public void testNoJournal() throws IOException {
+    FileOutputStream out = new FileOutputStream(journal);
+    out.write("no journal".getBytes("UTF-8"));
+    out.close();
+    new JournaledKeggInfoManagement(journal);
+  }
+  
+  @Test
+  public void testCompaction() throws IOException {
+    // three records of the same id, the last one wins
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(journal));
+    out.writeInt(0x4B494A31);
+    writeRecord(out, "hsa:1", createInfo("hsa:1", "first"));
+    writeRecord(out, "hsa:1", createInfo("hsa:1", "second"));
+    writeRecord(out, "hsa:1", createInfo("hsa:1", "third"));
+    out.close();
+    long length = journal.length();
+    
+    JournaledKeggInfoManagement manager = new JournaledKeggInfoManagement(journal);
+    assertEquals(1, manager.getNumberOfJournaledIDs());
+    manager.close();
+    assertTrue(journal.length() < length);
+    
+    manager = new JournaledKeggInfoManagement(journal);
+    KeggInfos info = manager.getInformation("hsa:1");
+    assertNotNull(info);
+    assertEquals("third", info.getName());
+    manager.close();
+  }
+  
+  /**
+   * Writes a record in the layout of the journal.
+   * 
+   * @param out
+   * @param id
+   * @param info
+   * @throws IOException
+   */
+  private static void writeRecord(DataOutputStream out, String id, KeggInfos info) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream objects = new ObjectOutputStream(bytes);
+    objects.writeObject(info);
+    objects.close();
+    byte[] idBytes = id.getBytes("UTF-8");
+    out.writeShort(idBytes.length);
+    out.write(idBytes);
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+  }
+  
+  @Test
+  public void testLockedJournalIsReadOnly() throws IOException {
+    JournaledKeggInfoManagement writer = new JournaledKeggInfoManagement(journal, legacyCache);
+    writer.getInformation("hsa:1");
+    writer.checkpoint();
+    
+    JournaledKeggInfoManagement reader = new JournaledKeggInfoManagement(journal, legacyCache);
+    assertTrue(reader.isReadOnly());
+    assertNotNull(reader.getInformation("hsa:1"));
+    assertNotNull(reader.getInformation("hsa:2"));
+    reader.close();
+    writer.close();
+    
+    // the read-only journal did not append hsa:2
+    JournaledKeggInfoManagement manager = new JournaledKeggInfoManagement(journal);
+    assertFalse(manager.isReadOnly());
+    assertEquals(1, manager.getNumberOfJournaledIDs());
+    manager.close();
+  }
+  
+}
@@ -0,0 +1,235 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sbgn.bindings.Sbgn;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.ReactionComponent;
+import de.zbit.kegg.parser.pathway.Relation;
+
+/**
+ * Tests that {@link SBGN2KGML#translateStream(String)} translates maps with
+ * ports, modifiers and clone markers like the translation of the read
+ * {@link Sbgn} object.
+ * 
+ * @version $Rev$
+ */
+public class SBGN2KGMLTest {
+	
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+		+ "<sbgn xmlns=\"http://sbgn.org/libsbgn/0.2\">\n"
+		+ "  <map language=\"process description\">\n";
+	
+	private static final String FOOTER = "  </map>\n</sbgn>\n";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testStreamTranslation() throws IOException {
+		File file = write("map.sbgn", HEADER
+			+ "    <glyph class=\"compartment\" id=\"c1\"><label text=\"cytosol\"/><bbox x=\"0\" y=\"0\" w=\"500\" h=\"500\"/></glyph>\n"
+			+ "    <glyph class=\"macromolecule\" id=\"g1\" compartmentRef=\"c1\"><label text=\"A\"/><bbox x=\"10\" y=\"10\" w=\"60\" h=\"30\"/></glyph>\n"
+			+ "    <glyph class=\"simple chemical\" id=\"g2\"><label text=\"ATP\"/><bbox x=\"10\" y=\"100\" w=\"30\" h=\"30\"/></glyph>\n"
+			+ "    <glyph class=\"simple chemical\" id=\"g3\"><label text=\"ADP\"/><bbox x=\"200\" y=\"100\" w=\"30\" h=\"30\"/></glyph>\n"
+			+ "    <glyph class=\"macromolecule\" id=\"g4\"><label text=\"E\"/><bbox x=\"100\" y=\"20\" w=\"60\" h=\"30\"/></glyph>\n"
+			+ "    <glyph class=\"simple chemical\" id=\"g5\"><label text=\"ATP\"/><clone/><bbox x=\"300\" y=\"100\" w=\"30\" h=\"30\"/></glyph>\n"
+			+ "    <glyph class=\"process\" id=\"p1\"><bbox x=\"100\" y=\"100\" w=\"20\" h=\"20\"/>\n"
+			+ "      <port id=\"p1.1\" x=\"95\" y=\"110\"/><port id=\"p1.2\" x=\"125\" y=\"110\"/></glyph>\n"
+			+ "    <glyph class=\"process\" id=\"p2\"><bbox x=\"300\" y=\"200\" w=\"20\" h=\"20\"/>\n"
+			+ "      <port id=\"p2.1\" x=\"295\" y=\"210\"/><port id=\"p2.2\" x=\"325\" y=\"210\"/></glyph>\n"
+			+ arc("a1", "consumption", "g2", "p1.1")
+			+ arc("a2", "production", "p1.2", "g3")
+			+ arc("a3", "catalysis", "g4", "p1")
+			+ arc("a4", "stimulation", "g1", "g4")
+			+ arc("a5", "consumption", "g3", "p2.1")
+			+ arc("a6", "production", "p2.2", "g5")
+			+ arc("a7", "catalysis", "g4", "p2")
+			+ arc("a8", "inhibition", "g1", "p2")
+			+ FOOTER);
+		Pathway p = assertSameTranslation(file);
+		assertEquals(6, p.getEntries().size());
+		assertEquals(2, p.getReactions().size());
+		assertEquals(1, p.getRelations().size());
+		
+		// E catalyzes both processes, A inhibits the second one
+		List<String> modified = new ArrayList<String>();
+		for (Entry entry : p.getEntries()) {
+			if (entry.isSetReaction()) {
+				modified.add(entry.getReactionString());
+			}
+		}
+		assertEquals(2, modified.size());
+		assertEquals(2, modified.get(1).split(" ").length);
+	}
+	
+	@Test
+	public void testArcsBetweenNoEntries() throws IOException {
+		// glyphs without labels and ports are neither entries nor processes
+		File file = write("unlabeled.sbgn", HEADER
+			+ "    <glyph class=\"macromolecule\" id=\"g1\"><label text=\"A\"/><bbox x=\"10\" y=\"10\" w=\"60\" h=\"30\"/></glyph>\n"
+			+ "    <glyph class=\"macromolecule\" id=\"g2\"><label text=\"B\"/><bbox x=\"100\" y=\"10\" w=\"60\" h=\"30\"/></glyph>\n"
+			+ "    <glyph class=\"process\" id=\"p1\"><bbox x=\"100\" y=\"100\" w=\"20\" h=\"20\"/></glyph>\n"
+			+ "    <glyph class=\"and\" id=\"o1\"><bbox x=\"200\" y=\"100\" w=\"20\" h=\"20\"/></glyph>\n"
+			+ arc("a1", "stimulation", "g1", "p1")
+			+ arc("a2", "logic arc", "o1", "g2")
+			+ arc("a3", "stimulation", "g1", "g2")
+			+ FOOTER);
+		Pathway p = assertSameTranslation(file);
+		assertEquals(2, p.getEntries().size());
+		assertEquals(1, p.getRelations().size());
+	}
+	
+	@Test
+	public void testStreamTranslationOfGeneratedMap() throws IOException {
+		File file = folder.newFile("generated.sbgn");
+		int processes = 500;
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write(HEADER);
+			for (int i = 0; i <= processes; i++) {
+				out.write("    <glyph class=\"macromolecule\" id=\"m" + i + "\"><label text=\"M" + i + "\"/>"
+					+ "<bbox x=\"" + (10 * i) + "\" y=\"10\" w=\"60\" h=\"30\"/></glyph>\n");
+				// clone markers on the chemicals, which are used by several processes
+				out.write("    <glyph class=\"simple chemical\" id=\"c" + i + "\"><label text=\"C" + (i % 50) + "\"/>"
+					+ (i >= 50 ? "<clone/>" : "") + "<bbox x=\"" + (10 * i) + "\" y=\"100\" w=\"30\" h=\"30\"/></glyph>\n");
+			}
+			for (int i = 0; i < processes; i++) {
+				String clazz = i % 7 == 0 ? "omitted process" : "process";
+				out.write("    <glyph class=\"" + clazz + "\" id=\"p" + i + "\"><bbox x=\"" + (10 * i) + "\" y=\"200\" w=\"20\" h=\"20\"/>\n"
+					+ "      <port id=\"p" + i + ".1\" x=\"" + (10 * i - 5) + "\" y=\"210\"/>"
+					+ "<port id=\"p" + i + ".2\" x=\"" + (10 * i + 25) + "\" y=\"210\"/></glyph>\n");
+			}
+			for (int i = 0; i < processes; i++) {
+				out.write(arc("s" + i, "consumption", "c" + i, "p" + i + ".1"));
+				if (i % 11 != 0) {
+					// processes without products are reversible
+					out.write(arc("t" + i, "production", "p" + i + ".2", "c" + (i + 1)));
+				}
+				if (i % 3 == 0) {
+					out.write(arc("u" + i, "consumption", "m" + i, "p" + i + ".1"));
+				}
+				out.write(arc("k" + i, i % 2 == 0 ? "catalysis" : "inhibition", "m" + i, "p" + i));
+				if (i % 5 == 0) {
+					out.write(arc("v" + i, "modulation", "m" + (i + 1), "p" + i));
+				}
+				out.write(arc("r" + i, i % 2 == 0 ? "stimulation" : "necessary stimulation", "m" + i, "m" + (i + 1)));
+			}
+			out.write(FOOTER);
+		} finally {
+			out.close();
+		}
+		Pathway p = assertSameTranslation(file);
+		assertEquals(2 * (processes + 1), p.getEntries().size());
+		assertEquals(processes, p.getReactions().size());
+	}
+	
+	/**
+	 * @param file
+	 * @return the pathway translated from the stream
+	 * @throws IOException
+	 */
+	private static Pathway assertSameTranslation(File file) throws IOException {
+		SBGN2KGML converter = new SBGN2KGML();
+		Sbgn sbgn = converter.read(file.getPath());
+		assertNotNull(sbgn);
+		List<String> expected = describe(converter.translate(sbgn));
+		Pathway p = new SBGN2KGML().translateStream(file.getPath());
+		assertEquals(expected, describe(p));
+		return p;
+	}
+	
+	/**
+	 * @param p
+	 * @return the entries, graphics, relations and reactions
+	 */
+	private static List<String> describe(Pathway p) {
+		List<String> description = new ArrayList<String>();
+		for (Entry entry : p.getEntries()) {
+			description.add(entry.getKGMLAttributes() + " " + entry.getReactionString()
+				+ (entry.hasGraphics() ? " " + entry.getGraphics().getKGMLAttributes() : ""));
+		}
+		for (Relation relation : p.getRelations()) {
+			description.add(relation.getKGMLAttributes() + " " + relation.getSubtypesNames());
+		}
+		for (Reaction reaction : p.getReactions()) {
+			StringBuilder components = new StringBuilder(reaction.getName() + " " + reaction.getType());
+			for (ReactionComponent substrate : reaction.getSubstrates()) {
+				components.append(" -").append(substrate.getName());
+			}
+			for (ReactionComponent product : reaction.getProducts()) {
+				components.append(" +").append(product.getName());
+			}
+			description.add(components.toString());
+		}
+		return description;
+	}
+	
+	/**
+	 * @param id
+	 * @param clazz
+	 * @param source
+	 * @param target
+	 * @return an arc element
+	 */
+	private static String arc(String id, String clazz, String source, String target) {
+		return "    <arc class=\"" + clazz + "\" id=\"" + id + "\" source=\"" + source + "\" target=\"" + target + "\">"
+			+ "<start x=\"0\" y=\"0\"/><end x=\"10\" y=\"10\"/></arc>\n";
+	}
+	
+	/**
+	 * @param name
+	 * @param content
+	 * @return the file
+	 * @throws IOException
+	 */
+	private File write(String name, String content) throws IOException {
+		File file = folder.newFile(name);
+		FileWriter out = new FileWriter(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+	
+}
@@ -0,0 +1,210 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * Tests that {@link SIF2KGML#translateSIF(String, int)} translates plain and
+ * extended SIF files of several megabytes like
+ * {@link SIF2KGML#translateSIF(String)}, and the translation of lines with
+ * several targets and of the node section.
+ * 
+ * @version $Rev$
+ */
+public class SIF2KGMLTest {
+	
+	private static final String[] PLAIN_TYPES = {"pp", "pd", "pr", "cr", "gl", "pm", "mp", "unknown"};
+	
+	private static final String[] EXTENDED_TYPES = {"controls-state-change-of", "in-complex-with",
+		"interacts-with", "controls-expression-of", "catalysis-precedes", "chemical-affects",
+		"controls-production-of", "unknown-type"};
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testParallelTranslationOfPlainSIF() throws IOException {
+		File file = folder.newFile("plain.sif");
+		Random random = new Random(42);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			for (int i = 0; i < 200000; i++) {
+				// tab- and space-separated lines with one to three targets
+				char separator = random.nextInt(4) == 0 ? ' ' : '\t';
+				out.write("N" + random.nextInt(20000) + separator + PLAIN_TYPES[random.nextInt(PLAIN_TYPES.length)]);
+				for (int targets = 1 + random.nextInt(3); targets > 0; targets--) {
+					out.write(separator + "N" + random.nextInt(20000));
+				}
+				out.write('\n');
+				if (i % 1000 == 0) {
+					out.write("\nmalformed\n");
+				}
+			}
+		} finally {
+			out.close();
+		}
+		assertTrue(file.length() > 3 * (1 << 20));
+		assertSameTranslation(file);
+	}
+	
+	@Test
+	public void testParallelTranslationOfExtendedSIF() throws IOException {
+		File file = folder.newFile("extended.sif");
+		int nodes = 20000;
+		Random random = new Random(42);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("PARTICIPANT_A\tINTERACTION_TYPE\tPARTICIPANT_B\tINTERACTION_DATA_SOURCE\tINTERACTION_PUBMED_ID\tPATHWAY_NAMES\tMEDIATOR_IDS\n");
+			for (int i = 0; i < 40000; i++) {
+				out.write("P" + random.nextInt(nodes) + '\t' + EXTENDED_TYPES[random.nextInt(EXTENDED_TYPES.length)]
+					+ "\tP" + random.nextInt(nodes) + "\tReactome\t" + random.nextInt(30000000)
+					+ "\tSynthetic pathway " + random.nextInt(500) + "\thttp://pathwaycommons.org/pc2/Control_" + i + '\n');
+				if (i % 1000 == 0) {
+					out.write("malformed\n");
+				}
+			}
+			out.write("\nPARTICIPANT\tPARTICIPANT_TYPE\tPARTICIPANT_NAME\tUNIFICATION_XREF\tRELATIONSHIP_XREF\n");
+			for (int i = 0; i < nodes + 1000; i++) {
+				out.write("P" + i + "\tProteinReference\tGENE" + i + "\tuniprot knowledgebase:Q" + (10000 + i)
+					+ "\tentrez gene:" + (1000 + i) + ";hgnc symbol:GENE" + i + '\n');
+			}
+		} finally {
+			out.close();
+		}
+		assertTrue(file.length() > 3 * (1 << 20));
+		assertSameTranslation(file);
+	}
+	
+	@Test
+	public void testMultipleTargets() throws IOException {
+		File file = write("targets.sif", "A\tpp\tB\tC\tD\nA pp E\n");
+		Pathway p = new SIF2KGML().translateSIF(file.getPath());
+		assertEquals(5, p.getEntries().size());
+		int source = getEntry(p, "A").getId();
+		assertEquals(4, p.getRelations().size());
+		for (Relation relation : p.getRelations()) {
+			assertEquals(source, relation.getEntry1());
+		}
+	}
+	
+	@Test
+	public void testNodeSectionIdentifiers() throws IOException {
+		File file = write("nodes.sif",
+			"PARTICIPANT_A\tINTERACTION_TYPE\tPARTICIPANT_B\tINTERACTION_DATA_SOURCE\n"
+			+ "P1\tinteracts-with\tP2\tReactome\n"
+			+ "\n"
+			+ "PARTICIPANT\tPARTICIPANT_TYPE\tPARTICIPANT_NAME\tUNIFICATION_XREF\tRELATIONSHIP_XREF\n"
+			+ "P1\tProteinReference\tGENE1\tuniprot knowledgebase:Q10001\tentrez gene:1001;hgnc symbol:GENE1\n"
+			+ "P3\tProteinReference\tGENE3\tuniprot knowledgebase:Q10003\n");
+		Pathway p = new SIF2KGML().translateSIF(file.getPath());
+		assertEquals(2, p.getEntries().size());
+		Map<IdentifierDatabases, Collection<String>> identifiers = ((EntryExtended) getEntry(p, "P1")).getDatabaseIdentifiers();
+		assertTrue(identifiers.get(IdentifierDatabases.UniProt_AC).contains("Q10001"));
+		assertTrue(identifiers.get(IdentifierDatabases.EntrezGene).contains("1001"));
+		assertTrue(identifiers.get(IdentifierDatabases.GeneSymbol).contains("GENE1"));
+	}
+	
+	/**
+	 * @param file
+	 * @throws IOException
+	 */
+	private static void assertSameTranslation(File file) throws IOException {
+		List<String> expected = describe(new SIF2KGML().translateSIF(file.getPath()));
+		assertEquals(expected, describe(new SIF2KGML().translateSIF(file.getPath(), 4)));
+	}
+	
+	/**
+	 * @param p
+	 * @return the entries, graphics, identifiers, relations and reactions
+	 */
+	private static List<String> describe(Pathway p) {
+		List<String> description = new ArrayList<String>();
+		for (Entry entry : p.getEntries()) {
+			description.add(entry.getKGMLAttributes() + " " + ((EntryExtended) entry).getDatabaseIdentifiers()
+				+ (entry.hasGraphics() ? " " + entry.getGraphics().getKGMLAttributes() : ""));
+		}
+		for (Relation relation : p.getRelations()) {
+			description.add(relation.getKGMLAttributes() + " " + relation.getSubtypesNames());
+		}
+		for (Reaction reaction : p.getReactions()) {
+			description.add(reaction.getName() + " " + reaction.getEquation());
+		}
+		return description;
+	}
+	
+	/**
+	 * @param p
+	 * @param name
+	 * @return the only entry with the name
+	 */
+	private static Entry getEntry(Pathway p, String name) {
+		Collection<Entry> entries = p.getEntriesForName(name);
+		assertNotNull(entries);
+		assertEquals(1, entries.size());
+		return entries.iterator().next();
+	}
+	
+	/**
+	 * @param name
+	 * @param content
+	 * @return the file
+	 * @throws IOException
+	 */
+	private File write(String name, String content) throws IOException {
+		File file = folder.newFile(name);
+		FileWriter out = new FileWriter(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+	
+}
@@ -0,0 +1,147 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import de.zbit.kegg.parser.pathway.Entry;
+import de.zbit.kegg.parser.pathway.Pathway;
+import de.zbit.kegg.parser.pathway.Reaction;
+import de.zbit.kegg.parser.pathway.Relation;
+import de.zbit.kegg.parser.pathway.ext.EntryExtended;
+
+/**
+ * Measures the throughput of {@link SIF2KGML#translateSIF(String, int)} with
+ * 1, 4 and 16 threads on a synthetic Pathway Commons extended SIF file and
+ * checks, that the translation is the same as the sequential one. A third of
+ * the relations have one of a few hub nodes as source.
+ * <p>
+ * Usage: <code>SIFTranslationBenchmark [relations] [nodes]</code>, default
+ * 2000000 relations and 50000 nodes
+ * 
+ * @version $Rev$
+ */
+public class SIFTranslationBenchmark {
+	
+	private static final String[] TYPES = {"controls-state-change-of", "in-complex-with",
+		"interacts-with", "controls-expression-of", "catalysis-precedes", "chemical-affects",
+		"controls-production-of"};
+	
+	/**
+	 * @param file
+	 * @param relations
+	 * @param nodes
+	 * @throws IOException
+	 */
+	private static void writeSIF(File file, int relations, int nodes) throws IOException {
+		Random random = new Random(42);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("PARTICIPANT_A\tINTERACTION_TYPE\tPARTICIPANT_B\tINTERACTION_DATA_SOURCE\tINTERACTION_PUBMED_ID\tPATHWAY_NAMES\tMEDIATOR_IDS\n");
+			for (int i = 0; i < relations; i++) {
+				int source = random.nextInt(3) == 0 ? random.nextInt(10) : random.nextInt(nodes);
+				out.write("P" + source + '\t' + TYPES[random.nextInt(TYPES.length)] + "\tP" + random.nextInt(nodes)
+					+ "\tReactome\t" + random.nextInt(30000000) + "\tSynthetic pathway " + random.nextInt(500)
+					+ "\thttp://pathwaycommons.org/pc2/Control_" + i + '\n');
+			}
+			out.write("\nPARTICIPANT\tPARTICIPANT_TYPE\tPARTICIPANT_NAME\tUNIFICATION_XREF\tRELATIONSHIP_XREF\n");
+			for (int i = 0; i < nodes; i++) {
+				out.write("P" + i + "\tProteinReference\tGENE" + i + "\tuniprot knowledgebase:Q" + (10000 + i)
+					+ "\tentrez gene:" + (1000 + i) + ";hgnc symbol:GENE" + i + '\n');
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * @param p
+	 * @return a hash of the entries, graphics, relations and reactions
+	 */
+	private static long fingerprint(Pathway p) {
+		long hash = 17;
+		for (Entry entry : p.getEntries()) {
+			hash = 31 * hash + entry.getKGMLAttributes().hashCode();
+			hash = 31 * hash + ((EntryExtended) entry).getDatabaseIdentifiers().hashCode();
+			if (entry.hasGraphics()) {
+				hash = 31 * hash + entry.getGraphics().getKGMLAttributes().hashCode();
+			}
+		}
+		for (Relation relation : p.getRelations()) {
+			hash = 31 * hash + relation.getKGMLAttributes().hashCode();
+			hash = 31 * hash + relation.getSubtypesNames().hashCode();
+		}
+		for (Reaction reaction : p.getReactions()) {
+			hash = 31 * hash + reaction.getName().hashCode();
+			hash = 31 * hash + reaction.getEquation().hashCode();
+		}
+		return hash;
+	}
+	
+	/**
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int relations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int nodes = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		
+		File file = File.createTempFile("benchmark", ".sif");
+		file.deleteOnExit();
+		writeSIF(file, relations, nodes);
+		double megabytes = file.length() / (1024d * 1024d);
+		System.out.println(String.format("%d relations, %d nodes, %.1f MB", relations, nodes, megabytes));
+		
+		// warm up and reference
+		new SIF2KGML().translateSIF(file.getPath(), 4);
+		long start = System.nanoTime();
+		Pathway reference = new SIF2KGML().translateSIF(file.getPath());
+		double seconds = (System.nanoTime() - start) / 1E9;
+		long expected = fingerprint(reference);
+		System.out.println(String.format("sequential: %6.2f s, %6.1f MB/s, %9.0f relations/s, %d entries",
+			seconds, megabytes / seconds, relations / seconds, reference.getEntries().size()));
+		reference = null;
+		
+		boolean identical = true;
+		for (int threads : new int[] {1, 4, 16}) {
+			start = System.nanoTime();
+			Pathway p = new SIF2KGML().translateSIF(file.getPath(), threads);
+			seconds = (System.nanoTime() - start) / 1E9;
+			boolean same = fingerprint(p) == expected;
+			identical &= same;
+			System.out.println(String.format("%2d threads: %6.2f s, %6.1f MB/s, %9.0f relations/s, %s",
+				threads, seconds, megabytes / seconds, relations / seconds, same ? "identical" : "DIFFERENT"));
+		}
+		if (!identical) {
+			System.err.println("The parallel translation differs from the sequential one!");
+			System.exit(1);
+		}
+	}
+	
+}
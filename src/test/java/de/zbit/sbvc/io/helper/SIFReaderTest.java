@@ -0,0 +1,189 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBVC, the systems biology visualizer and
+ * converter. This tools is able to read a plethora of systems biology
+ * file formats and convert them to an internal data structure.
+ * These files can then be visualized, either using a simple graph
+ * (KEGG-style) or using the SBGN-PD layout and rendering constraints.
+ * Some currently supported IO formats are SBML (+qual, +layout), KGML,
+ * BioPAX, SBGN, etc. Please visit the project homepage at
+ * <http://www.cogsys.cs.uni-tuebingen.de/software/SBVC> to obtain the
+ * latest version of SBVC.
+ *
+ * Copyright (C) 2012-2014 by the University of Tuebingen, Germany.
+ *
+ * SBVC is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation. A copy of the license
+ * agreement is provided in the file named "LICENSE.txt" included with
+ * this software distribution and also available online as
+ * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
+ * ---------------------------------------------------------------------
+ */
+package de.zbit.sbvc.io.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.zbit.util.DatabaseIdentifiers.IdentifierDatabases;
+
+/**
+ * Tests the {@link SIFReader} with lines with several targets, the node
+ * section of extended SIF files, the counters of skipped lines and the search
+ * of the node section.
+ * 
+ * @version $Rev$
+ */
+public class SIFReaderTest {
+	
+	private static final String EDGE_HEADER = "PARTICIPANT_A\tINTERACTION_TYPE\tPARTICIPANT_B\tINTERACTION_DATA_SOURCE\n";
+	private static final String NODE_HEADER = "PARTICIPANT\tPARTICIPANT_TYPE\tPARTICIPANT_NAME\tUNIFICATION_XREF\tRELATIONSHIP_XREF\n";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testMultipleTargets() throws IOException {
+		List<SIFRelation> relations = readAll(reader("A\tpp\tB\tC\t\tD\nE pd F G\n"));
+		assertEquals(5, relations.size());
+		assertRelation(relations.get(0), "A", SIFProperties.InteractionType.pp, "B");
+		assertRelation(relations.get(2), "A", SIFProperties.InteractionType.pp, "D");
+		assertRelation(relations.get(4), "E", SIFProperties.InteractionType.pd, "G");
+	}
+	
+	@Test
+	public void testExtendedSIFHasOneTarget() throws IOException {
+		SIFReader reader = reader(EDGE_HEADER + "P1\tinteracts-with\tP2\tReactome\t123\n");
+		List<SIFRelation> relations = readAll(reader);
+		assertTrue(reader.isExtended());
+		assertEquals(1, relations.size());
+		assertRelation(relations.get(0), "P1", SIFProperties.InteractionType.INTERACTS_WITH, "P2");
+	}
+	
+	@Test
+	public void testNodeSection() throws IOException {
+		SIFReader reader = reader(EDGE_HEADER + "P1\tinteracts-with\tP2\tReactome\n\n" + NODE_HEADER
+			+ "P1\tProteinReference\tGENE1\tuniprot knowledgebase:Q10001\tentrez gene:1001;hgnc symbol:GENE1;unknown db:1\n"
+			+ "P2\tSmallMoleculeReference\n");
+		final List<SIFNode> nodes = new ArrayList<SIFNode>();
+		reader.setNodeHandler(new SIFReader.NodeHandler() {
+			/* (non-Javadoc)
+			 * @see de.zbit.sbvc.io.helper.SIFReader.NodeHandler#nodeRead(de.zbit.sbvc.io.helper.SIFNode)
+			 */
+			@Override
+			public void nodeRead(SIFNode node) {
+				nodes.add(node);
+			}
+		});
+		assertEquals(1, readAll(reader).size());
+		assertTrue(reader.isNodeSection());
+		assertEquals(2, reader.getNodeLineCount());
+		assertEquals(2, nodes.size());
+		
+		SIFNode node = nodes.get(0);
+		assertEquals("P1", node.getName());
+		assertEquals("ProteinReference", node.getParticipantType());
+		assertEquals("GENE1", node.getDisplayName());
+		assertEquals(3, node.getIdentifiers().size());
+		assertTrue(node.getIdentifiers().get(IdentifierDatabases.UniProt_AC).contains("Q10001"));
+		assertTrue(node.getIdentifiers().get(IdentifierDatabases.EntrezGene).contains("1001"));
+		assertTrue(node.getIdentifiers().get(IdentifierDatabases.GeneSymbol).contains("GENE1"));
+		assertTrue(nodes.get(1).getIdentifiers().isEmpty());
+	}
+	
+	@Test
+	public void testSkippedLines() throws IOException {
+		SIFReader reader = reader("A\tpp\tB\n\nmalformed\n\tpp\tB\nA\tunknown\tB\nA unknown B C\n");
+		reader.setMaxWarnings(0);
+		assertEquals(1, readAll(reader).size());
+		assertEquals(6, reader.getLineCount());
+		assertEquals(2, reader.getMalformedLineCount());
+		assertEquals(2, reader.getUnknownTypeLineCount());
+	}
+	
+	@Test
+	public void testFindNodeSection() throws IOException {
+		String edges = EDGE_HEADER + "P1\tinteracts-with\tP2\tReactome\n\n";
+		File file = write("plain.sif", "A\tpp\tB\n");
+		assertEquals(-1, SIFReader.findNodeSection(file.getPath()));
+		
+		// the header starts shift bytes after the start of the last block of 64 KB
+		StringBuilder node = new StringBuilder("P1\tProteinReference\t");
+		for (int i = 0; i < 1 << 16; i++) {
+			node.append('x');
+		}
+		for (int shift = -20; shift <= 20; shift++) {
+			String content = edges + NODE_HEADER + node.substring(0, (1 << 16) - NODE_HEADER.length() - 2 + shift) + '\n';
+			file = write("extended" + shift + ".sif", content);
+			assertEquals(edges.length(), SIFReader.findNodeSection(file.getPath()));
+		}
+	}
+	
+	/**
+	 * @param relation
+	 * @param source
+	 * @param type
+	 * @param target
+	 */
+	private static void assertRelation(SIFRelation relation, String source, SIFProperties.InteractionType type, String target) {
+		assertEquals(source, relation.getSource());
+		assertEquals(type, relation.getInteractionType());
+		assertEquals(target, relation.getTarget());
+	}
+	
+	/**
+	 * @param content
+	 * @return a reader for the content
+	 */
+	private static SIFReader reader(String content) {
+		return new SIFReader(new BufferedReader(new StringReader(content)), "test");
+	}
+	
+	/**
+	 * @param reader
+	 * @return all relations of the reader
+	 * @throws IOException
+	 */
+	private static List<SIFRelation> readAll(SIFReader reader) throws IOException {
+		List<SIFRelation> relations = new ArrayList<SIFRelation>();
+		SIFRelation relation;
+		while ((relation = reader.read()) != null) {
+			relations.add(relation);
+		}
+		assertNull(reader.read());
+		return relations;
+	}
+	
+	/**
+	 * @param name
+	 * @param content
+	 * @return the file
+	 * @throws IOException
+	 */
+	private File write(String name, String content) throws IOException {
+		File file = folder.newFile(name);
+		FileWriter out = new FileWriter(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+	
+}